@@ -25,6 +25,9 @@ CLASSPATH="bin:$PROJECT_ROOT/libs/opencsv-5.7.0.jar:$PROJECT_ROOT/libs/common-la
 # Ensure output directory exists
 mkdir -p "$OUTPUT_ROOT"
 
+# Start a fresh cohort feature table, each pilot appends its rows
+rm -f "$OUTPUT_ROOT/features.arff" "$OUTPUT_ROOT/features.csv"
+
 # Iterate over all X-Plane text files matching *_xplane.txt
 for XFILE in "$XPLANE_DIR"/*_xplane.txt; do
     # If the glob matches nothing, skip the loop body
@@ -51,15 +54,29 @@ for XFILE in "$XPLANE_DIR"/*_xplane.txt; do
         continue
     fi
 
+    # Derive fixations from the raw gaze with the I-VT detector
+    mkdir -p "$OUTPUT_ROOT/$PID"
+    FIXATIONS="$OUTPUT_ROOT/$PID/${PID}_ivt_fixations.csv"
+    $JAVA -cp "$CLASSPATH" \
+        utils.utilsUpdated.FixationDetector \
+        "$GAZE" \
+        "$FIXATIONS"
+
     # Run the updated Java scoring pipeline for this pilot
     $JAVA -cp "$CLASSPATH" \
         scoring.scoringUpdated.ScoreRunnerUpdated \
         "$OUTPUT_ROOT" \
         "$XFILE" \
         "$DATAREFS" \
-        "$GAZE"
+        "$GAZE" \
+        "$FIXATIONS"
 
     echo "  Done $PID"
 done
 
+# Merge every pilot's quantile sketches into cohort percentiles (score_percentiles.csv)
+$JAVA -cp "$CLASSPATH" \
+    scoring.scoringUpdated.ScoreSketches \
+    "$OUTPUT_ROOT"
+
 echo "All done."
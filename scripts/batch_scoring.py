@@ -46,7 +46,7 @@ def run_single(output_dir: str, pilot_dir: str):
       "java",
       "-cp",
       "./libs/common-lang3.jar:./libs/opencsv-5.7.0.jar:./libs/weka.jar:./src",
-      "scoring/ScoreRunner"
+      "scoring/scoringUpdated/ScoreRunnerUpdated"
    ]
    data_files: list[str] = []
    txt_file = glob(f"{pilot_dir}/*xplane.txt")  # check for xplane.txt file
@@ -161,6 +161,19 @@ def summary_analysis(dir: str):
 
    print("Analysis summary written")
 
+def percentile_analysis(dir: str):
+   """Merges the per-pilot quantile sketches into cohort percentiles (score_percentiles.csv)."""
+   if not glob(f"{dir}/*/*_sketches.ser"):
+      return
+   java_program = [
+      "java",
+      "-cp",
+      "./libs/common-lang3.jar:./libs/opencsv-5.7.0.jar:./libs/weka.jar:./src",
+      "scoring/scoringUpdated/ScoreSketches",
+      dir
+   ]
+   subprocess.run(java_program)
+
 def single_analysis(score_file: str, m_dict: dict, num_index: int, id_index: int) -> list[str]:
    values = []
    with open(score_file, 'r') as read_file:
@@ -253,4 +266,5 @@ if __name__ == "__main__":
       print("No output directory was provided\n\t(ex: -o my_output_dir).")
 
    run_multiple(output_dir, input_dir)
-   summary_analysis(output_dir)
\ No newline at end of file
+   summary_analysis(output_dir)
+   percentile_analysis(output_dir)
\ No newline at end of file
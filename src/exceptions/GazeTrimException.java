@@ -0,0 +1,12 @@
+package exceptions;
+
+public class GazeTrimException extends Exception{
+
+    public GazeTrimException(String s) {
+        super(s);
+    }
+
+    public GazeTrimException(String s, Throwable cause) {
+        super(s, cause);
+    }
+}
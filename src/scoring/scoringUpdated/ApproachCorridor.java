@@ -0,0 +1,293 @@
+package scoring.scoringUpdated;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+import com.opencsv.CSVWriter;
+import scoring.scoringUpdated.DmeProfile.Channel;
+
+/**
+ * Per-bin percentile bands of a cohort of {@link DmeProfile}s (for example the expert pilots), used as
+ * an "expert corridor" that any new flight resampled onto the same grid can be checked against.
+ */
+public class ApproachCorridor implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final double startDme;
+	private final double step;
+	private final double lowerFraction;
+	private final double upperFraction;
+	// [channel][bin]
+	private final double[][] lower;
+	private final double[][] median;
+	private final double[][] upper;
+
+	private ApproachCorridor(DmeProfile grid, double lowerFraction, double upperFraction,
+			double[][] lower, double[][] median, double[][] upper) {
+		this.startDme = grid.getStartDme();
+		this.step = grid.getStep();
+		this.lowerFraction = lowerFraction;
+		this.upperFraction = upperFraction;
+		this.lower = lower;
+		this.median = median;
+		this.upper = upper;
+	}
+
+	/**
+	 * Builds the corridor from a cohort of profiles. Bins are aggregated in parallel; every bin
+	 * only reads the cohort's values at that bin, so no synchronization is needed.
+	 * @param profiles		cohort profiles, all on the same grid
+	 * @param lowerFraction	percentile of the lower band edge, for example 0.1
+	 * @param upperFraction	percentile of the upper band edge, for example 0.9
+	 * @return				corridor over the cohort
+	 */
+	public static ApproachCorridor build(List<DmeProfile> profiles, double lowerFraction, double upperFraction) {
+		if (profiles.isEmpty()) {
+			throw new IllegalArgumentException("Corridor needs at least one profile");
+		}
+		DmeProfile grid = profiles.get(0);
+		for (DmeProfile profile : profiles) {
+			if (!grid.sameGrid(profile)) {
+				throw new IllegalArgumentException("All profiles must be resampled onto the same DME grid");
+			}
+		}
+
+		int channels = Channel.values().length;
+		int bins = grid.getBinCount();
+		double[][] lower = new double[channels][bins];
+		double[][] median = new double[channels][bins];
+		double[][] upper = new double[channels][bins];
+
+		IntStream.range(0, bins).parallel().forEach(bin -> {
+			double[] column = new double[profiles.size()];
+			for (Channel channel : Channel.values()) {
+				int n = 0;
+				for (DmeProfile profile : profiles) {
+					double value = profile.getValue(channel, bin);
+					if (!Double.isNaN(value)) {
+						column[n++] = value;
+					}
+				}
+				Arrays.sort(column, 0, n);
+				lower[channel.ordinal()][bin] = percentile(column, n, lowerFraction);
+				median[channel.ordinal()][bin] = percentile(column, n, 0.5);
+				upper[channel.ordinal()][bin] = percentile(column, n, upperFraction);
+			}
+		});
+
+		return new ApproachCorridor(grid, lowerFraction, upperFraction, lower, median, upper);
+	}
+
+	/**
+	 * Linear interpolation between the closest ranks of a sorted array.
+	 */
+	private static double percentile(double[] sorted, int n, double fraction) {
+		if (n == 0) {
+			return Double.NaN;
+		}
+		double position = fraction * (n - 1);
+		int below = (int) Math.floor(position);
+		int above = Math.min(below + 1, n - 1);
+		return sorted[below] + (sorted[above] - sorted[below]) * (position - below);
+	}
+
+	/**
+	 * Compares a flight against the corridor in one pass over the grid.
+	 * @param profile	flight resampled onto the corridor's grid
+	 * @return			per-channel conformance with the corridor
+	 */
+	public Conformance check(DmeProfile profile) {
+		if (profile.getStartDme() != startDme || profile.getStep() != step || profile.getBinCount() != getBinCount()) {
+			throw new IllegalArgumentException("Profile is not on the corridor's DME grid");
+		}
+		int channels = Channel.values().length;
+		int[] compared = new int[channels];
+		int[] inside = new int[channels];
+		double[] maxExcursion = new double[channels];
+
+		for (Channel channel : Channel.values()) {
+			int c = channel.ordinal();
+			for (int bin = 0; bin < getBinCount(); bin++) {
+				double value = profile.getValue(channel, bin);
+				if (Double.isNaN(value) || Double.isNaN(lower[c][bin])) {
+					continue;
+				}
+				compared[c]++;
+				if (value < lower[c][bin]) {
+					maxExcursion[c] = Math.max(maxExcursion[c], lower[c][bin] - value);
+				} else if (value > upper[c][bin]) {
+					maxExcursion[c] = Math.max(maxExcursion[c], value - upper[c][bin]);
+				} else {
+					inside[c]++;
+				}
+			}
+		}
+		return new Conformance(compared, inside, maxExcursion);
+	}
+
+	/**
+	 * Writes the bands as a csv table with one row per grid point.
+	 * @param outputFile	path of the csv file to write
+	 */
+	public void writeToFile(String outputFile) throws IOException {
+		Channel[] channels = Channel.values();
+		String[] headers = new String[1 + channels.length * 3];
+		headers[0] = "DME";
+		for (Channel channel : channels) {
+			int c = channel.ordinal();
+			headers[1 + c * 3] = channel + "_P" + Math.round(lowerFraction * 100);
+			headers[2 + c * 3] = channel + "_P50";
+			headers[3 + c * 3] = channel + "_P" + Math.round(upperFraction * 100);
+		}
+		try (
+			FileWriter outputFileWriter = new FileWriter(new File(outputFile));
+			CSVWriter outputCSVWriter = new CSVWriter(outputFileWriter);
+		){
+			outputCSVWriter.writeNext(headers);
+			for (int bin = 0; bin < getBinCount(); bin++) {
+				String[] row = new String[headers.length];
+				row[0] = String.valueOf(startDme - bin * step);
+				for (Channel channel : channels) {
+					int c = channel.ordinal();
+					row[1 + c * 3] = String.valueOf(lower[c][bin]);
+					row[2 + c * 3] = String.valueOf(median[c][bin]);
+					row[3 + c * 3] = String.valueOf(upper[c][bin]);
+				}
+				outputCSVWriter.writeNext(row);
+			}
+		}
+	}
+
+	public int getBinCount() {
+		return lower[0].length;
+	}
+
+	public double getLower(Channel channel, int bin) {
+		return lower[channel.ordinal()][bin];
+	}
+
+	public double getMedian(Channel channel, int bin) {
+		return median[channel.ordinal()][bin];
+	}
+
+	public double getUpper(Channel channel, int bin) {
+		return upper[channel.ordinal()][bin];
+	}
+
+	/**
+	 * Builds the corridor from a group of pilots and checks every pilot under the output directory against it.
+	 * Writes approach_corridor.csv and corridor_conformance.csv to the output directory.
+	 * @param args[0] output directory that holds one folder per pilot
+	 * @param args[1..n] ids of the pilots that make up the corridor, all pilots if none are given
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1 || !new File(args[0]).isDirectory()) {
+			System.out.println("Output directory not specified.");
+			return;
+		}
+
+		List<String> cohortIds = Arrays.asList(Arrays.copyOfRange(args, 1, args.length));
+		Map<String, DmeProfile> profiles = new TreeMap<>();
+		File[] pilotFolders = new File(args[0]).listFiles(File::isDirectory);
+		for (File folder : pilotFolders == null ? new File[0] : pilotFolders) {
+			File profileFile = new File(folder, folder.getName() + "_dme_profile.ser");
+			if (!profileFile.exists()) {
+				continue;
+			}
+			try {
+				profiles.put(folder.getName(), DmeProfile.readFromFile(profileFile.getPath()));
+			} catch (IOException | ClassNotFoundException e) {
+				System.out.println("Unable to read profile " + profileFile + ": " + e);
+			}
+		}
+
+		List<DmeProfile> cohort = new ArrayList<>();
+		for (Map.Entry<String, DmeProfile> entry : profiles.entrySet()) {
+			if (cohortIds.isEmpty() || cohortIds.contains(entry.getKey())) {
+				cohort.add(entry.getValue());
+			}
+		}
+		if (cohort.isEmpty()) {
+			System.out.println("No DME profiles found for the corridor.");
+			return;
+		}
+
+		ApproachCorridor corridor = build(cohort, 0.1, 0.9);
+		String corridorFile = args[0] + "/approach_corridor.csv";
+		String conformanceFile = args[0] + "/corridor_conformance.csv";
+		try (
+			FileWriter outputFileWriter = new FileWriter(new File(conformanceFile));
+			CSVWriter outputCSVWriter = new CSVWriter(outputFileWriter);
+		){
+			corridor.writeToFile(corridorFile);
+
+			Channel[] channels = Channel.values();
+			String[] headers = new String[1 + channels.length * 2];
+			headers[0] = "PID";
+			for (Channel channel : channels) {
+				headers[1 + channel.ordinal() * 2] = channel + "_Fraction_Inside";
+				headers[2 + channel.ordinal() * 2] = channel + "_Max_Excursion";
+			}
+			outputCSVWriter.writeNext(headers);
+			for (Map.Entry<String, DmeProfile> entry : profiles.entrySet()) {
+				Conformance conformance = corridor.check(entry.getValue());
+				String[] row = new String[headers.length];
+				row[0] = entry.getKey();
+				for (Channel channel : channels) {
+					row[1 + channel.ordinal() * 2] = String.valueOf(conformance.getFractionInside(channel));
+					row[2 + channel.ordinal() * 2] = String.valueOf(conformance.getMaxExcursion(channel));
+				}
+				outputCSVWriter.writeNext(row);
+			}
+		} catch (IOException e) {
+			System.out.println("Error writing corridor files to '" + args[0] + "'");
+		}
+	}
+
+	/**
+	 * How well one flight stayed within the corridor.
+	 */
+	public static class Conformance {
+
+		private final int[] compared;
+		private final int[] inside;
+		private final double[] maxExcursion;
+
+		private Conformance(int[] compared, int[] inside, double[] maxExcursion) {
+			this.compared = compared;
+			this.inside = inside;
+			this.maxExcursion = maxExcursion;
+		}
+
+		/**
+		 * @return number of grid points where both the flight and the corridor have a value
+		 */
+		public int getComparedBins(Channel channel) {
+			return compared[channel.ordinal()];
+		}
+
+		/**
+		 * @return fraction of compared grid points inside the band, or NaN if none were compared
+		 */
+		public double getFractionInside(Channel channel) {
+			int c = channel.ordinal();
+			return compared[c] == 0 ? Double.NaN : (double) inside[c] / compared[c];
+		}
+
+		/**
+		 * @return largest distance outside the band, 0 if the flight never left it
+		 */
+		public double getMaxExcursion(Channel channel) {
+			return maxExcursion[channel.ordinal()];
+		}
+	}
+
+}
@@ -0,0 +1,329 @@
+package scoring.scoringUpdated;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import com.opencsv.CSVWriter;
+import scoring.scoringUpdated.FlightRangeIndex.Channel;
+import utils.RealFft;
+import utils.utilsUpdated.GazeClock;
+import utils.utilsUpdated.GazeStage;
+import utils.utilsUpdated.GazeWindowTable;
+
+/**
+ * Estimates, for every gaze window, how long after a localizer or glideslope excursion the pilot looks at
+ * each AOI (for example the HSI, which holds the CDI).
+ *
+ * While the gaze file is trimmed, every fixation marks the bins of a uniform {@code SAMPLE_RATE} grid that
+ * it covers with its AOI ({@code FPOGS} and {@code FPOGD} give its span), giving one 0/1 looking series per
+ * AOI in primitive arrays. After the pass the absolute {@code hdef} and {@code vdef} of the flight are
+ * interpolated onto the same grid, and each AOI series is cross-correlated with each deviation series through
+ * {@link RealFft}: {@code r(lag) = IFFT(conj(FFT(deviation)) * FFT(looking))} over zero-padded, mean-removed
+ * series, in O(n log n) rather than O(n^2). The reported peak is the largest normalized correlation within
+ * {@code MAX_LAG_SECONDS}; a positive lag means the gaze followed the deviation.
+ */
+public class DeviationGazeCorrelation implements GazeStage {
+
+	private static final double SAMPLE_RATE = 4;			// Hz, of the resampled series
+	private static final double MAX_LAG_SECONDS = 10;
+	private static final Channel[] DEVIATIONS = {Channel.HDEF, Channel.VDEF};
+
+	private final String[] aoiNames;
+	private final Map<String, Integer> aoiIds = new HashMap<>();
+	private final FlightRangeIndex flight;
+	private final MissionClock missionClock;
+
+	// transforms by size, shared by every window of the file
+	private final Map<Integer, RealFft> transforms = new HashMap<>();
+
+	private int aoiColumn = -1;
+	private int startColumn = -1;
+	private int durationColumn = -1;
+	private double missionOffset;			// mission time of gaze TIME 0
+	private double missionRate;				// mission seconds per gaze second
+	private boolean enabled;
+
+	private String[] windowLabels = new String[0];
+	private double[] windowStart;			// [window], mission time of the first bin
+	private byte[][][] looking;				// [window][aoi][bin], 1 while a fixation on the AOI covers the bin
+
+	// results, [window][deviation][aoi]
+	private double[][][] peakLag;
+	private double[][][] peakCorrelation;
+
+	/**
+	 * @param aoiNames		AOIs to correlate, for example from {@code AoiIndex}
+	 * @param flightData	flight with its mission clock set
+	 */
+	public DeviationGazeCorrelation(String[] aoiNames, FlightDataUpdated flightData) {
+		this.aoiNames = aoiNames.clone();
+		for (int i = 0; i < aoiNames.length; i++) {
+			aoiIds.put(aoiNames[i], i);
+		}
+		this.flight = flightData.getRangeIndex();
+		this.missionClock = flightData.getMissionClock();
+	}
+
+	@Override
+	public void open(String[] headers, GazeWindowTable windows) {
+		for (int i = 0; i < headers.length; i++) {
+			switch (headers[i]) {
+				case "AOI":		aoiColumn = i; break;
+				case "FPOGS":	startColumn = i; break;
+				case "FPOGD":	durationColumn = i; break;
+				default:		break;
+			}
+		}
+		GazeClock clock = GazeClock.fromHeaders(headers);
+		enabled = clock != null && missionClock != null && aoiColumn != -1 && startColumn != -1 && durationColumn != -1;
+		if (enabled) {
+			missionOffset = missionClock.toMissionTime(clock.getStartTime());
+			missionRate = 1 / missionClock.getRate();
+		}
+
+		int n = windows.size();
+		windowLabels = new String[n];
+		windowStart = new double[n];
+		looking = new byte[n][][];
+		for (int w = 0; w < n; w++) {
+			windowLabels[w] = windows.getLabel(w);
+			if (!enabled) {
+				looking[w] = new byte[aoiNames.length][0];
+				continue;
+			}
+			windowStart[w] = missionClock.toMissionTime(windows.getStart(w));
+			double end = missionClock.toMissionTime(windows.getEnd(w));
+			int bins = Math.max(0, (int) Math.ceil((end - windowStart[w]) * SAMPLE_RATE));
+			looking[w] = new byte[aoiNames.length][bins];
+		}
+	}
+
+	@Override
+	public int[] getColumns() {
+		return new int[] {aoiColumn, startColumn, durationColumn};
+	}
+
+	@Override
+	public void accept(String[] row, Collection<Integer> active) {
+		if (!enabled) {
+			return;
+		}
+		if (aoiColumn >= row.length || startColumn >= row.length || durationColumn >= row.length) {
+			return;
+		}
+		Integer aoi = row[aoiColumn].isEmpty() ? null : aoiIds.get(row[aoiColumn]);
+		if (aoi == null) {
+			return;
+		}
+		double start;
+		double duration;
+		try {
+			start = Double.parseDouble(row[startColumn]);
+			duration = Double.parseDouble(row[durationColumn]);
+		} catch (NumberFormatException e) {
+			return;
+		}
+		double from = missionOffset + start * missionRate;
+		double to = from + duration * missionRate;
+		for (int window : active) {
+			byte[] series = looking[window][aoi];
+			// bins whose centre lies within the fixation
+			int first = Math.max(0, (int) Math.ceil((from - windowStart[window]) * SAMPLE_RATE - 0.5));
+			int last = Math.min(series.length - 1, (int) Math.floor((to - windowStart[window]) * SAMPLE_RATE - 0.5));
+			for (int bin = first; bin <= last; bin++) {
+				series[bin] = 1;
+			}
+		}
+	}
+
+	@Override
+	public void finish() {
+		int n = windowLabels.length;
+		peakLag = new double[n][DEVIATIONS.length][aoiNames.length];
+		peakCorrelation = new double[n][DEVIATIONS.length][aoiNames.length];
+		for (int w = 0; w < n; w++) {
+			for (int d = 0; d < DEVIATIONS.length; d++) {
+				Arrays.fill(peakLag[w][d], Double.NaN);
+				Arrays.fill(peakCorrelation[w][d], Double.NaN);
+				if (enabled) {
+					correlate(w, d);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Cross-correlates every AOI series of a window with one deviation series.
+	 */
+	private void correlate(int window, int deviation) {
+		int bins = looking[window].length > 0 ? looking[window][0].length : 0;
+		double[] deviations = resample(window, DEVIATIONS[deviation], bins);
+		if (deviations == null) {
+			return;
+		}
+		int size = 4;
+		while (size < 2 * bins) {
+			size <<= 1;
+		}
+		RealFft fft = transforms.get(size);
+		if (fft == null) {
+			fft = new RealFft(size);
+			transforms.put(size, fft);
+		}
+
+		// spectrum of the mean-removed, zero-padded deviation series
+		double[] padded = new double[size];
+		double deviationEnergy = center(deviations, bins, padded);
+		int binCount = fft.getBinCount();
+		double[] deviationRe = new double[binCount];
+		double[] deviationIm = new double[binCount];
+		fft.transform(padded, 0);
+		for (int k = 0; k < binCount; k++) {
+			deviationRe[k] = fft.getReal(k);
+			deviationIm[k] = fft.getImag(k);
+		}
+
+		double[] series = new double[bins];
+		double[] productRe = new double[binCount];
+		double[] productIm = new double[binCount];
+		double[] correlation = new double[size];
+		int maxLag = Math.min(bins - 1, (int) Math.round(MAX_LAG_SECONDS * SAMPLE_RATE));
+		for (int aoi = 0; aoi < aoiNames.length; aoi++) {
+			byte[] indicator = looking[window][aoi];
+			for (int i = 0; i < bins; i++) {
+				series[i] = indicator[i];
+			}
+			double lookingEnergy = center(series, bins, padded);
+			if (deviationEnergy == 0 || lookingEnergy == 0) {
+				continue;
+			}
+			fft.transform(padded, 0);
+			for (int k = 0; k < binCount; k++) {
+				// conj(deviation) * looking
+				productRe[k] = deviationRe[k] * fft.getReal(k) + deviationIm[k] * fft.getImag(k);
+				productIm[k] = deviationRe[k] * fft.getImag(k) - deviationIm[k] * fft.getReal(k);
+			}
+			fft.inverse(productRe, productIm, correlation, 0);
+
+			double norm = Math.sqrt(deviationEnergy * lookingEnergy);
+			int bestLag = 0;
+			double best = Double.NEGATIVE_INFINITY;
+			for (int lag = -maxLag; lag <= maxLag; lag++) {
+				double r = correlation[lag >= 0 ? lag : size + lag];
+				if (r > best) {
+					best = r;
+					bestLag = lag;
+				}
+			}
+			peakLag[window][deviation][aoi] = bestLag / SAMPLE_RATE;
+			peakCorrelation[window][deviation][aoi] = best / norm;
+		}
+	}
+
+	/**
+	 * Copies the first {@code count} values into {@code padded} with their mean removed and zeros after them.
+	 * @return	sum of squares of the centred values
+	 */
+	private static double center(double[] values, int count, double[] padded) {
+		double mean = 0;
+		for (int i = 0; i < count; i++) {
+			mean += values[i];
+		}
+		mean = count > 0 ? mean / count : 0;
+		double energy = 0;
+		for (int i = 0; i < padded.length; i++) {
+			padded[i] = i < count ? values[i] - mean : 0;
+			energy += padded[i] * padded[i];
+		}
+		return energy;
+	}
+
+	/**
+	 * Interpolates the absolute value of a flight channel at the bin centres of a window with one pass over the samples.
+	 * @return	resampled series, null if the window is not covered by the flight
+	 */
+	private double[] resample(int window, Channel channel, int bins) {
+		int n = flight.size();
+		if (bins < 2 || n < 2) {
+			return null;
+		}
+		double first = windowStart[window] + 0.5 / SAMPLE_RATE;
+		double last = windowStart[window] + (bins - 0.5) / SAMPLE_RATE;
+		if (first < flight.getMissionTime(0) || last > flight.getMissionTime(n - 1)) {
+			return null;
+		}
+		double[] series = new double[bins];
+		int cursor = 0;
+		for (int bin = 0; bin < bins; bin++) {
+			double time = windowStart[window] + (bin + 0.5) / SAMPLE_RATE;
+			while (cursor + 2 < n && flight.getMissionTime(cursor + 1) <= time) {
+				cursor++;
+			}
+			double t0 = flight.getMissionTime(cursor);
+			double t1 = flight.getMissionTime(cursor + 1);
+			double v0 = flight.getValue(channel, cursor);
+			double v1 = flight.getValue(channel, cursor + 1);
+			double fraction = t1 > t0 ? (time - t0) / (t1 - t0) : 0;
+			series[bin] = Math.abs(v0 + fraction * (v1 - v0));
+		}
+		return series;
+	}
+
+	/**
+	 * @return csv header of the result rows
+	 */
+	public static String[] getHeaders() {
+		return new String[] {"Source", "Window", "AOI", "Deviation", "Peak_Lag_Seconds", "Peak_Correlation"};
+	}
+
+	/**
+	 * Writes one row per window, deviation channel, and AOI.
+	 * @param writer	csv writer to append to
+	 * @param source	name of the gaze file, written in the first column
+	 */
+	public void writeRows(CSVWriter writer, String source) {
+		if (peakLag == null) {
+			// the file was never finished
+			return;
+		}
+		for (int w = 0; w < windowLabels.length; w++) {
+			for (int d = 0; d < DEVIATIONS.length; d++) {
+				for (int aoi = 0; aoi < aoiNames.length; aoi++) {
+					boolean found = !Double.isNaN(peakLag[w][d][aoi]);
+					writer.writeNext(new String[] {
+						source,
+						windowLabels[w],
+						aoiNames[aoi],
+						DEVIATIONS[d].toString(),
+						found ? String.valueOf(peakLag[w][d][aoi]) : "",
+						found ? String.valueOf(peakCorrelation[w][d][aoi]) : ""
+					});
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the results of several gaze files of one pilot to a single csv file.
+	 * @param outputFile	path of the csv file to write
+	 * @param stages		finished stages, one per gaze file
+	 * @param sources		gaze file names, in the same order as the stages
+	 */
+	public static void writeToFile(String outputFile, List<DeviationGazeCorrelation> stages, List<String> sources) throws IOException {
+		if (stages.isEmpty()) {
+			return;
+		}
+		try (CSVWriter writer = new CSVWriter(new FileWriter(new File(outputFile)))) {
+			writer.writeNext(getHeaders());
+			for (int i = 0; i < stages.size(); i++) {
+				stages.get(i).writeRows(writer, sources.get(i));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,206 @@
+package scoring.scoringUpdated;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import scoring.FlightDataPoint;
+
+/**
+ * A flight's altitude, airspeed, and localizer/glideslope deflections resampled onto a fixed DME grid.
+ *
+ * Grid point {@code i} sits at {@code startDme - i * step} nautical miles. Because every flight is
+ * projected onto the same grid, profiles can be compared bin by bin regardless of how fast the pilot
+ * flew or how often X-Plane logged data. Bins the flight never crossed hold NaN.
+ */
+public class DmeProfile implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	private static final double DEFAULT_STEP = 0.1;
+
+	/**
+	 * Channels that are resampled.
+	 */
+	public enum Channel {
+		ALTITUDE,
+		AIRSPEED,
+		HDEF,
+		VDEF
+	}
+
+	private final double startDme;
+	private final double step;
+	// [channel][bin]
+	private final double[][] values;
+
+	private DmeProfile(double startDme, double step, double[][] values) {
+		this.startDme = startDme;
+		this.step = step;
+		this.values = values;
+	}
+
+	/**
+	 * Resamples a flight onto a grid from the initial approach fix down to the DME station every 0.1 nm.
+	 * @param data	flight data to resample
+	 * @return		resampled profile
+	 */
+	public static DmeProfile resample(FlightDataUpdated data) {
+		return resample(data, ParserUpdated.getInitialAppFixDME(), 0, DEFAULT_STEP);
+	}
+
+	/**
+	 * Resamples a flight onto a DME grid with linear interpolation, in a single pass over the data points.
+	 * Only segments where the DME is decreasing (flying toward the runway) fill bins, and each bin is
+	 * filled from the first segment that crosses it.
+	 * @param data		flight data to resample
+	 * @param startDme	DME of the first grid point
+	 * @param endDme	DME of the last grid point, must be smaller than startDme
+	 * @param step		distance between grid points in nautical miles
+	 * @return			resampled profile
+	 */
+	public static DmeProfile resample(FlightDataUpdated data, double startDme, double endDme, double step) {
+		int bins = binCount(startDme, endDme, step);
+		double[][] values = new double[Channel.values().length][bins];
+		for (double[] column : values) {
+			Arrays.fill(column, Double.NaN);
+		}
+
+		Iterator<FlightDataPoint> points = new PhaseIterator(data);
+		if (!points.hasNext()) {
+			return new DmeProfile(startDme, step, values);
+		}
+		FlightDataPoint previous = points.next();
+		int next = 0;
+		while (points.hasNext() && next < bins) {
+			FlightDataPoint current = points.next();
+			double fromDme = previous.getDme();
+			double toDme = current.getDme();
+			if (toDme < fromDme) {
+				// grid points above this segment were never reached
+				while (next < bins && startDme - next * step > fromDme) {
+					next++;
+				}
+				while (next < bins && startDme - next * step >= toDme) {
+					double fraction = (fromDme - (startDme - next * step)) / (fromDme - toDme);
+					values[Channel.ALTITUDE.ordinal()][next] = lerp(previous.getAltitude(), current.getAltitude(), fraction);
+					values[Channel.AIRSPEED.ordinal()][next] = lerp(previous.getAirspeed(), current.getAirspeed(), fraction);
+					values[Channel.HDEF.ordinal()][next] = lerp(previous.getHdef(), current.getHdef(), fraction);
+					values[Channel.VDEF.ordinal()][next] = lerp(previous.getVdef(), current.getVdef(), fraction);
+					next++;
+				}
+			}
+			previous = current;
+		}
+		return new DmeProfile(startDme, step, values);
+	}
+
+	private static double lerp(double from, double to, double fraction) {
+		return from + (to - from) * fraction;
+	}
+
+	static int binCount(double startDme, double endDme, double step) {
+		if (step <= 0 || endDme >= startDme) {
+			throw new IllegalArgumentException("DME grid must run from a larger to a smaller distance");
+		}
+		// small tolerance so that an end point that is a whole number of steps away is included
+		return (int) Math.floor((startDme - endDme) / step + 1e-9) + 1;
+	}
+
+	/**
+	 * @param other	profile to compare with
+	 * @return		whether the other profile uses the same grid as this one
+	 */
+	public boolean sameGrid(DmeProfile other) {
+		return startDme == other.startDme && step == other.step && getBinCount() == other.getBinCount();
+	}
+
+	public double getStartDme() {
+		return startDme;
+	}
+
+	public double getStep() {
+		return step;
+	}
+
+	public int getBinCount() {
+		return values[0].length;
+	}
+
+	/**
+	 * @param bin	grid index
+	 * @return		DME of the grid point
+	 */
+	public double getDme(int bin) {
+		return startDme - bin * step;
+	}
+
+	/**
+	 * @param channel	resampled channel
+	 * @param bin		grid index
+	 * @return			channel value at the grid point, or NaN if the flight did not cross it
+	 */
+	public double getValue(Channel channel, int bin) {
+		return values[channel.ordinal()][bin];
+	}
+
+	/**
+	 * Writes the profile to a file so it can be aggregated into a corridor later.
+	 * @param outputFile	path of the file to write
+	 */
+	public void writeToFile(String outputFile) throws IOException {
+		try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(outputFile))) {
+			out.writeObject(this);
+		}
+	}
+
+	/**
+	 * Reads a profile previously written with {@link #writeToFile(String)}.
+	 * @param inputFile	path of the file to read
+	 * @return			the profile
+	 */
+	public static DmeProfile readFromFile(String inputFile) throws IOException, ClassNotFoundException {
+		try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(inputFile))) {
+			return (DmeProfile) in.readObject();
+		}
+	}
+
+	/**
+	 * Walks the stepdown, final approach, roundout, and landing lists in order without copying them.
+	 */
+	private static class PhaseIterator implements Iterator<FlightDataPoint> {
+
+		private final Iterator<?>[] phases;
+		private int phase = 0;
+
+		PhaseIterator(FlightDataUpdated data) {
+			phases = new Iterator<?>[] {
+				data.getStepdownData().iterator(),
+				data.getApproachData().iterator(),
+				data.getRoundoutData().iterator(),
+				data.getLandingData().iterator()
+			};
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (phase < phases.length && !phases[phase].hasNext()) {
+				phase++;
+			}
+			return phase < phases.length;
+		}
+
+		@Override
+		public FlightDataPoint next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return (FlightDataPoint) phases[phase].next();
+		}
+	}
+
+}
@@ -0,0 +1,363 @@
+package scoring.scoringUpdated;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import com.opencsv.CSVWriter;
+import scoring.scoringUpdated.FlightRangeIndex.Channel;
+
+/**
+ * Dynamic time warping (DTW) similarity between a trainee's approach and a library of reference approaches.
+ *
+ * Flights are resampled to a fixed number of points and each channel is divided by a typical deviation,
+ * so airspeed, vertical speed, bank, and both deflections contribute on a comparable scale. Warping is
+ * limited to a Sakoe-Chiba band. The nearest reference is found with the usual cascade: LB_Kim, then
+ * LB_Keogh against the reference's precomputed envelope, then DTW that abandons as soon as it cannot
+ * beat the best distance found so far. Different trainees are matched in parallel.
+ */
+public class DtwSimilarity {
+
+	private static final int DEFAULT_LENGTH = 256;
+	private static final double DEFAULT_BAND = 0.1;
+
+	// typical deviation of each channel, in FlightRangeIndex.Channel order
+	private static final double[] CHANNEL_SCALES = {
+		10,		// airspeed, knots
+		500,	// vertical speed, feet per minute
+		10,		// bank, degrees
+		1,		// localizer deflection, dots
+		1		// glideslope deflection, dots
+	};
+
+	private final int length;
+	private final int window;
+
+	public DtwSimilarity() {
+		this(DEFAULT_LENGTH, DEFAULT_BAND);
+	}
+
+	/**
+	 * @param length	number of points every flight is resampled to
+	 * @param band		warping window as a fraction of the length
+	 */
+	public DtwSimilarity(int length, double band) {
+		this.length = length;
+		this.window = Math.max(1, (int) Math.round(length * band));
+	}
+
+	/**
+	 * Resamples a flight to this similarity's length, uniformly in mission time.
+	 * @param index	range index of the flight
+	 * @return		channel-major series, [channel][point]
+	 */
+	public double[][] toSeries(FlightRangeIndex index) {
+		Channel[] channels = Channel.values();
+		double[][] series = new double[channels.length][length];
+		int n = index.size();
+		if (n == 0) {
+			return series;
+		}
+		double start = index.getStartTime();
+		double span = index.getEndTime() - start;
+		int j = 0;
+		for (int t = 0; t < length; t++) {
+			double time = start + (length == 1 ? 0 : span * t / (length - 1));
+			while (j < n - 2 && index.getMissionTime(j + 1) < time) {
+				j++;
+			}
+			int k = Math.min(j + 1, n - 1);
+			double t0 = index.getMissionTime(j);
+			double t1 = index.getMissionTime(k);
+			double fraction = t1 > t0 ? Math.min(1, Math.max(0, (time - t0) / (t1 - t0))) : 0;
+			for (Channel channel : channels) {
+				double v0 = index.getValue(channel, j);
+				double v1 = index.getValue(channel, k);
+				series[channel.ordinal()][t] = (v0 + (v1 - v0) * fraction) / CHANNEL_SCALES[channel.ordinal()];
+			}
+		}
+		return series;
+	}
+
+	/**
+	 * Wraps a series as a reference by computing its LB_Keogh envelope once.
+	 * @param name		label reported for matches against this reference
+	 * @param series	series from {@link #toSeries(FlightRangeIndex)}
+	 * @return			reference ready for matching
+	 */
+	public Reference reference(String name, double[][] series) {
+		return new Reference(name, series, window);
+	}
+
+	/**
+	 * Full banded DTW distance between two series of this similarity's length.
+	 * @param a	first series
+	 * @param b	second series
+	 * @return	Euclidean DTW distance
+	 */
+	public double distance(double[][] a, double[][] b) {
+		return Math.sqrt(dtw(a, b, Double.POSITIVE_INFINITY));
+	}
+
+	/**
+	 * Finds the reference closest to a query.
+	 * @param query			series to match
+	 * @param references	reference library
+	 * @return				best match, or null if the library is empty
+	 */
+	public Match nearest(double[][] query, List<Reference> references) {
+		double best = Double.POSITIVE_INFINITY;
+		int bestIndex = -1;
+		for (int r = 0; r < references.size(); r++) {
+			Reference reference = references.get(r);
+			if (lbKim(query, reference.series) >= best) {
+				continue;
+			}
+			if (lbKeogh(query, reference, best) >= best) {
+				continue;
+			}
+			double distance = dtw(query, reference.series, best);
+			if (distance < best) {
+				best = distance;
+				bestIndex = r;
+			}
+		}
+		return bestIndex == -1 ? null : new Match(references.get(bestIndex).name, Math.sqrt(best));
+	}
+
+	/**
+	 * Matches every query against the reference library in parallel.
+	 * @param queries		series to match
+	 * @param references	reference library, shared read-only by all workers
+	 * @return				best match per query, in query order
+	 */
+	public Match[] nearestAll(List<double[][]> queries, List<Reference> references) {
+		return queries.parallelStream()
+			.map(query -> nearest(query, references))
+			.toArray(Match[]::new);
+	}
+
+	/**
+	 * LB_Kim using the first and last points, which every warping path has to align.
+	 */
+	private static double lbKim(double[][] a, double[][] b) {
+		int last = a[0].length - 1;
+		return cost(a, 0, b, 0) + cost(a, last, b, last);
+	}
+
+	/**
+	 * LB_Keogh summed over the channels, abandoned once it reaches the cutoff.
+	 */
+	private static double lbKeogh(double[][] query, Reference reference, double cutoff) {
+		double bound = 0;
+		int n = query[0].length;
+		for (int t = 0; t < n; t++) {
+			for (int c = 0; c < query.length; c++) {
+				double value = query[c][t];
+				if (value > reference.upper[c][t]) {
+					double d = value - reference.upper[c][t];
+					bound += d * d;
+				} else if (value < reference.lower[c][t]) {
+					double d = reference.lower[c][t] - value;
+					bound += d * d;
+				}
+			}
+			if (bound >= cutoff) {
+				return bound;
+			}
+		}
+		return bound;
+	}
+
+	/**
+	 * Banded DTW over two rolling rows, touching only the band of each row. Returns infinity as soon as a whole row is at or above the cutoff.
+	 * @return	squared DTW distance, or infinity if abandoned
+	 */
+	private double dtw(double[][] a, double[][] b, double cutoff) {
+		int n = a[0].length;
+		double[] previous = new double[n];
+		double[] current = new double[n];
+		Arrays.fill(previous, Double.POSITIVE_INFINITY);
+		Arrays.fill(current, Double.POSITIVE_INFINITY);
+
+		for (int i = 0; i < n; i++) {
+			int from = Math.max(0, i - window);
+			int to = Math.min(n - 1, i + window);
+			// the rows are reused, so only the cells just outside the band, which the band reads, are reset
+			if (from > 0) {
+				current[from - 1] = Double.POSITIVE_INFINITY;
+			}
+			if (to < n - 1) {
+				current[to + 1] = Double.POSITIVE_INFINITY;
+			}
+			double rowMin = Double.POSITIVE_INFINITY;
+			for (int j = from; j <= to; j++) {
+				double best;
+				if (i == 0 && j == 0) {
+					best = 0;
+				} else {
+					best = previous[j];
+					if (j > 0) {
+						best = Math.min(best, Math.min(previous[j - 1], current[j - 1]));
+					}
+				}
+				current[j] = best + cost(a, i, b, j);
+				rowMin = Math.min(rowMin, current[j]);
+			}
+			if (rowMin >= cutoff) {
+				return Double.POSITIVE_INFINITY;
+			}
+			double[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return previous[n - 1];
+	}
+
+	private static double cost(double[][] a, int i, double[][] b, int j) {
+		double sum = 0;
+		for (int c = 0; c < a.length; c++) {
+			double d = a[c][i] - b[c][j];
+			sum += d * d;
+		}
+		return sum;
+	}
+
+	/**
+	 * A reference series and its upper and lower envelopes over the warping window.
+	 */
+	public static class Reference {
+
+		private final String name;
+		private final double[][] series;
+		private final double[][] upper;
+		private final double[][] lower;
+
+		private Reference(String name, double[][] series, int window) {
+			this.name = name;
+			this.series = series;
+			this.upper = new double[series.length][];
+			this.lower = new double[series.length][];
+			for (int c = 0; c < series.length; c++) {
+				upper[c] = envelope(series[c], window, true);
+				lower[c] = envelope(series[c], window, false);
+			}
+		}
+
+		/**
+		 * Sliding-window max (or min) with a monotonic deque of indexes, O(n).
+		 */
+		private static double[] envelope(double[] values, int window, boolean upper) {
+			int n = values.length;
+			double[] result = new double[n];
+			int[] deque = new int[n];
+			int head = 0;
+			int tail = 0;
+			int next = 0;
+			for (int t = 0; t < n; t++) {
+				int right = Math.min(n - 1, t + window);
+				while (next <= right) {
+					while (tail > head && (upper ? values[deque[tail - 1]] <= values[next] : values[deque[tail - 1]] >= values[next])) {
+						tail--;
+					}
+					deque[tail++] = next++;
+				}
+				while (deque[head] < t - window) {
+					head++;
+				}
+				result[t] = values[deque[head]];
+			}
+			return result;
+		}
+
+		public String getName() {
+			return name;
+		}
+	}
+
+	/**
+	 * Closest reference for a query.
+	 */
+	public static class Match {
+
+		private final String reference;
+		private final double distance;
+
+		private Match(String reference, double distance) {
+			this.reference = reference;
+			this.distance = distance;
+		}
+
+		public String getReference() {
+			return reference;
+		}
+
+		public double getDistance() {
+			return distance;
+		}
+	}
+
+	/**
+	 * Matches every pilot under the output directory against the reference pilots and writes dtw_similarity.csv.
+	 * Uses the range index each run of {@link ScoreRunnerUpdated} saves in the pilot's trim folder.
+	 * @param args[0] output directory that holds one folder per pilot
+	 * @param args[1..n] ids of the reference (instructor) pilots
+	 */
+	public static void main(String[] args) {
+		if (args.length < 2 || !new File(args[0]).isDirectory()) {
+			System.out.println("Output directory or reference pilots not specified.");
+			return;
+		}
+
+		DtwSimilarity similarity = new DtwSimilarity();
+		List<String> referenceIds = Arrays.asList(Arrays.copyOfRange(args, 1, args.length));
+		Map<String, double[][]> trainees = new TreeMap<>();
+		List<Reference> references = new ArrayList<>();
+
+		File[] pilotFolders = new File(args[0]).listFiles(File::isDirectory);
+		for (File folder : pilotFolders == null ? new File[0] : pilotFolders) {
+			String pid = folder.getName();
+			File indexFile = new File(folder, pid + "_trim/" + pid + "_range_index.ser");
+			if (!indexFile.exists()) {
+				continue;
+			}
+			try {
+				double[][] series = similarity.toSeries(FlightRangeIndex.readFromFile(indexFile.getPath()));
+				if (referenceIds.contains(pid)) {
+					references.add(similarity.reference(pid, series));
+				} else {
+					trainees.put(pid, series);
+				}
+			} catch (IOException | ClassNotFoundException e) {
+				System.out.println("Unable to read range index " + indexFile + ": " + e);
+			}
+		}
+		if (references.isEmpty()) {
+			System.out.println("No range index found for the reference pilots.");
+			return;
+		}
+
+		List<String> pids = new ArrayList<>(trainees.keySet());
+		Match[] matches = similarity.nearestAll(new ArrayList<>(trainees.values()), references);
+
+		String outputFile = args[0] + "/dtw_similarity.csv";
+		try (
+			FileWriter outputFileWriter = new FileWriter(new File(outputFile));
+			CSVWriter outputCSVWriter = new CSVWriter(outputFileWriter);
+		){
+			outputCSVWriter.writeNext(new String[] {"PID", "Nearest_Reference", "DTW_Distance"});
+			for (int i = 0; i < matches.length; i++) {
+				outputCSVWriter.writeNext(new String[] {
+					pids.get(i), matches[i].getReference(), String.valueOf(matches[i].getDistance())
+				});
+			}
+		} catch (IOException e) {
+			System.out.println("Error writing to file '" + outputFile + "'");
+		}
+	}
+
+}
@@ -0,0 +1,244 @@
+package scoring.scoringUpdated;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import com.opencsv.CSVWriter;
+import scoring.scoringUpdated.FlightRangeIndex.Channel;
+import utils.utilsUpdated.AoiTransitionStage;
+import utils.utilsUpdated.GazeWindowTable;
+import utils.utilsUpdated.PupilStage;
+
+/**
+ * Cohort feature table for Weka, one row per pilot and window, written as an ARFF file and a csv file.
+ *
+ * Each row combines the flight statistics of the window (from the {@link FlightRangeIndex}, over the mission
+ * time range given by the {@link MissionClock}), the phase score, and the gaze features of one gaze file
+ * (AOI transitions and pupil dilation). The attribute list is fixed, so files written by separate runs line
+ * up; values that a pilot does not have are written as missing ({@code ?} in ARFF, empty in csv).
+ *
+ * Rows are appended as each pilot finishes and nothing is kept between pilots. Appends take an exclusive
+ * lock on each file, and the header is written by whichever run finds the file empty, so several
+ * {@code ScoreRunnerUpdated} processes can share one pair of files.
+ */
+public class FeatureExport {
+
+	private static final String RELATION = "pilot_features";
+	private static final String MISSING_ARFF = "?";
+
+	// threads of one JVM cannot take overlapping file locks, so they queue here first
+	private static final Object APPEND_LOCK = new Object();
+
+	private final String arffFile;
+	private final String csvFile;
+	private final List<String> windowLabels;
+
+	/**
+	 * @param arffFile		ARFF file to append to
+	 * @param csvFile		csv file to append to
+	 * @param windowLabels	windows exported for every pilot, the values of the nominal window attribute
+	 */
+	public FeatureExport(String arffFile, String csvFile, List<String> windowLabels) {
+		this.arffFile = arffFile;
+		this.csvFile = csvFile;
+		this.windowLabels = new ArrayList<>(windowLabels);
+	}
+
+	/**
+	 * @return names of the numeric attributes, in the order of {@link FeatureVector#getValues()}
+	 */
+	public static String[] getAttributeNames() {
+		List<String> names = new ArrayList<>();
+		names.add("Window_Seconds");
+		names.add("Phase_Score");
+		names.add("Flight_Samples");
+		for (Channel channel : Channel.values()) {
+			names.add("Mean_" + channel);
+			names.add("Min_" + channel);
+			names.add("Max_" + channel);
+		}
+		names.add("Fixations");
+		names.add("Transitions");
+		names.add("Stationary_Entropy");
+		names.add("Transition_Entropy");
+		names.add("Mean_Pupil_mm");
+		names.add("Peak_Pupil_mm");
+		names.add("Mean_Dilation_mm");
+		names.add("Peak_Dilation_mm");
+		names.add("Mean_Dilation_Percent");
+		return names.toArray(new String[0]);
+	}
+
+	/**
+	 * Builds the feature vectors of one pilot.
+	 * @param pilot			pilot id
+	 * @param score			finished score calculation of the pilot
+	 * @param windows		windows the gaze files were trimmed into
+	 * @param transitions	AOI transition stage of the gaze file, null if there is none
+	 * @param pupils		pupil stage of the same gaze file, null if there is none
+	 * @return				one vector per exported window that the pilot has
+	 */
+	public List<FeatureVector> build(String pilot, ScoreCalculationUpdated score, GazeWindowTable windows,
+			AoiTransitionStage transitions, PupilStage pupils) {
+		FlightDataUpdated flightData = score.getFlightData();
+		FlightRangeIndex index = flightData.getRangeIndex();
+		MissionClock clock = flightData.getMissionClock();
+		int attributes = getAttributeNames().length;
+		List<FeatureVector> vectors = new ArrayList<>();
+		for (int w = 0; w < windows.size(); w++) {
+			String label = windows.getLabel(w);
+			if (!windowLabels.contains(label)) {
+				continue;
+			}
+			double[] values = new double[attributes];
+			int c = 0;
+			values[c++] = Duration.between(windows.getStart(w), windows.getEnd(w)).toMillis() / 1000.0;
+			values[c++] = phaseScore(score, label);
+
+			double from = clock != null ? clock.toMissionTime(windows.getStart(w)) : Double.NaN;
+			double to = clock != null ? clock.toMissionTime(windows.getEnd(w)) : Double.NaN;
+			boolean flight = clock != null && index.count(from, to) > 0;
+			values[c++] = flight ? index.count(from, to) : Double.NaN;
+			for (Channel channel : Channel.values()) {
+				values[c++] = flight ? index.mean(channel, from, to) : Double.NaN;
+				values[c++] = flight ? index.min(channel, from, to) : Double.NaN;
+				values[c++] = flight ? index.max(channel, from, to) : Double.NaN;
+			}
+
+			int t = transitions != null ? transitions.indexOf(label) : -1;
+			values[c++] = t != -1 ? transitions.getFixationCount(t) : Double.NaN;
+			values[c++] = t != -1 ? transitions.getTransitionCount(t) : Double.NaN;
+			values[c++] = t != -1 ? transitions.getStationaryEntropy(t) : Double.NaN;
+			values[c++] = t != -1 ? transitions.getTransitionEntropy(t) : Double.NaN;
+
+			int p = pupils != null ? pupils.indexOf(label) : -1;
+			double mean = p != -1 ? pupils.getMean(p) : Double.NaN;
+			double peak = p != -1 ? pupils.getPeak(p) : Double.NaN;
+			double baseline = pupils != null ? pupils.getBaseline() : Double.NaN;
+			values[c++] = mean;
+			values[c++] = peak;
+			values[c++] = mean - baseline;
+			values[c++] = peak - baseline;
+			values[c++] = (mean - baseline) / baseline * 100;
+
+			vectors.add(new FeatureVector(pilot, label, values));
+		}
+		return vectors;
+	}
+
+	private static double phaseScore(ScoreCalculationUpdated score, String label) {
+		switch (label) {
+			case "stepdown":		return score.getStepdownPercent();
+			case "finalapproach":	return score.getFinalApproachPercent();
+			case "roundout":		return score.getRoundoutPercent();
+			case "landing":			return score.getLandingPhasePercent();
+			default:				return Double.NaN;
+		}
+	}
+
+	/**
+	 * Appends feature vectors to the ARFF and csv files, writing the headers first if a file is empty.
+	 * @param vectors	rows to append
+	 */
+	public void append(List<FeatureVector> vectors) throws IOException {
+		StringBuilder arffRows = new StringBuilder();
+		for (FeatureVector vector : vectors) {
+			arffRows.append(quote(vector.getPilot())).append(',').append(quote(vector.getWindow()));
+			for (double value : vector.getValues()) {
+				arffRows.append(',').append(Double.isNaN(value) ? MISSING_ARFF : String.valueOf(value));
+			}
+			arffRows.append('\n');
+		}
+
+		StringWriter csvRows = new StringWriter();
+		try (CSVWriter writer = new CSVWriter(csvRows)) {
+			for (FeatureVector vector : vectors) {
+				double[] values = vector.getValues();
+				String[] row = new String[values.length + 2];
+				row[0] = vector.getPilot();
+				row[1] = vector.getWindow();
+				for (int i = 0; i < values.length; i++) {
+					row[i + 2] = Double.isNaN(values[i]) ? "" : String.valueOf(values[i]);
+				}
+				writer.writeNext(row);
+			}
+		}
+
+		synchronized (APPEND_LOCK) {
+			appendLocked(arffFile, arffHeader(), arffRows.toString());
+			appendLocked(csvFile, csvHeader(), csvRows.toString());
+		}
+	}
+
+	/**
+	 * Appends text to a file under an exclusive lock, preceded by the header if the file is empty.
+	 */
+	private static void appendLocked(String file, String header, String rows) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+			FileLock lock = channel.lock();
+			try {
+				if (channel.size() == 0) {
+					write(channel, header);
+				}
+				write(channel, rows);
+			} finally {
+				lock.release();
+			}
+		}
+	}
+
+	private static void write(FileChannel channel, String text) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private String arffHeader() {
+		StringBuilder header = new StringBuilder();
+		header.append("@relation ").append(RELATION).append("\n\n");
+		header.append("@attribute pilot string\n");
+		header.append("@attribute window {");
+		for (int i = 0; i < windowLabels.size(); i++) {
+			header.append(i > 0 ? "," : "").append(quote(windowLabels.get(i)));
+		}
+		header.append("}\n");
+		for (String name : getAttributeNames()) {
+			header.append("@attribute ").append(name).append(" numeric\n");
+		}
+		header.append("\n@data\n");
+		return header.toString();
+	}
+
+	private static String csvHeader() throws IOException {
+		String[] names = getAttributeNames();
+		String[] header = new String[names.length + 2];
+		header[0] = "Pilot";
+		header[1] = "Window";
+		System.arraycopy(names, 0, header, 2, names.length);
+		StringWriter text = new StringWriter();
+		try (CSVWriter writer = new CSVWriter(text)) {
+			writer.writeNext(header);
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Quotes an ARFF string or nominal value unless it is a plain word.
+	 */
+	private static String quote(String value) {
+		if (value.matches("[A-Za-z0-9_.\\-]+")) {
+			return value;
+		}
+		return "'" + value.replace("\\", "\\\\").replace("'", "\\'") + "'";
+	}
+
+}
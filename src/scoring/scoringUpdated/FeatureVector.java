@@ -0,0 +1,36 @@
+package scoring.scoringUpdated;
+
+/**
+ * Numeric features of one pilot in one window, in the attribute order of {@link FeatureExport#getAttributeNames()}.
+ * Missing values are NaN.
+ */
+public class FeatureVector {
+
+	private final String pilot;
+	private final String window;
+	private final double[] values;
+
+	/**
+	 * @param pilot		pilot id
+	 * @param window	window label
+	 * @param values	feature values, NaN where missing
+	 */
+	public FeatureVector(String pilot, String window, double[] values) {
+		this.pilot = pilot;
+		this.window = window;
+		this.values = values;
+	}
+
+	public String getPilot() {
+		return pilot;
+	}
+
+	public String getWindow() {
+		return window;
+	}
+
+	public double[] getValues() {
+		return values.clone();
+	}
+
+}
@@ -25,6 +25,9 @@ import scoring.FlightDataPoint;
  * <p>
  * 4. Setter for final approach timestamp: adds {@code setBeginFinalApproachTimestamp} so
  *    {@link ParserUpdated#setTimestamps} can assign this value after parsing.
+ * <p>
+ * 5. Mission clock: adds a {@link MissionClock} that maps mission time to wall-clock time,
+ *    so individual samples can be placed on the gaze time line by {@link GazeFlightJoin}.
  */
 
 public class FlightDataUpdated {
@@ -36,6 +39,7 @@ public class FlightDataUpdated {
    private LocalDateTime beginRoundOutTimestamp = null;
    private LocalDateTime beginLandingTimestamp = null;
    private LocalDateTime endFlightTimestamp = null;
+   private MissionClock missionClock = null;
 
    // Stepdown portion
    private List<FlightDataPoint> stepdownData;
@@ -60,6 +64,8 @@ public class FlightDataUpdated {
    private double timeRoundout = 0;
    private double timeLandingPhase = 0;
 
+   // Range-query index over the phase data, built on first use
+   private FlightRangeIndex rangeIndex = null;
 
    public FlightDataUpdated(List<FlightDataPoint> stepdown, List<FlightDataPoint> approach,
                      List<FlightDataPoint> roundout, List<FlightDataPoint> landing,
@@ -136,6 +142,17 @@ public class FlightDataUpdated {
       this.endFlightTimestamp = endFlightTimestamp;
    }
 
+   public void setMissionClock(MissionClock missionClock) {
+      this.missionClock = missionClock;
+   }
+
+   /**
+    * @return mapping between mission time and wall-clock time, null if the datarefs file had no system time
+    */
+   public MissionClock getMissionClock() {
+      return missionClock;
+   }
+
    public List<FlightDataPoint> getStepdownData() {
       return stepdownData;
    }
@@ -200,4 +217,17 @@ public class FlightDataUpdated {
       return timeLandingPhase;
    }
 
+   /**
+    * Returns the range-query index over all four phases. The index is built on the first call
+    * and reused afterwards.
+    *
+    * @return range-query index for this flight
+    */
+   public FlightRangeIndex getRangeIndex() {
+      if (rangeIndex == null) {
+         rangeIndex = FlightRangeIndex.build(this);
+      }
+      return rangeIndex;
+   }
+
 }
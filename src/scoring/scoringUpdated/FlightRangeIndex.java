@@ -0,0 +1,287 @@
+package scoring.scoringUpdated;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import scoring.FlightDataPoint;
+
+/**
+ * Immutable range-query index over the scored portion of a flight.
+ *
+ * The flight is stored column-wise (one primitive array per channel, ordered by mission time).
+ * Min/max queries are answered in O(1) from a sparse table, means in O(1) from prefix sums, and
+ * mission-time bounds are mapped to sample indexes with a binary search, so any query such as
+ * "max bank between t1 and t2" costs O(log n) instead of a pass over the phase lists.
+ * <p>
+ * Only the raw columns are serialized; the lookup tables are rebuilt when the index is read back.
+ */
+public class FlightRangeIndex implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Channels that can be queried.
+	 */
+	public enum Channel {
+		AIRSPEED,
+		VERT_SPEED,
+		BANK,
+		HDEF,
+		VDEF
+	}
+
+	private final double[] missionTimes;
+	// [channel][sample]
+	private final double[][] values;
+
+	// lookup tables, rebuilt after deserialization
+	private transient double[][] prefixSums;	// [channel][sample + 1]
+	private transient double[][][] minTable;	// [channel][level][sample]
+	private transient double[][][] maxTable;	// [channel][level][sample]
+
+	private FlightRangeIndex(double[] missionTimes, double[][] values) {
+		this.missionTimes = missionTimes;
+		this.values = values;
+		buildTables();
+	}
+
+	/**
+	 * Builds the index over the stepdown, final approach, roundout, and landing data of a flight.
+	 * @param data	flight data to index
+	 * @return		range index ordered by mission time
+	 */
+	public static FlightRangeIndex build(FlightDataUpdated data) {
+		List<FlightDataPoint> points = new ArrayList<>(data.getStepdownData().size()
+			+ data.getApproachData().size()
+			+ data.getRoundoutData().size()
+			+ data.getLandingData().size());
+		points.addAll(data.getStepdownData());
+		points.addAll(data.getApproachData());
+		points.addAll(data.getRoundoutData());
+		points.addAll(data.getLandingData());
+		return build(points);
+	}
+
+	/**
+	 * Builds the index over a list of data points. The lookups need the points ordered by mission time, so
+	 * the order is checked once and an unordered list is indexed from a sorted copy.
+	 * @param points	data points to index
+	 * @return			range index over the points
+	 */
+	public static FlightRangeIndex build(List<FlightDataPoint> points) {
+		if (!isOrdered(points)) {
+			points = new ArrayList<>(points);
+			points.sort(Comparator.comparingDouble(FlightDataPoint::getMissn_time));
+		}
+		int n = points.size();
+		double[] times = new double[n];
+		double[][] columns = new double[Channel.values().length][n];
+		int i = 0;
+		for (FlightDataPoint point : points) {
+			times[i] = point.getMissn_time();
+			columns[Channel.AIRSPEED.ordinal()][i] = point.getAirspeed();
+			columns[Channel.VERT_SPEED.ordinal()][i] = point.getVertSpeed();
+			columns[Channel.BANK.ordinal()][i] = point.getBank();
+			columns[Channel.HDEF.ordinal()][i] = point.getHdef();
+			columns[Channel.VDEF.ordinal()][i] = point.getVdef();
+			i++;
+		}
+		return new FlightRangeIndex(times, columns);
+	}
+
+	private static boolean isOrdered(List<FlightDataPoint> points) {
+		double previous = Double.NEGATIVE_INFINITY;
+		for (FlightDataPoint point : points) {
+			if (point.getMissn_time() < previous) {
+				return false;
+			}
+			previous = point.getMissn_time();
+		}
+		return true;
+	}
+
+	private void buildTables() {
+		int n = missionTimes.length;
+		int channels = values.length;
+		int levels = n > 0 ? 32 - Integer.numberOfLeadingZeros(n) : 0;
+		prefixSums = new double[channels][n + 1];
+		minTable = new double[channels][levels][];
+		maxTable = new double[channels][levels][];
+
+		for (int c = 0; c < channels; c++) {
+			double[] column = values[c];
+			for (int i = 0; i < n; i++) {
+				prefixSums[c][i + 1] = prefixSums[c][i] + column[i];
+			}
+			if (levels == 0) {
+				continue;
+			}
+			minTable[c][0] = column;
+			maxTable[c][0] = column;
+			for (int k = 1; k < levels; k++) {
+				int half = 1 << (k - 1);
+				int size = n - (1 << k) + 1;
+				double[] prevMin = minTable[c][k - 1];
+				double[] prevMax = maxTable[c][k - 1];
+				double[] curMin = new double[size];
+				double[] curMax = new double[size];
+				for (int i = 0; i < size; i++) {
+					curMin[i] = Math.min(prevMin[i], prevMin[i + half]);
+					curMax[i] = Math.max(prevMax[i], prevMax[i + half]);
+				}
+				minTable[c][k] = curMin;
+				maxTable[c][k] = curMax;
+			}
+		}
+	}
+
+	/**
+	 * @param channel	channel to query
+	 * @param fromTime	start of the range in mission time (inclusive)
+	 * @param toTime	end of the range in mission time (inclusive)
+	 * @return			minimum channel value in the range, or NaN if the range holds no samples
+	 */
+	public double min(Channel channel, double fromTime, double toTime) {
+		int lo = firstIndexAtOrAfter(fromTime);
+		int hi = lastIndexAtOrBefore(toTime);
+		if (lo > hi) {
+			return Double.NaN;
+		}
+		int k = 31 - Integer.numberOfLeadingZeros(hi - lo + 1);
+		double[] level = minTable[channel.ordinal()][k];
+		return Math.min(level[lo], level[hi - (1 << k) + 1]);
+	}
+
+	/**
+	 * @param channel	channel to query
+	 * @param fromTime	start of the range in mission time (inclusive)
+	 * @param toTime	end of the range in mission time (inclusive)
+	 * @return			maximum channel value in the range, or NaN if the range holds no samples
+	 */
+	public double max(Channel channel, double fromTime, double toTime) {
+		int lo = firstIndexAtOrAfter(fromTime);
+		int hi = lastIndexAtOrBefore(toTime);
+		if (lo > hi) {
+			return Double.NaN;
+		}
+		int k = 31 - Integer.numberOfLeadingZeros(hi - lo + 1);
+		double[] level = maxTable[channel.ordinal()][k];
+		return Math.max(level[lo], level[hi - (1 << k) + 1]);
+	}
+
+	/**
+	 * @param channel	channel to query
+	 * @param fromTime	start of the range in mission time (inclusive)
+	 * @param toTime	end of the range in mission time (inclusive)
+	 * @return			mean channel value in the range, or NaN if the range holds no samples
+	 */
+	public double mean(Channel channel, double fromTime, double toTime) {
+		int lo = firstIndexAtOrAfter(fromTime);
+		int hi = lastIndexAtOrBefore(toTime);
+		if (lo > hi) {
+			return Double.NaN;
+		}
+		double[] sums = prefixSums[channel.ordinal()];
+		return (sums[hi + 1] - sums[lo]) / (hi - lo + 1);
+	}
+
+	/**
+	 * @param fromTime	start of the range in mission time (inclusive)
+	 * @param toTime	end of the range in mission time (inclusive)
+	 * @return			number of samples in the range
+	 */
+	public int count(double fromTime, double toTime) {
+		return Math.max(0, lastIndexAtOrBefore(toTime) - firstIndexAtOrAfter(fromTime) + 1);
+	}
+
+	private int firstIndexAtOrAfter(double time) {
+		int i = Arrays.binarySearch(missionTimes, time);
+		if (i < 0) {
+			return -i - 1;
+		}
+		while (i > 0 && missionTimes[i - 1] == time) {
+			i--;
+		}
+		return i;
+	}
+
+	private int lastIndexAtOrBefore(double time) {
+		int i = Arrays.binarySearch(missionTimes, time);
+		if (i < 0) {
+			return -i - 2;
+		}
+		while (i < missionTimes.length - 1 && missionTimes[i + 1] == time) {
+			i++;
+		}
+		return i;
+	}
+
+	public int size() {
+		return missionTimes.length;
+	}
+
+	/**
+	 * @param i	sample index
+	 * @return	mission time of the sample
+	 */
+	public double getMissionTime(int i) {
+		return missionTimes[i];
+	}
+
+	/**
+	 * @param channel	channel to read
+	 * @param i			sample index
+	 * @return			channel value of the sample
+	 */
+	public double getValue(Channel channel, int i) {
+		return values[channel.ordinal()][i];
+	}
+
+	/**
+	 * @return mission time of the first indexed sample, or NaN if the index is empty
+	 */
+	public double getStartTime() {
+		return missionTimes.length > 0 ? missionTimes[0] : Double.NaN;
+	}
+
+	/**
+	 * @return mission time of the last indexed sample, or NaN if the index is empty
+	 */
+	public double getEndTime() {
+		return missionTimes.length > 0 ? missionTimes[missionTimes.length - 1] : Double.NaN;
+	}
+
+	/**
+	 * Writes the index to a file so it can be reloaded without re-parsing the flight.
+	 * @param outputFile	path of the file to write
+	 */
+	public void writeToFile(String outputFile) throws IOException {
+		try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(outputFile))) {
+			out.writeObject(this);
+		}
+	}
+
+	/**
+	 * Reads an index previously written with {@link #writeToFile(String)}.
+	 * @param inputFile	path of the file to read
+	 * @return			the range index
+	 */
+	public static FlightRangeIndex readFromFile(String inputFile) throws IOException, ClassNotFoundException {
+		try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(inputFile))) {
+			return (FlightRangeIndex) in.readObject();
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		buildTables();
+	}
+
+}
@@ -0,0 +1,227 @@
+package scoring.scoringUpdated;
+
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import scoring.FlightDataPoint;
+import utils.utilsUpdated.GazeClock;
+import utils.utilsUpdated.GazeCsvReader;
+
+/**
+ * Attaches the aircraft state to every row of a gaze file.
+ *
+ * The flight series and the gaze file are both ordered by time, so they are joined with a single forward
+ * cursor over the flight samples: each gaze row only moves the cursor past the samples it has overtaken,
+ * and the whole join costs O(n + m) with no search per row. Gaze times are mapped to mission time through
+ * the flight's {@link MissionClock} and the {@link GazeClock} of the recording, once per file.
+ *
+ * Each output row is the gaze row followed by the flight channels, either copied from the nearest flight
+ * sample or linearly interpolated between the two samples around the gaze row (heading along the shorter
+ * arc). Rows before the first or after the last flight sample, or inside a gap of more than
+ * {@code MAX_GAP_SECONDS} between samples, get empty flight cells.
+ */
+public class GazeFlightJoin {
+
+	/**
+	 * How flight channels are taken from the samples around a gaze row.
+	 */
+	public enum Mode {
+		NEAREST,
+		INTERPOLATE
+	}
+
+	private static final double MAX_GAP_SECONDS = 2;
+
+	private static final String[] CHANNELS = {
+		"missn_time",
+		"airspeed",
+		"engine",
+		"bank",
+		"groll",
+		"vert_speed",
+		"altitude",
+		"heading",
+		"latitude",
+		"longitude",
+		"dme",
+		"hdef",
+		"vdef"
+	};
+	private static final int HEADING = 7;
+
+	private final double[] missionTimes;
+	// [channel][sample]
+	private final double[][] values;
+	private final MissionClock missionClock;
+	private final Mode mode;
+
+	/**
+	 * @param points		flight samples ordered by mission time
+	 * @param missionClock	mapping between mission time and wall-clock time
+	 * @param mode			nearest sample or linear interpolation
+	 */
+	public GazeFlightJoin(List<FlightDataPoint> points, MissionClock missionClock, Mode mode) {
+		int n = points.size();
+		this.missionTimes = new double[n];
+		this.values = new double[CHANNELS.length][n];
+		this.missionClock = missionClock;
+		this.mode = mode;
+		int i = 0;
+		for (FlightDataPoint point : points) {
+			missionTimes[i] = point.getMissn_time();
+			values[0][i] = point.getMissn_time();
+			values[1][i] = point.getAirspeed();
+			values[2][i] = point.getEngine();
+			values[3][i] = point.getBank();
+			values[4][i] = point.getGroll();
+			values[5][i] = point.getVertSpeed();
+			values[6][i] = point.getAltitude();
+			values[HEADING][i] = point.getHeading();
+			values[8][i] = point.getLatitude();
+			values[9][i] = point.getLongitude();
+			values[10][i] = point.getDme();
+			values[11][i] = point.getHdef();
+			values[12][i] = point.getVdef();
+			i++;
+		}
+	}
+
+	/**
+	 * Joins against the stepdown, final approach, roundout, and landing data of a flight.
+	 * @param data	flight data with its mission clock set
+	 * @param mode	nearest sample or linear interpolation
+	 * @return		join over the scored portion of the flight, or null if the flight has no mission clock
+	 */
+	public static GazeFlightJoin of(FlightDataUpdated data, Mode mode) {
+		if (data.getMissionClock() == null) {
+			return null;
+		}
+		List<FlightDataPoint> points = new ArrayList<>(data.getStepdownData().size()
+			+ data.getApproachData().size()
+			+ data.getRoundoutData().size()
+			+ data.getLandingData().size());
+		points.addAll(data.getStepdownData());
+		points.addAll(data.getApproachData());
+		points.addAll(data.getRoundoutData());
+		points.addAll(data.getLandingData());
+		return new GazeFlightJoin(points, data.getMissionClock(), mode);
+	}
+
+	/**
+	 * Writes every row of a gaze file with the flight channels at its time appended.
+	 *
+	 * Only the time column of the gaze rows is decoded; the rest of each row is copied to the output as it was
+	 * read, so quoting follows the gaze file and the flight cells are written unquoted.
+	 * @param gazeFile		Gazepoint csv file ordered by time
+	 * @param outputFile	csv file to write
+	 * @return				number of rows that got flight values
+	 */
+	public int join(String gazeFile, String outputFile) throws IOException {
+		try (
+			GazeCsvReader reader = new GazeCsvReader(new FileInputStream(gazeFile));
+			OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile), 1 << 16);
+		) {
+			String[] headers = reader.readHeader();
+			if (headers == null) {
+				throw new IOException("Gaze file " + gazeFile + " is empty");
+			}
+			GazeClock clock = GazeClock.fromHeaders(headers);
+			if (clock == null) {
+				throw new IOException("Gaze file " + gazeFile + " has no TIME column");
+			}
+			// Gazepoint headers end with a comma, drop the empty last column
+			boolean dropLast = headers.length > 1 && headers[headers.length - 1].isEmpty();
+			// mission time of gaze TIME 0, and mission seconds per gaze second
+			double missionOffset = missionClock.toMissionTime(clock.getStartTime());
+			double missionRate = 1 / missionClock.getRate();
+
+			writeGazeColumns(reader, out, dropLast);
+			for (String channel : CHANNELS) {
+				out.write(',');
+				write(out, "flight_" + channel);
+			}
+			out.write('\n');
+
+			// slot 0 is the time, slot 1 the empty last column if the rows have it
+			reader.project(clock.getTimeColumn(), dropLast ? headers.length - 1 : -1);
+			int n = missionTimes.length;
+			int cursor = 0;				// last flight sample at or before the current gaze row
+			int joined = 0;
+			double[] row = new double[CHANNELS.length];
+			while (reader.next()) {
+				writeGazeColumns(reader, out, reader.hasField(1));
+				double time = missionOffset + reader.getDouble(0) * missionRate;
+				boolean filled = false;
+				if (n > 0 && time >= missionTimes[0] && time <= missionTimes[n - 1]) {
+					while (cursor + 1 < n && missionTimes[cursor + 1] <= time) {
+						cursor++;
+					}
+					filled = fill(row, cursor, time);
+				}
+				for (int c = 0; c < CHANNELS.length; c++) {
+					out.write(',');
+					if (filled) {
+						write(out, String.valueOf(row[c]));
+					}
+				}
+				out.write('\n');
+				if (filled) {
+					joined++;
+				}
+			}
+			return joined;
+		}
+	}
+
+	/**
+	 * Copies the current row of the reader, without its last field if {@code dropLast} is set.
+	 */
+	private static void writeGazeColumns(GazeCsvReader reader, OutputStream out, boolean dropLast) throws IOException {
+		byte[] buffer = reader.getBuffer();
+		int start = reader.getRowStart();
+		int end = start + reader.getRowLength();
+		if (dropLast) {
+			// the last field is empty, so the last comma is its separator
+			while (end > start && buffer[end - 1] != ',') {
+				end--;
+			}
+			end = Math.max(start, end - 1);
+		}
+		out.write(buffer, start, end - start);
+	}
+
+	private static void write(OutputStream out, String text) throws IOException {
+		out.write(text.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * Computes the flight channels at a mission time between sample {@code before} and the next sample.
+	 * @return	false if the samples around the time are too far apart
+	 */
+	private boolean fill(double[] row, int before, double time) {
+		int after = Math.min(before + 1, missionTimes.length - 1);
+		double span = missionTimes[after] - missionTimes[before];
+		if (span > MAX_GAP_SECONDS) {
+			return false;
+		}
+		double fraction = span > 0 ? (time - missionTimes[before]) / span : 0;
+		for (int c = 0; c < CHANNELS.length; c++) {
+			if (mode == Mode.NEAREST) {
+				row[c] = values[c][fraction < 0.5 ? before : after];
+			} else if (c == HEADING) {
+				// interpolate along the shorter arc, so 359 and 1 give 0 rather than 180
+				double delta = ((values[c][after] - values[c][before]) % 360 + 540) % 360 - 180;
+				row[c] = ((values[c][before] + fraction * delta) % 360 + 360) % 360;
+			} else {
+				row[c] = values[c][before] + fraction * (values[c][after] - values[c][before]);
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,324 @@
+package scoring.scoringUpdated;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import com.opencsv.CSVWriter;
+import utils.utilsUpdated.GazeClock;
+import utils.utilsUpdated.GazeStage;
+import utils.utilsUpdated.GazeWindowTable;
+
+/**
+ * Resamples the gaze rows of one file onto a fixed-rate grid in mission time, the clock of the flight samples,
+ * in the same pass as trimming.
+ *
+ * The grid starts at the first flight sample and covers the windows of the file. Each bin holds the number of
+ * gaze rows in it, the point of gaze ({@code BPOGX}/{@code BPOGY} when the file has them, otherwise
+ * {@code FPOGX}/{@code FPOGY}), the pupil diameter (mean of the valid eyes), and the AOI that most rows of the
+ * bin fall in. Only the rows the {@link utils.utilsUpdated.GazeValidityFilter} finds usable reach the stage. Numeric channels are the mean or the last value of the bin. Rows arrive in
+ * time order, so only the open bin is accumulated and each finished bin goes straight into primitive arrays;
+ * the gaze rows themselves are never kept. Bins without data are NaN, or -1 for the AOI.
+ */
+public class GazeResampler implements GazeStage {
+
+	/**
+	 * How the gaze rows in a bin become the value of a numeric channel.
+	 */
+	public enum Aggregation {
+		MEAN,
+		LAST
+	}
+
+	private static final int X = 0;
+	private static final int Y = 1;
+	private static final int PUPIL = 2;
+	private static final int CHANNELS = 3;
+
+	private final String[] aoiNames;
+	private final Map<String, Integer> aoiIds = new HashMap<>();
+	private final MissionClock missionClock;
+	private final double gridStart;			// mission time of the grid origin
+	private final double rate;				// bins per second
+	private final Aggregation aggregation;
+
+	private int xColumn = -1;
+	private int yColumn = -1;
+	private int leftColumn = -1;
+	private int leftValidColumn = -1;
+	private int rightColumn = -1;
+	private int rightValidColumn = -1;
+	private int aoiColumn = -1;
+	private int timeColumn = -1;
+	private double missionOffset;			// mission time of gaze TIME 0
+	private double missionRate;				// mission seconds per gaze second
+	private boolean enabled;
+
+	// output, [bin]
+	private long firstBin;					// grid index of bin 0
+	private int[] samples;
+	private float[][] values;				// [channel][bin]
+	private short[] aois;
+
+	// open bin
+	private int bin = -1;
+	private final double[] sums = new double[CHANNELS];
+	private final int[] counts = new int[CHANNELS];
+	private final double[] last = new double[CHANNELS];
+	private int[] aoiVotes;
+	private int rows;
+
+	/**
+	 * @param aoiNames		AOIs to vote on, null if the files have no AOIs
+	 * @param flightData	flight with its mission clock set
+	 * @param rate			bins per second
+	 * @param aggregation	mean or last value of the numeric channels
+	 */
+	public GazeResampler(String[] aoiNames, FlightDataUpdated flightData, double rate, Aggregation aggregation) {
+		this.aoiNames = aoiNames != null ? aoiNames.clone() : new String[0];
+		for (int i = 0; i < this.aoiNames.length; i++) {
+			aoiIds.put(this.aoiNames[i], i);
+		}
+		this.missionClock = flightData.getMissionClock();
+		this.gridStart = flightData.getRangeIndex().size() > 0 ? flightData.getRangeIndex().getStartTime() : 0;
+		this.rate = rate;
+		this.aggregation = aggregation;
+		this.aoiVotes = new int[this.aoiNames.length];
+	}
+
+	/**
+	 * @param flightData	flight data
+	 * @return				mean number of flight samples per second of mission time, 0 with fewer than two samples
+	 */
+	public static double flightRate(FlightDataUpdated flightData) {
+		FlightRangeIndex index = flightData.getRangeIndex();
+		double span = index.size() > 1 ? index.getEndTime() - index.getStartTime() : 0;
+		return span > 0 ? (index.size() - 1) / span : 0;
+	}
+
+	@Override
+	public void open(String[] headers, GazeWindowTable windows) {
+		int fixationX = -1;
+		int fixationY = -1;
+		for (int i = 0; i < headers.length; i++) {
+			switch (headers[i]) {
+				case "BPOGX":	xColumn = i; break;
+				case "BPOGY":	yColumn = i; break;
+				case "FPOGX":	fixationX = i; break;
+				case "FPOGY":	fixationY = i; break;
+				case "LPMM":	leftColumn = i; break;
+				case "LPMMV":	leftValidColumn = i; break;
+				case "RPMM":	rightColumn = i; break;
+				case "RPMMV":	rightValidColumn = i; break;
+				case "AOI":		aoiColumn = i; break;
+				default:		break;
+			}
+		}
+		if (xColumn == -1 || yColumn == -1) {
+			xColumn = fixationX;
+			yColumn = fixationY;
+		}
+
+		GazeClock clock = GazeClock.fromHeaders(headers);
+		enabled = clock != null && missionClock != null && rate > 0 && windows.size() > 0;
+		if (!enabled) {
+			samples = new int[0];
+			values = new float[CHANNELS][0];
+			aois = new short[0];
+			return;
+		}
+		timeColumn = clock.getTimeColumn();
+		missionOffset = missionClock.toMissionTime(clock.getStartTime());
+		missionRate = 1 / missionClock.getRate();
+
+		double from = Double.POSITIVE_INFINITY;
+		double to = Double.NEGATIVE_INFINITY;
+		for (int w = 0; w < windows.size(); w++) {
+			from = Math.min(from, missionClock.toMissionTime(windows.getStart(w)));
+			to = Math.max(to, missionClock.toMissionTime(windows.getEnd(w)));
+		}
+		firstBin = (long) Math.floor((from - gridStart) * rate);
+		int n = (int) Math.max(0, (long) Math.ceil((to - gridStart) * rate) - firstBin);
+		samples = new int[n];
+		values = new float[CHANNELS][n];
+		for (float[] channel : values) {
+			Arrays.fill(channel, Float.NaN);
+		}
+		aois = new short[n];
+		Arrays.fill(aois, (short) -1);
+	}
+
+	@Override
+	public int[] getColumns() {
+		return new int[] {timeColumn, xColumn, yColumn, leftColumn, leftValidColumn, rightColumn, rightValidColumn,
+			aoiColumn};
+	}
+
+	@Override
+	public void accept(String[] row, Collection<Integer> active) {
+		if (!enabled) {
+			return;
+		}
+		double time;
+		try {
+			time = missionOffset + Double.parseDouble(row[timeColumn]) * missionRate;
+		} catch (NumberFormatException e) {
+			return;
+		}
+		long index = (long) Math.floor((time - gridStart) * rate) - firstBin;
+		if (index < 0 || index >= samples.length) {
+			return;
+		}
+		if (index != bin) {
+			closeBin();
+			bin = (int) index;
+		}
+		rows++;
+
+		add(X, number(row, xColumn));
+		add(Y, number(row, yColumn));
+		double left = isSet(row, leftValidColumn) ? number(row, leftColumn) : Double.NaN;
+		double right = isSet(row, rightValidColumn) ? number(row, rightColumn) : Double.NaN;
+		if (!(left > 0)) {
+			add(PUPIL, right > 0 ? right : Double.NaN);
+		} else {
+			add(PUPIL, right > 0 ? (left + right) / 2 : left);
+		}
+		if (aoiColumn != -1 && aoiColumn < row.length && !row[aoiColumn].isEmpty()) {
+			Integer aoi = aoiIds.get(row[aoiColumn]);
+			if (aoi != null) {
+				aoiVotes[aoi]++;
+			}
+		}
+	}
+
+	private static boolean isSet(String[] row, int column) {
+		return column == -1 || (column < row.length && "1".equals(row[column]));
+	}
+
+	private static double number(String[] row, int column) {
+		if (column == -1 || column >= row.length) {
+			return Double.NaN;
+		}
+		try {
+			return Double.parseDouble(row[column]);
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+
+	private void add(int channel, double value) {
+		if (Double.isNaN(value)) {
+			return;
+		}
+		sums[channel] += value;
+		counts[channel]++;
+		last[channel] = value;
+	}
+
+	/**
+	 * Stores the open bin and clears the accumulators.
+	 */
+	private void closeBin() {
+		if (bin == -1) {
+			return;
+		}
+		samples[bin] = rows;
+		for (int c = 0; c < CHANNELS; c++) {
+			if (counts[c] > 0) {
+				values[c][bin] = (float) (aggregation == Aggregation.MEAN ? sums[c] / counts[c] : last[c]);
+			}
+			sums[c] = 0;
+			counts[c] = 0;
+		}
+		int best = -1;
+		for (int aoi = 0; aoi < aoiVotes.length; aoi++) {
+			if (aoiVotes[aoi] > 0 && (best == -1 || aoiVotes[aoi] > aoiVotes[best])) {
+				best = aoi;
+			}
+			aoiVotes[aoi] = 0;
+		}
+		aois[bin] = (short) best;
+		rows = 0;
+		bin = -1;
+	}
+
+	@Override
+	public void finish() {
+		closeBin();
+	}
+
+	/**
+	 * @return number of bins
+	 */
+	public int size() {
+		return samples.length;
+	}
+
+	/**
+	 * @param bin	bin index
+	 * @return		mission time of the start of the bin
+	 */
+	public double getMissionTime(int bin) {
+		return gridStart + (firstBin + bin) / rate;
+	}
+
+	/**
+	 * @return gaze rows per bin
+	 */
+	public int[] getSamples() {
+		return samples;
+	}
+
+	/**
+	 * @return horizontal point of gaze per bin, as a fraction of the screen
+	 */
+	public float[] getX() {
+		return values[X];
+	}
+
+	/**
+	 * @return vertical point of gaze per bin, as a fraction of the screen
+	 */
+	public float[] getY() {
+		return values[Y];
+	}
+
+	/**
+	 * @return pupil diameter per bin, in mm
+	 */
+	public float[] getPupil() {
+		return values[PUPIL];
+	}
+
+	/**
+	 * @return index of the majority AOI per bin, -1 for none
+	 */
+	public short[] getAois() {
+		return aois;
+	}
+
+	/**
+	 * Writes the series to a csv file, one row per bin.
+	 * @param outputFile	path of the csv file to write
+	 */
+	public void writeToFile(String outputFile) throws IOException {
+		try (CSVWriter writer = new CSVWriter(new FileWriter(new File(outputFile)))) {
+			writer.writeNext(new String[] {"missn_time", "samples", "x", "y", "pupil_mm", "aoi"});
+			for (int b = 0; b < samples.length; b++) {
+				writer.writeNext(new String[] {
+					String.valueOf(getMissionTime(b)),
+					String.valueOf(samples[b]),
+					Float.isNaN(values[X][b]) ? "" : String.valueOf(values[X][b]),
+					Float.isNaN(values[Y][b]) ? "" : String.valueOf(values[Y][b]),
+					Float.isNaN(values[PUPIL][b]) ? "" : String.valueOf(values[PUPIL][b]),
+					aois[b] == -1 ? "" : aoiNames[aois[b]]
+				});
+			}
+		}
+	}
+
+}
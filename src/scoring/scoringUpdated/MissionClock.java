@@ -0,0 +1,173 @@
+package scoring.scoringUpdated;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Linear model between X-Plane mission time and wall-clock time for one flight.
+ *
+ * The datarefs file pairs the high-resolution {@code missn,_time} with {@code sys_time}, which only has whole
+ * seconds. The fit uses the truncation itself: every pair places the true wall-clock time in
+ * {@code [sys_time, sys_time + 1)}, and for a given rate the intersection of these intervals over the whole flight
+ * bounds the intercept, usually to much less than a second. The width of that intersection is a concave function
+ * of the rate, so the rate that leaves the widest intersection is found by ternary search around the
+ * least-squares rate, and the intercept is the middle of the intersection. If no line passes through every
+ * interval, the same search gives the line with the smallest worst-case violation. Once fitted, conversions in
+ * both directions are a multiply and an add.
+ * <p>
+ * While the sim is paused, {@code sys_time} keeps advancing but the mission time does not, and no single line
+ * fits both sides of a pause. The model is therefore fitted over the longest run of pairs in which the mission
+ * time advances from pair to pair; rows logged during a pause are left out. Times on the other side of a pause are
+ * off by the length of the pause, so {@link #isFitted(int)} tells which pairs the model holds for.
+ */
+public class MissionClock {
+
+	private static final double NANOS_PER_SECOND = 1e9;
+	private static final double RATE_SEARCH = 0.01;		// half-width of the rate search around the least-squares rate
+	private static final int SEARCH_STEPS = 100;
+
+	private final LocalDateTime epoch;		// whole second the model is anchored at
+	private final double intercept;			// seconds after epoch at mission time 0
+	private final double rate;				// wall-clock seconds per mission second
+	private final int firstPair;			// fitted run of pairs, [firstPair, endPair)
+	private final int endPair;
+
+	private MissionClock(LocalDateTime epoch, double intercept, double rate, int firstPair, int endPair) {
+		this.epoch = epoch;
+		this.intercept = intercept;
+		this.rate = rate;
+		this.firstPair = firstPair;
+		this.endPair = endPair;
+	}
+
+	/**
+	 * Fits the model over the longest run of (mission time, system time) pairs in which the mission time advances.
+	 * @param missionTimes	mission time of each pair, seconds, in log order
+	 * @param sysSeconds	whole seconds of {@code sys_time} after {@code epoch} for each pair
+	 * @param count			number of pairs to use from the arrays
+	 * @param epoch			wall-clock time that {@code sysSeconds} count from
+	 * @return				fitted clock, null if there are no pairs
+	 */
+	public static MissionClock fit(double[] missionTimes, long[] sysSeconds, int count, LocalDateTime epoch) {
+		if (count == 0) {
+			return null;
+		}
+		// find the longest run in which the mission time advances, a pair that does not advance ends the run
+		int from = 0;
+		int to = 0;
+		int start = 0;
+		while (start < count) {
+			int end = start + 1;
+			while (end < count && missionTimes[end] > missionTimes[end - 1]) {
+				end++;
+			}
+			if (end - start > to - from) {
+				from = start;
+				to = end;
+			}
+			// pairs logged while paused belong to no run, the next one starts where the mission time moves again
+			start = end;
+			while (start < count && missionTimes[start] <= missionTimes[start - 1]) {
+				start++;
+			}
+		}
+
+		double meanMission = 0;
+		double meanSys = 0;
+		for (int i = from; i < to; i++) {
+			meanMission += missionTimes[i];
+			meanSys += sysSeconds[i];
+		}
+		meanMission /= to - from;
+		meanSys /= to - from;
+		double covariance = 0;
+		double variance = 0;
+		for (int i = from; i < to; i++) {
+			double dm = missionTimes[i] - meanMission;
+			covariance += dm * (sysSeconds[i] - meanSys);
+			variance += dm * dm;
+		}
+		double leastSquares = variance > 0 ? covariance / variance : 1;
+
+		double lowRate = leastSquares - RATE_SEARCH;
+		double highRate = leastSquares + RATE_SEARCH;
+		for (int step = 0; step < SEARCH_STEPS; step++) {
+			double third = (highRate - lowRate) / 3;
+			if (width(missionTimes, sysSeconds, from, to, lowRate + third)
+					< width(missionTimes, sysSeconds, from, to, highRate - third)) {
+				lowRate += third;
+			} else {
+				highRate -= third;
+			}
+		}
+		double rate = (lowRate + highRate) / 2;
+
+		// each truncated pair bounds the intercept from both sides
+		double low = Double.NEGATIVE_INFINITY;
+		double high = Double.POSITIVE_INFINITY;
+		for (int i = from; i < to; i++) {
+			double shifted = sysSeconds[i] - rate * missionTimes[i];
+			low = Math.max(low, shifted);
+			high = Math.min(high, shifted + 1);
+		}
+		double intercept = (low + high) / 2;
+		return new MissionClock(epoch, intercept, rate, from, to);
+	}
+
+	/**
+	 * @return	width of the intercepts that place every pair in {@code [from, to)} inside its second at the rate,
+	 * 			negative if there are none
+	 */
+	private static double width(double[] missionTimes, long[] sysSeconds, int from, int to, double rate) {
+		double low = Double.NEGATIVE_INFINITY;
+		double high = Double.POSITIVE_INFINITY;
+		for (int i = from; i < to; i++) {
+			double shifted = sysSeconds[i] - rate * missionTimes[i];
+			low = Math.max(low, shifted);
+			high = Math.min(high, shifted + 1);
+		}
+		return high - low;
+	}
+
+	/**
+	 * @param missionTime	X-Plane mission time, seconds
+	 * @return				wall-clock time of the mission time
+	 */
+	public LocalDateTime toWallClock(double missionTime) {
+		return epoch.plusNanos(Math.round((intercept + rate * missionTime) * NANOS_PER_SECOND));
+	}
+
+	/**
+	 * @param time	wall-clock time
+	 * @return		X-Plane mission time at the wall-clock time, seconds
+	 */
+	public double toMissionTime(LocalDateTime time) {
+		Duration offset = Duration.between(epoch, time);
+		double seconds = offset.getSeconds() + offset.getNano() / NANOS_PER_SECOND;
+		return (seconds - intercept) / rate;
+	}
+
+	/**
+	 * @param pair	index of a pair in the arrays given to {@link #fit}
+	 * @return		whether the pair is in the run the model was fitted over, false for pairs logged during a pause
+	 * 				or on the other side of one
+	 */
+	public boolean isFitted(int pair) {
+		return pair >= firstPair && pair < endPair;
+	}
+
+	/**
+	 * @return wall-clock time of mission time 0
+	 */
+	public LocalDateTime getMissionStart() {
+		return toWallClock(0);
+	}
+
+	/**
+	 * @return wall-clock seconds per mission second, 1 when the two clocks do not drift
+	 */
+	public double getRate() {
+		return rate;
+	}
+
+}
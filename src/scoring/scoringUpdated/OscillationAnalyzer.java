@@ -0,0 +1,237 @@
+package scoring.scoringUpdated;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import com.opencsv.CSVWriter;
+import scoring.FlightDataPoint;
+import utils.RealFft;
+
+/**
+ * Detects control oscillations (pilot-induced oscillation around the localizer) in the bank and heading
+ * channels of each flight phase.
+ *
+ * Each phase is cut into overlapping windows; every window is linearly detrended, Hann-weighted, and
+ * transformed with {@link RealFft}. The window spectra are averaged (Welch's method) and the strongest
+ * non-zero frequency is reported with its power spectral density. All buffers belong to the analyzer
+ * and only grow, so one analyzer can be reused for every flight in a study batch without allocating.
+ */
+public class OscillationAnalyzer {
+
+	private static final int DEFAULT_WINDOW = 32;
+	private static final int DEFAULT_HOP = 8;
+
+	/**
+	 * Channels that are analyzed.
+	 */
+	public enum Channel {
+		BANK,
+		HEADING
+	}
+
+	private final int windowSize;
+	private final int hop;
+	private final RealFft fft;
+	private final double[] taper;
+	private final double taperEnergy;
+	private final double[] window;
+	private final double[] spectrum;
+	private double[] series = new double[256];
+	private double[] times = new double[256];
+
+	// results of the last call to analyze
+	private int windowCount;
+	private double dominantFrequency;
+	private double peakPower;
+	private double totalPower;
+
+	public OscillationAnalyzer() {
+		this(DEFAULT_WINDOW, DEFAULT_HOP);
+	}
+
+	/**
+	 * @param windowSize	samples per window, a power of two
+	 * @param hop			samples between the starts of consecutive windows
+	 */
+	public OscillationAnalyzer(int windowSize, int hop) {
+		this.windowSize = windowSize;
+		this.hop = hop;
+		this.fft = new RealFft(windowSize);
+		this.window = new double[windowSize];
+		this.spectrum = new double[fft.getBinCount()];
+		this.taper = new double[windowSize];
+		double energy = 0;
+		for (int i = 0; i < windowSize; i++) {
+			taper[i] = 0.5 - 0.5 * Math.cos(2 * Math.PI * i / (windowSize - 1));
+			energy += taper[i] * taper[i];
+		}
+		this.taperEnergy = energy;
+	}
+
+	/**
+	 * Analyzes one channel of one phase. Results are read with the getters until the next call.
+	 * @param phase		data points of the phase, ordered by mission time
+	 * @param channel	channel to analyze
+	 * @return			whether the phase was long enough for at least one window
+	 */
+	public boolean analyze(List<FlightDataPoint> phase, Channel channel) {
+		windowCount = 0;
+		dominantFrequency = Double.NaN;
+		peakPower = Double.NaN;
+		totalPower = Double.NaN;
+
+		int n = phase.size();
+		if (n < windowSize) {
+			return false;
+		}
+		if (series.length < n) {
+			series = new double[Math.max(n, series.length * 2)];
+			times = new double[series.length];
+		}
+
+		int i = 0;
+		double reference = 0;
+		for (FlightDataPoint point : phase) {
+			times[i] = point.getMissn_time();
+			if (channel == Channel.BANK) {
+				series[i] = point.getBank();
+			} else {
+				// heading as a signed deviation from the first sample so 359 -> 1 is not a 358 degree jump
+				if (i == 0) {
+					reference = point.getHeading();
+				}
+				series[i] = ((point.getHeading() - reference) % 360 + 540) % 360 - 180;
+			}
+			i++;
+		}
+		double sampleRate = (n - 1) / (times[n - 1] - times[0]);
+
+		Arrays.fill(spectrum, 0);
+		for (int start = 0; start + windowSize <= n; start += hop) {
+			detrend(start);
+			fft.transform(window, 0);
+			for (int k = 0; k < spectrum.length; k++) {
+				spectrum[k] += fft.getPower(k);
+			}
+			windowCount++;
+		}
+
+		// one-sided power spectral density averaged over the windows
+		double scale = 2.0 / (sampleRate * taperEnergy * windowCount);
+		int peak = 1;
+		totalPower = 0;
+		for (int k = 1; k < spectrum.length; k++) {
+			spectrum[k] *= scale;
+			totalPower += spectrum[k] * sampleRate / windowSize;
+			if (spectrum[k] > spectrum[peak]) {
+				peak = k;
+			}
+		}
+		dominantFrequency = peak * sampleRate / windowSize;
+		peakPower = spectrum[peak];
+		return true;
+	}
+
+	/**
+	 * Copies a window of the series, removes its least-squares line, and applies the Hann taper.
+	 */
+	private void detrend(int start) {
+		double meanX = (windowSize - 1) / 2.0;
+		double meanY = 0;
+		for (int i = 0; i < windowSize; i++) {
+			meanY += series[start + i];
+		}
+		meanY /= windowSize;
+		double covariance = 0;
+		double variance = 0;
+		for (int i = 0; i < windowSize; i++) {
+			covariance += (i - meanX) * (series[start + i] - meanY);
+			variance += (i - meanX) * (i - meanX);
+		}
+		double slope = covariance / variance;
+		for (int i = 0; i < windowSize; i++) {
+			window[i] = (series[start + i] - meanY - slope * (i - meanX)) * taper[i];
+		}
+	}
+
+	/**
+	 * @return number of windows averaged in the last analysis
+	 */
+	public int getWindowCount() {
+		return windowCount;
+	}
+
+	/**
+	 * @return strongest non-zero frequency in Hz, NaN if the phase was too short
+	 */
+	public double getDominantFrequency() {
+		return dominantFrequency;
+	}
+
+	/**
+	 * @return power spectral density at the dominant frequency (units squared per Hz)
+	 */
+	public double getPeakPower() {
+		return peakPower;
+	}
+
+	/**
+	 * @return power of the detrended signal summed over all non-zero frequencies (units squared)
+	 */
+	public double getTotalPower() {
+		return totalPower;
+	}
+
+	/**
+	 * Analyzes bank and heading in every phase of a flight and writes one row per phase and channel.
+	 * @param outputFile	path of the csv file to write
+	 * @param data			flight data to analyze
+	 */
+	public void writeToFile(String outputFile, FlightDataUpdated data) {
+		String[] headers = {
+			"Phase",
+			"Channel",
+			"Windows",
+			"Dominant_Frequency_Hz",
+			"Peak_Power",
+			"Total_Power"
+		};
+		String[] phaseNames = {"stepdown", "finalapproach", "roundout", "landing"};
+		List<List<FlightDataPoint>> phases = Arrays.asList(
+			data.getStepdownData(),
+			data.getApproachData(),
+			data.getRoundoutData(),
+			data.getLandingData()
+		);
+
+		try (
+			FileWriter outputFileWriter = new FileWriter(new File(outputFile));
+			CSVWriter outputCSVWriter = new CSVWriter(outputFileWriter);
+		){
+			outputCSVWriter.writeNext(headers);
+			for (int p = 0; p < phaseNames.length; p++) {
+				for (Channel channel : Channel.values()) {
+					analyze(phases.get(p), channel);
+					outputCSVWriter.writeNext(new String[] {
+						phaseNames[p],
+						channel.toString(),
+						String.valueOf(windowCount),
+						String.valueOf(dominantFrequency),
+						String.valueOf(peakPower),
+						String.valueOf(totalPower)
+					});
+				}
+			}
+		}
+		catch (FileNotFoundException e) {
+			System.out.println("Unable to open file '" + outputFile + "'");
+		}
+		catch(IOException e) {
+			System.out.println("Error writing to file '" + outputFile + "'");
+		}
+	}
+
+}
@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
@@ -39,7 +40,12 @@ import scoring.DataIndex;
  * <p>
  * 4. {@code setTimestamps()} helper: adds a method that back-fills
  *    wall-clock timestamps onto an existing {@link FlightDataUpdated}
- *    when gaze data provides them after the fact.
+ *    when gaze data provides them after the fact. It fits a
+ *    {@link MissionClock} over the ({@code missn,_time}, {@code sys_time})
+ *    pairs, leaving out rows logged while the sim was paused, and places
+ *    the phase boundaries with it, so they are no longer truncated to the
+ *    whole seconds of {@code sys_time}. Boundaries on rows outside the
+ *    fitted run, across a pause from it, keep their {@code sys_time}.
  * <p>
  * 5. Updated return type: {@code parseOutSections} now returns
  *    {@link ScoreCalculationUpdated} instead of {@link ScoreCalculation}.
@@ -51,6 +57,15 @@ public class ParserUpdated {
 	private static int minimumsAltitude = 572;
 	private static double initialAppFixDME = 22.2;
 	private static double intersectionDME = 6.3;
+	// phase boundaries found by setTimestamps
+	private static final int BEGIN_FLIGHT = 0;
+	private static final int BEGIN_APPROACH = 1;
+	private static final int BEGIN_FINAL_APPROACH = 2;
+	private static final int BEGIN_ROUNDOUT = 3;
+	private static final int BEGIN_LANDING = 4;
+	private static final int END_FLIGHT = 5;
+	private static final int BOUNDARY_COUNT = 6;
+
 	private static DateTimeFormatter[] sysTimeFormat = {
 		DateTimeFormatter.ofPattern("yyyy-MM-dd kk:mm:ss"),
 		DateTimeFormatter.ofPattern("MM/dd/yy kk:mm")
@@ -504,7 +519,6 @@ public class ParserUpdated {
 		FileReader fileReader = new FileReader(inputFile);
 			CSVReader csvReader = new CSVReader(fileReader);
 		){
-			String endFlightTimeString = null;
 			String[] headers = csvReader.readNext();
 			for (int i = 0; i < headers.length; i++) {
 
@@ -512,6 +526,9 @@ public class ParserUpdated {
 					case "sys_time":
 						indexes.setiSysTime(i);
 						break;
+					case "missn,_time":
+						indexes.setiMTime(i);
+						break;
 					case "p-alt,ftMSL":
 						indexes.setiAlt(i);
 						break;
@@ -538,45 +555,114 @@ public class ParserUpdated {
 			}
 			String[] row;
 
+			// sys_time and mission time of the first row of each phase, turned into timestamps after the pass
+			String[] boundarySysTime = new String[BOUNDARY_COUNT];
+			double[] boundaryMissionTime = new double[BOUNDARY_COUNT];
+			int[] boundaryPair = new int[BOUNDARY_COUNT];		// clock pair of the row, -1 if it has none
+			Arrays.fill(boundaryMissionTime, Double.NaN);
+			Arrays.fill(boundaryPair, -1);
+
+			// (mission time, sys_time) pairs for the clock model
+			double[] missionTimes = new double[1024];
+			long[] sysSeconds = new long[1024];
+			int pairs = 0;
+			LocalDateTime epoch = null;
+			String lastSysTime = null;
+			long lastSysSecond = 0;
+			boolean lastSysTimeValid = false;
+
 			while ((row = csvReader.readNext()) != null) {
+				String sysTime = row[indexes.getiSysTime()];
+				double missionTime = Double.NaN;
+				if (indexes.getiMTime() != -1 && indexes.getiMTime() < row.length) {
+					try {
+						missionTime = Double.parseDouble(row[indexes.getiMTime()]);
+					} catch (NumberFormatException e) {
+						// blank mission time, the row keeps its whole-second sys_time
+					}
+				}
+				int pair = -1;
+				if (!Double.isNaN(missionTime)) {
+					// rows within the same second share their sys_time, so each distinct value is parsed once
+					if (!sysTime.equals(lastSysTime)) {
+						LocalDateTime parsed = parseTime(sysTime);
+						lastSysTime = sysTime;
+						lastSysTimeValid = parsed != null;
+						if (parsed != null) {
+							if (epoch == null) {
+								epoch = parsed;
+							}
+							lastSysSecond = Duration.between(epoch, parsed).getSeconds();
+						}
+					}
+					if (lastSysTimeValid) {
+						if (pairs == missionTimes.length) {
+							missionTimes = Arrays.copyOf(missionTimes, pairs * 2);
+							sysSeconds = Arrays.copyOf(sysSeconds, pairs * 2);
+						}
+						missionTimes[pairs] = missionTime;
+						sysSeconds[pairs] = lastSysSecond;
+						pair = pairs++;
+					}
+				}
+
+				int phase;
 				// Before Initial Approach Fix - JIPOX
 				if (Double.valueOf(row[indexes.getiDme()]) > initialAppFixDME) {
-					if (flightData.getBeginFlightTimestamp() == null) {
-						flightData.setBeginFlightTimestamp(parseTime(row[indexes.getiSysTime()]));
-					}
-					continue;
+					phase = BEGIN_FLIGHT;
 
 				// ILS Stepdown portion
 				} else if(Double.valueOf(row[indexes.getiDme()]) < initialAppFixDME && Double.valueOf(row[indexes.getiDme()])>intersectionDME) {
-						if (flightData.getBeginApproachTimestamp() == null) {
-							flightData.setBeginApproachTimestamp(parseTime(row[indexes.getiSysTime()]));
-						}
+					phase = BEGIN_APPROACH;
 
 				// ILS Final Approach portion
 				} else if(Double.valueOf(row[indexes.getiAlt()])>minimumsAltitude) {
-					if (flightData.getBeginFinalApproachTimestamp() == null) {
-						flightData.setBeginFinalApproachTimestamp(parseTime(row[indexes.getiSysTime()]));
-					}
+					phase = BEGIN_FINAL_APPROACH;
 
 				// Roundout portion: From minimums, descent to the runway portion
 				} else if(!(Double.valueOf(row[indexes.getiGroll()])>0)){
-					if (flightData.getBeginRoundOutTimestamp() == null) {
-						flightData.setBeginRoundOutTimestamp(parseTime(row[indexes.getiSysTime()]));
-					}
+					phase = BEGIN_ROUNDOUT;
 
 				// Wheels touch the ground portion
 				} else {
-					if (flightData.getBeginLandingTimestamp() == null) {
-						flightData.setBeginLandingTimestamp(parseTime(row[indexes.getiSysTime()]));
-					}
+					phase = BEGIN_LANDING;
+				}
+				if (boundarySysTime[phase] == null) {
+					boundarySysTime[phase] = sysTime;
+					boundaryMissionTime[phase] = missionTime;
+					boundaryPair[phase] = pair;
+				}
+				if (phase == BEGIN_FLIGHT) {
+					continue;
 				}
 
 				if (Double.valueOf(row[indexes.getiASpeed()]) > 0) {
-						endFlightTimeString = row[indexes.getiSysTime()];
+					boundarySysTime[END_FLIGHT] = sysTime;
+					boundaryMissionTime[END_FLIGHT] = missionTime;
+					boundaryPair[END_FLIGHT] = pair;
 				}
 			}
-			if (endFlightTimeString != null) {
-				flightData.setEndFlightTimestamp(parseTime(endFlightTimeString));
+
+			// boundaries come from the fitted clock, so they keep the sub-second part of the mission time
+			MissionClock clock = MissionClock.fit(missionTimes, sysSeconds, pairs, epoch);
+			flightData.setMissionClock(clock);
+			if (flightData.getBeginFlightTimestamp() == null) {
+				flightData.setBeginFlightTimestamp(boundaryTime(clock, boundarySysTime[BEGIN_FLIGHT], boundaryMissionTime[BEGIN_FLIGHT], boundaryPair[BEGIN_FLIGHT]));
+			}
+			if (flightData.getBeginApproachTimestamp() == null) {
+				flightData.setBeginApproachTimestamp(boundaryTime(clock, boundarySysTime[BEGIN_APPROACH], boundaryMissionTime[BEGIN_APPROACH], boundaryPair[BEGIN_APPROACH]));
+			}
+			if (flightData.getBeginFinalApproachTimestamp() == null) {
+				flightData.setBeginFinalApproachTimestamp(boundaryTime(clock, boundarySysTime[BEGIN_FINAL_APPROACH], boundaryMissionTime[BEGIN_FINAL_APPROACH], boundaryPair[BEGIN_FINAL_APPROACH]));
+			}
+			if (flightData.getBeginRoundOutTimestamp() == null) {
+				flightData.setBeginRoundOutTimestamp(boundaryTime(clock, boundarySysTime[BEGIN_ROUNDOUT], boundaryMissionTime[BEGIN_ROUNDOUT], boundaryPair[BEGIN_ROUNDOUT]));
+			}
+			if (flightData.getBeginLandingTimestamp() == null) {
+				flightData.setBeginLandingTimestamp(boundaryTime(clock, boundarySysTime[BEGIN_LANDING], boundaryMissionTime[BEGIN_LANDING], boundaryPair[BEGIN_LANDING]));
+			}
+			if (boundarySysTime[END_FLIGHT] != null) {
+				flightData.setEndFlightTimestamp(boundaryTime(clock, boundarySysTime[END_FLIGHT], boundaryMissionTime[END_FLIGHT], boundaryPair[END_FLIGHT]));
 			}
 		}
 		catch(Exception e)
@@ -588,6 +674,27 @@ public class ParserUpdated {
 		return true;
 	}
 
+	/**
+	 * @return wall-clock time of a phase boundary from the clock model, or the whole-second sys_time
+	 *         if there is no model or the row is outside the run it was fitted over
+	 */
+	private static LocalDateTime boundaryTime(MissionClock clock, String sysTime, double missionTime, int pair) {
+		if (sysTime == null) {
+			return null;
+		}
+		if (clock != null && clock.isFitted(pair)) {
+			return clock.toWallClock(missionTime);
+		}
+		return parseTime(sysTime);
+	}
+
+	/**
+	 * @return the DME of the initial approach fix, where scoring starts
+	 */
+	public static double getInitialAppFixDME() {
+		return initialAppFixDME;
+	}
+
 	/**
 	 * @return the minimumsAltitude
 	 */
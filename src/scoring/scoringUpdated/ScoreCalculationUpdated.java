@@ -100,6 +100,9 @@ public class ScoreCalculationUpdated {
 	private double avgFinAppVdef = 0;
 	private double vdefAddedTotal = 0;
 
+	// Distributions of the measures above, mergeable across pilots
+	private ScoreSketches sketches = new ScoreSketches();
+
 	private final static List<Fix> STEPDOWN_FIXES;
 	static {
 		List<Fix> tmp = new ArrayList<>();
@@ -311,6 +314,16 @@ public class ScoreCalculationUpdated {
 		return penalty;
 	}
 
+	/**
+	 * Adds the airspeed, vertical speed, and localizer deflection of an ILS data point to the sketches.
+	 * @param point stepdown or final approach data point
+	 */
+	private void updateILSSketches(FlightDataPoint point) {
+		this.sketches.update(ScoreSketches.ILS_AIRSPEED, point.getAirspeed());
+		this.sketches.update(ScoreSketches.ILS_VSI, point.getVertSpeed());
+		this.sketches.update(ScoreSketches.ILS_ABS_LOCALIZER_DEFLECTION, Math.abs(point.getHdef()));
+	}
+
 	public double scoreStepdownCalc() {
 		double penalty = 0;
 
@@ -319,6 +332,7 @@ public class ScoreCalculationUpdated {
 			this.hdefAddedTotal += Math.abs(point.getHdef());
 			this.speedAddedTotal += point.getAirspeed();
 			this.vspeedAddedTotal += point.getVertSpeed();
+			updateILSSketches(point);
 
 			if (point.getAirspeed() < this.minILSSpeed) {
 				this.minILSSpeed = point.getAirspeed();
@@ -356,6 +370,8 @@ public class ScoreCalculationUpdated {
 			this.speedAddedTotal += point.getAirspeed();
 			this.vspeedAddedTotal += point.getVertSpeed();
 			this.vdefAddedTotal += Math.abs(point.getVdef());
+			updateILSSketches(point);
+			this.sketches.update(ScoreSketches.FINAL_APPROACH_ABS_GLIDESLOPE_DEFLECTION, Math.abs(point.getVdef()));
 
 			if (point.getAirspeed() < this.minILSSpeed) {
 				this.minILSSpeed = point.getAirspeed();
@@ -464,6 +480,10 @@ public class ScoreCalculationUpdated {
 		this.avgILSHdef = this.hdefAddedTotal / numApproachData;
 		// percentage of data points with speed within +/- 10 target speed
 		this.percentProperSpeed = this.countProperILSSpeed / numApproachData;
+
+		this.sketches.update(ScoreSketches.OVERALL_SCORE, getPercentageScore(scoreType.OVERALL));
+		this.sketches.update(ScoreSketches.APPROACH_SCORE, getPercentageScore(scoreType.APPROACH));
+		this.sketches.update(ScoreSketches.LANDING_SCORE, getPercentageScore(scoreType.LANDING));
 	}
 
 	// Below are housekeeping items
@@ -545,6 +565,20 @@ public class ScoreCalculationUpdated {
 		}
 	}
 
+	/**
+	 * Writes this flight's measure sketches so they can be merged with other pilots by {@link ScoreSketches#main}.
+	 * @param outputLocation directory to save the sketch file
+	 */
+	public void writeSketchesToFile(String outputLocation) {
+		String outputFile = outputLocation + "/" + this.participant + "_sketches.ser";
+		try {
+			this.sketches.writeToFile(outputFile);
+		}
+		catch(IOException e) {
+			System.out.println("Error writing to file '" + outputFile + "'");
+		}
+	}
+
 	public double getPercentageScore(scoreType val) {
 		double score;
 		switch(val) {
@@ -572,6 +606,10 @@ public class ScoreCalculationUpdated {
 		return data;
 	}
 
+	public ScoreSketches getSketches() {
+		return sketches;
+	}
+
 	/**
 	 * @return the numOfData
 	 */
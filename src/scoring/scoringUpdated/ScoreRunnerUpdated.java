@@ -1,13 +1,31 @@
 package scoring.scoringUpdated;
 
 import java.io.File;
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import exceptions.GazeTrimException;
 import org.apache.commons.compress.utils.FileNameUtils;
 import org.apache.commons.lang3.Pair;
+import utils.utilsUpdated.AoiIndex;
+import utils.utilsUpdated.AoiStage;
+import utils.utilsUpdated.AoiTransitionStage;
+import utils.utilsUpdated.GazeInterval;
+import utils.utilsUpdated.GazeStage;
 import utils.utilsUpdated.GazeTrimmerUpdated;
+import utils.utilsUpdated.GazeValidityFilter;
+import utils.utilsUpdated.GazeWindowTable;
+import utils.utilsUpdated.PupilStage;
+import utils.utilsUpdated.SaccadeStage;
 
 /**
  * Modified version of {@link ScoreRunner}.
@@ -29,6 +47,67 @@ import utils.utilsUpdated.GazeTrimmerUpdated;
  *    {@code flightData.getBeginFinalApproachTimestamp()} as the divider
  *    between the stepdown and final approach gaze windows, which was not
  *    available in the original implementation.
+ * <p>
+ * 4. Parallel trimming: {@code runTrim()} builds one
+ *    {@link GazeWindowTable} and trims all gaze files concurrently on a
+ *    bounded thread pool, printing the outcome of each file.
+ * <p>
+ * 5. Event gaze window: besides the four phase windows, {@code runTrim()}
+ *    cuts a {@code "final60s"} window covering the last 60 seconds before
+ *    touchdown, which overlaps the final approach and roundout windows.
+ * <p>
+ * 6. Gaze output mode: {@code GAZE_OUTPUT_MODE} selects between one file
+ *    per gaze window and a single partitioned file per gaze input.
+ * <p>
+ * 7. AOI hit-testing: when {@code AOI_DEFINITION_FILE} exists, each gaze
+ *    file is trimmed with an {@link AoiStage} that fills empty AOI cells
+ *    from the cockpit instrument polygons.
+ * <p>
+ * 8. AOI transition features: the same pass also runs an
+ *    {@link AoiTransitionStage} per gaze file, and {@code runTrim()} writes
+ *    {@code <pid>_aoi_transitionFeatures.csv} with dwell times, transition
+ *    counts, and gaze entropy per window.
+ * <p>
+ * 9. Pupil workload: {@code runTrim()} adds a {@code "preapproach"}
+ *    window of {@code PUPIL_BASELINE_SECONDS} before the stepdown, runs a
+ *    {@link PupilStage} per gaze file, and appends baseline-corrected pupil
+ *    diameter statistics per window to {@code <pid>_score.csv}.
+ * <p>
+ * 10. Gaze-flight join: after trimming, each gaze file is merge-joined
+ *    with the scored flight samples by a {@link GazeFlightJoin}, writing
+ *    {@code <file>_flight_join.csv} with the aircraft state at every gaze
+ *    row.
+ * <p>
+ * 11. Cohort features: {@code runTrim()} appends one row per pilot and
+ *    window of flight statistics, phase score, and gaze features to
+ *    {@code features.arff} and {@code features.csv} in the output
+ *    directory through a {@link FeatureExport}, ready for Weka.
+ * <p>
+ * 12. Model inference: when {@code MODEL_FILE} exists, the same feature
+ *    vectors are classified with the cached {@link WekaModelInference}
+ *    and written to {@code <pid>_prediction.csv} next to the score file.
+ * <p>
+ * 13. Deviation-gaze lag: with AOIs and a mission clock, the same pass
+ *    runs a {@link DeviationGazeCorrelation} per gaze file, and
+ *    {@code runTrim()} writes {@code <pid>_deviation_gaze_lag.csv} with the
+ *    FFT cross-correlation peak of each AOI against localizer and
+ *    glideslope deviation per window.
+ * <p>
+ * 14. Saccade metrics: the same pass runs a {@link SaccadeStage} per gaze
+ *    file, and {@code runTrim()} writes {@code <pid>_saccades.csv} with
+ *    saccade count, rate, and amplitude and direction histograms per
+ *    window.
+ * <p>
+ * 15. Gaze validity: every gaze file is read through a
+ *    {@link GazeValidityFilter} configured by the {@code GAZE_FILTER_*}
+ *    constants, and {@code runTrim()} writes {@code <pid>_gaze_validity.csv}
+ *    with the share of valid, interpolated, blink, and invalid rows per
+ *    window. The gaze stages only see the rows the filter finds usable.
+ * <p>
+ * 16. Resampled gaze: with a mission clock, the same pass runs a
+ *    {@link GazeResampler} per gaze file, writing
+ *    {@code <file>_resampled.csv} with point of gaze, pupil diameter, and
+ *    majority AOI at a fixed rate on the flight's mission time grid.
  */
 
 public class ScoreRunnerUpdated {
@@ -38,6 +117,37 @@ public class ScoreRunnerUpdated {
 	//Changes in the weight of scoring each section: Currently every single method of scoring is weighted the same. If you would like to change this
 	//you would only need to change the  MAX_PTS_PER_DATA_POINT_ILS, MAX_PTS_PER_DATA_POINT_ROUNDOUT,  MAX_PTS_PER_DATA_POINT_LANDING
 
+	// Change to PARTITIONED to write one gaze file per input with a window column instead of one file per window
+	private static final GazeTrimmerUpdated.OutputMode GAZE_OUTPUT_MODE = GazeTrimmerUpdated.OutputMode.WINDOW_FILES;
+
+	// Cockpit instrument AOI polygons used to fill empty AOI cells in the gaze files, skipped if the file is missing
+	private static final String AOI_DEFINITION_FILE = "data/aoi/cockpit_aois.csv";
+
+	// Length of the window before the approach that pupil dilation is measured against
+	private static final int PUPIL_BASELINE_SECONDS = 30;
+	private static final String PUPIL_BASELINE_WINDOW = "preapproach";
+
+	// Invalid and blink gaze rows are kept out of the gaze stages and flagged in a GAZE_FILTER column of the trimmed files,
+	// change to DROP to leave them out of the trimmed files as well.
+	// Set GAZE_FILTER_MAX_GAP_ROWS above 0 to interpolate short gaps in all-gaze files, for example 9 rows at 150 Hz
+	private static final GazeValidityFilter.Action GAZE_FILTER_ACTION = GazeValidityFilter.Action.FLAG;
+	private static final boolean GAZE_FILTER_PUPILS = true;
+	private static final int GAZE_FILTER_MAX_GAP_ROWS = 0;
+
+	// Flight channels attached to each gaze row, interpolated between samples or taken from the nearest one
+	private static final GazeFlightJoin.Mode GAZE_FLIGHT_JOIN_MODE = GazeFlightJoin.Mode.INTERPOLATE;
+
+	// Bins per second of the resampled gaze series, 0 to use the mean rate of the flight samples
+	private static final double GAZE_RESAMPLE_RATE = 0;
+	private static final GazeResampler.Aggregation GAZE_RESAMPLE_AGGREGATION = GazeResampler.Aggregation.MEAN;
+
+	// Cohort feature table in the output directory, one row per pilot and window, from the first gaze file
+	private static final String FEATURE_FILE_NAME = "features";
+	private static final String[] FEATURE_WINDOWS = {"preapproach", "stepdown", "finalapproach", "final60s", "roundout", "landing"};
+
+	// Weka classifier saved with its training header, applied to each pilot's features when the file exists
+	private static final String MODEL_FILE = "data/models/expertise.model";
+
 	/**
 	 * entry point of scoring calculation program
 	 * @param args[0] output directory path
@@ -95,9 +205,26 @@ public class ScoreRunnerUpdated {
 		System.out.printf("Scoring %s's data... ", pid);
 		ScoreCalculationUpdated score = ParserUpdated.parseOutSections(xplaneFilePath, trimOutputFolder, pid);
 		score.writeToFile(outputFolder);
+		score.writeSketchesToFile(outputFolder);
+		new OscillationAnalyzer().writeToFile(outputFolder + "/" + pid + "_oscillation.csv", score.getFlightData());
 		System.out.println("Done scoring...");
 
 		FlightDataUpdated flightData = score.getFlightData();
+
+		// save the range-query index next to the segment files for the review tools
+		try {
+			flightData.getRangeIndex().writeToFile(trimOutputFolder + "/" + pid + "_range_index.ser");
+		} catch (IOException e) {
+			System.out.println("Unable to write range index for " + pid + ": " + e);
+		}
+
+		// save the DME-resampled profile for cohort corridors (see ApproachCorridor)
+		try {
+			DmeProfile.resample(flightData).writeToFile(outputFolder + "/" + pid + "_dme_profile.ser");
+		} catch (IOException e) {
+			System.out.println("Unable to write DME profile for " + pid + ": " + e);
+		}
+
 		// trim gaze files
 
 		if (args.length < 3) {
@@ -114,12 +241,22 @@ public class ScoreRunnerUpdated {
 			return;
 		}
 
-		runTrim(flightData, trimOutputFolder, Arrays.copyOfRange(args, 3, args.length));
+		FeatureExport featureExport = new FeatureExport(outputFolderPath + "/" + FEATURE_FILE_NAME + ".arff",
+			outputFolderPath + "/" + FEATURE_FILE_NAME + ".csv", Arrays.asList(FEATURE_WINDOWS));
+		runTrim(score, pid, outputFolder, trimOutputFolder, featureExport, Arrays.copyOfRange(args, 3, args.length));
 	}
 
 
 
-	private static void runTrim(FlightDataUpdated flightData, String outputFolder, String[] gazeFiles) {
+	private static void runTrim(ScoreCalculationUpdated score, String pid, String pilotFolder, String outputFolder,
+			FeatureExport featureExport, String[] gazeFiles) {
+
+		FlightDataUpdated flightData = score.getFlightData();
+		String featuresFile = pilotFolder + "/" + pid + "_aoi_transitionFeatures.csv";
+		String scoreFile = pilotFolder + "/" + pid + "_score.csv";
+		String lagFile = pilotFolder + "/" + pid + "_deviation_gaze_lag.csv";
+		String saccadeFile = pilotFolder + "/" + pid + "_saccades.csv";
+		String validityFile = pilotFolder + "/" + pid + "_gaze_validity.csv";
 
 		List<Pair<String, LocalDateTime>> times = new LinkedList<>();
 
@@ -135,10 +272,178 @@ public class ScoreRunnerUpdated {
 		if (flightData.getEndFlightTimestamp() != null)
 			times.add(new Pair<>("end flight", flightData.getEndFlightTimestamp()));
 
-		if (times.size() > 0) {
-			// trim files
-			for (int i = 0; i < gazeFiles.length; i++) {
-				GazeTrimmerUpdated.trimGazeFile(gazeFiles[i], outputFolder, times);
+		if (times.size() == 0) {
+			return;
+		}
+
+		// event windows may overlap the phase windows, each row is written to every window it falls in
+		List<GazeInterval> intervals = GazeInterval.contiguous(times);
+		if (flightData.getBeginLandingTimestamp() != null)
+			intervals.add(GazeInterval.before("final60s", flightData.getBeginLandingTimestamp(), 60));
+		if (flightData.getBeginApproachTimestamp() != null)
+			intervals.add(GazeInterval.before(PUPIL_BASELINE_WINDOW, flightData.getBeginApproachTimestamp(), PUPIL_BASELINE_SECONDS));
+
+		AoiIndex aois = null;
+		if (new File(AOI_DEFINITION_FILE).exists()) {
+			try {
+				aois = AoiIndex.load(AOI_DEFINITION_FILE);
+			} catch (IOException e) {
+				System.out.println("Unable to read AOI definitions " + AOI_DEFINITION_FILE + ": " + e.getMessage());
+			}
+		}
+		AoiIndex sharedAois = aois;
+		GazeFlightJoin flightJoin = GazeFlightJoin.of(flightData, GAZE_FLIGHT_JOIN_MODE);
+		double resampleRate = GAZE_RESAMPLE_RATE > 0 ? GAZE_RESAMPLE_RATE : GazeResampler.flightRate(flightData);
+
+		// trim files concurrently, every trim reads the same window table and AOI index
+		GazeWindowTable windows = new GazeWindowTable(intervals);
+		int threads = Math.min(gazeFiles.length, Runtime.getRuntime().availableProcessors());
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+		List<GazeFileTrim> trims = new ArrayList<>();
+		for (String gazeFile : gazeFiles) {
+			GazeFileTrim trim = new GazeFileTrim(gazeFile, sharedAois, flightData, resampleRate);
+			trim.future = executor.submit(() -> {
+				trim.run(outputFolder, windows, flightJoin);
+				return null;
+			});
+			trims.add(trim);
+		}
+		executor.shutdown();
+
+		// report the outcome of each file
+		List<GazeFileTrim> finished = new ArrayList<>();
+		for (GazeFileTrim trim : trims) {
+			try {
+				trim.future.get();
+				System.out.println("Trimmed " + trim.gazeFile);
+				finished.add(trim);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				System.out.println("Unable to trim " + trim.gazeFile + ": " + cause.getMessage()
+					+ (cause.getCause() != null ? " (" + cause.getCause() + ")" : ""));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				System.out.println("Interrupted while trimming " + trim.gazeFile);
+				executor.shutdownNow();
+				return;
+			}
+		}
+		List<String> finishedNames = collect(finished, trim -> trim.name);
+		List<GazeFileTrim> withAois = finished.stream().filter(trim -> trim.transitionStage != null).collect(Collectors.toList());
+		List<GazeFileTrim> withLags = finished.stream().filter(trim -> trim.correlationStage != null).collect(Collectors.toList());
+
+		// AOI features of all gaze files of the pilot go to one file
+		try {
+			AoiTransitionStage.writeToFile(featuresFile, collect(withAois, trim -> trim.transitionStage), collect(withAois, trim -> trim.name));
+		} catch (IOException e) {
+			System.out.println("Error writing to file '" + featuresFile + "'");
+		}
+
+		// pupil metrics go below the flight scores
+		try {
+			PupilStage.appendToFile(scoreFile, collect(finished, trim -> trim.pupilStage), finishedNames);
+		} catch (IOException e) {
+			System.out.println("Error writing to file '" + scoreFile + "'");
+		}
+
+		// deviation-gaze lags of all gaze files of the pilot go to one file
+		try {
+			DeviationGazeCorrelation.writeToFile(lagFile, collect(withLags, trim -> trim.correlationStage), collect(withLags, trim -> trim.name));
+		} catch (IOException e) {
+			System.out.println("Error writing to file '" + lagFile + "'");
+		}
+
+		try {
+			SaccadeStage.writeToFile(saccadeFile, collect(finished, trim -> trim.saccadeStage), finishedNames);
+		} catch (IOException e) {
+			System.out.println("Error writing to file '" + saccadeFile + "'");
+		}
+
+		try {
+			GazeValidityFilter.writeToFile(validityFile, collect(finished, trim -> trim.filter), finishedNames);
+		} catch (IOException e) {
+			System.out.println("Error writing to file '" + validityFile + "'");
+		}
+
+		// the first gaze file that was trimmed represents the pilot in the cohort table
+		if (!finished.isEmpty()) {
+			GazeFileTrim first = finished.get(0);
+			List<FeatureVector> vectors = featureExport.build(pid, score, windows, first.transitionStage, first.pupilStage);
+			try {
+				featureExport.append(vectors);
+			} catch (IOException e) {
+				System.out.println("Unable to append features of " + pid + ": " + e.getMessage());
+			}
+			if (new File(MODEL_FILE).exists()) {
+				String predictionFile = pilotFolder + "/" + pid + "_prediction.csv";
+				try {
+					WekaModelInference model = WekaModelInference.load(MODEL_FILE);
+					WekaModelInference.writeToFile(predictionFile, vectors, model.predict(vectors));
+				} catch (IOException e) {
+					System.out.println("Unable to write predictions to '" + predictionFile + "': " + e.getMessage());
+				}
+			}
+		}
+	}
+
+	private static <T> List<T> collect(List<GazeFileTrim> trims, Function<GazeFileTrim, T> field) {
+		return trims.stream().map(field).collect(Collectors.toList());
+	}
+
+	/**
+	 * One gaze file of a pilot with the filter and stages of its trim, so the metrics of every file are written
+	 * against the right file name.
+	 */
+	private static class GazeFileTrim {
+
+		private final String gazeFile;
+		private final String name;
+		private final AoiIndex aois;
+		private final GazeValidityFilter filter;
+		private final AoiTransitionStage transitionStage;				// null without AOIs
+		private final DeviationGazeCorrelation correlationStage;		// null without AOIs or a mission clock
+		private final PupilStage pupilStage;
+		private final SaccadeStage saccadeStage;
+		private final GazeResampler resampler;							// null without a mission clock
+		private Future<?> future;
+
+		GazeFileTrim(String gazeFile, AoiIndex aois, FlightDataUpdated flightData, double resampleRate) {
+			this.gazeFile = gazeFile;
+			this.name = FileNameUtils.getBaseName(gazeFile);
+			this.aois = aois;
+			this.filter = new GazeValidityFilter(GAZE_FILTER_ACTION, GAZE_FILTER_PUPILS, GAZE_FILTER_MAX_GAP_ROWS);
+			this.transitionStage = aois != null ? new AoiTransitionStage(aois.getNames()) : null;
+			this.correlationStage = aois != null && flightData.getMissionClock() != null
+				? new DeviationGazeCorrelation(aois.getNames(), flightData) : null;
+			this.pupilStage = new PupilStage(PUPIL_BASELINE_WINDOW);
+			this.saccadeStage = new SaccadeStage();
+			this.resampler = flightData.getMissionClock() != null && resampleRate > 0
+				? new GazeResampler(aois != null ? aois.getNames() : null, flightData, resampleRate, GAZE_RESAMPLE_AGGREGATION) : null;
+		}
+
+		/**
+		 * Trims the file through all stages, then writes the resampled series and the flight join.
+		 */
+		void run(String outputFolder, GazeWindowTable windows, GazeFlightJoin flightJoin) throws GazeTrimException, IOException {
+			List<GazeStage> stages = new ArrayList<>();
+			if (aois != null) {
+				stages.add(new AoiStage(aois));
+				stages.add(transitionStage);
+			}
+			if (correlationStage != null) {
+				stages.add(correlationStage);
+			}
+			stages.add(pupilStage);
+			stages.add(saccadeStage);
+			if (resampler != null) {
+				stages.add(resampler);
+			}
+			GazeTrimmerUpdated.trim(gazeFile, outputFolder, windows, GAZE_OUTPUT_MODE, stages, filter);
+			if (resampler != null) {
+				resampler.writeToFile(outputFolder + "/" + name + "_resampled.csv");
+			}
+			if (flightJoin != null) {
+				flightJoin.join(gazeFile, outputFolder + "/" + name + "_flight_join.csv");
 			}
 		}
 	}
@@ -0,0 +1,159 @@
+package scoring.scoringUpdated;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import com.opencsv.CSVWriter;
+import utils.QuantileSketch;
+
+/**
+ * Named {@link QuantileSketch}es for the measures of one or more flights.
+ *
+ * {@link ScoreCalculationUpdated} fills one instance per flight while scoring. The sketches are written
+ * next to the pilot's score file and can be merged across pilots (or threads) to get cohort-wide
+ * percentiles without re-reading any flight data.
+ */
+public class ScoreSketches implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String ILS_AIRSPEED = "ILS_Airspeed";
+	public static final String ILS_VSI = "ILS_VSI";
+	public static final String ILS_ABS_LOCALIZER_DEFLECTION = "ILS_ABS_Localizer_Deflection";
+	public static final String FINAL_APPROACH_ABS_GLIDESLOPE_DEFLECTION = "FinalApproach_ABS_Glideslope_Deflection";
+	public static final String OVERALL_SCORE = "Overall_Score";
+	public static final String APPROACH_SCORE = "Approach_Score";
+	public static final String LANDING_SCORE = "Landing_Score";
+
+	private static final double[] REPORTED_QUANTILES = {0.1, 0.25, 0.5, 0.75, 0.9};
+
+	// insertion ordered so output files list the measures in a stable order
+	private final Map<String, QuantileSketch> sketches = new LinkedHashMap<>();
+
+	/**
+	 * Adds a sample to the named measure, creating its sketch on first use.
+	 * @param measure	measure name
+	 * @param value		sample value
+	 */
+	public void update(String measure, double value) {
+		QuantileSketch sketch = sketches.get(measure);
+		if (sketch == null) {
+			sketch = new QuantileSketch();
+			sketches.put(measure, sketch);
+		}
+		sketch.update(value);
+	}
+
+	/**
+	 * Merges every measure of another set of sketches into this one.
+	 * @param other	sketches to merge
+	 */
+	public void merge(ScoreSketches other) {
+		for (Map.Entry<String, QuantileSketch> entry : other.sketches.entrySet()) {
+			QuantileSketch sketch = sketches.get(entry.getKey());
+			if (sketch == null) {
+				sketch = new QuantileSketch();
+				sketches.put(entry.getKey(), sketch);
+			}
+			sketch.merge(entry.getValue());
+		}
+	}
+
+	public QuantileSketch getSketch(String measure) {
+		return sketches.get(measure);
+	}
+
+	/**
+	 * Writes the sketches to a file so they can be merged later.
+	 * @param outputFile	path of the file to write
+	 */
+	public void writeToFile(String outputFile) throws IOException {
+		try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(outputFile))) {
+			out.writeObject(this);
+		}
+	}
+
+	/**
+	 * Reads sketches previously written with {@link #writeToFile(String)}.
+	 * @param inputFile	path of the file to read
+	 * @return			the sketches
+	 */
+	public static ScoreSketches readFromFile(String inputFile) throws IOException, ClassNotFoundException {
+		try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(inputFile))) {
+			return (ScoreSketches) in.readObject();
+		}
+	}
+
+	/**
+	 * Writes count, min, max, and the reported percentiles of every measure as a csv table.
+	 * @param outputFile	path of the csv file to write
+	 */
+	public void writePercentiles(String outputFile) throws IOException {
+		String[] headers = {"Measure", "Count", "Min", "P10", "P25", "P50", "P75", "P90", "Max"};
+		try (
+			FileWriter outputFileWriter = new FileWriter(new File(outputFile));
+			CSVWriter outputCSVWriter = new CSVWriter(outputFileWriter);
+		){
+			outputCSVWriter.writeNext(headers);
+			for (Map.Entry<String, QuantileSketch> entry : sketches.entrySet()) {
+				QuantileSketch sketch = entry.getValue();
+				String[] row = new String[headers.length];
+				row[0] = entry.getKey();
+				row[1] = String.valueOf(sketch.getCount());
+				row[2] = String.valueOf(sketch.getMin());
+				for (int i = 0; i < REPORTED_QUANTILES.length; i++) {
+					row[3 + i] = String.valueOf(sketch.getQuantile(REPORTED_QUANTILES[i]));
+				}
+				row[headers.length - 1] = String.valueOf(sketch.getMax());
+				outputCSVWriter.writeNext(row);
+			}
+		}
+	}
+
+	/**
+	 * Merges the sketches of every pilot under an output directory and writes the cohort percentiles.
+	 * @param args[0] output directory that holds one folder per pilot
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1 || !new File(args[0]).isDirectory()) {
+			System.out.println("Output directory not specified.");
+			return;
+		}
+
+		File[] pilotFolders = new File(args[0]).listFiles(File::isDirectory);
+		List<File> sketchFiles = Arrays.stream(pilotFolders == null ? new File[0] : pilotFolders)
+			.flatMap(folder -> Arrays.stream(folder.listFiles((dir, name) -> name.endsWith("_sketches.ser"))))
+			.collect(Collectors.toList());
+
+		// each worker merges into its own container, containers are merged at the end
+		ScoreSketches cohort = sketchFiles.parallelStream().collect(
+			ScoreSketches::new,
+			(merged, file) -> {
+				try {
+					merged.merge(readFromFile(file.getPath()));
+				} catch (IOException | ClassNotFoundException e) {
+					System.out.println("Unable to read sketches from " + file + ": " + e);
+				}
+			},
+			ScoreSketches::merge);
+
+		String outputFile = args[0] + "/score_percentiles.csv";
+		try {
+			cohort.writePercentiles(outputFile);
+			System.out.printf("Merged %d sketch files into %s%n", sketchFiles.size(), outputFile);
+		} catch (IOException e) {
+			System.out.println("Error writing to file '" + outputFile + "'");
+		}
+	}
+
+}
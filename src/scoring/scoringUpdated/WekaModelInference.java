@@ -0,0 +1,194 @@
+package scoring.scoringUpdated;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import com.opencsv.CSVWriter;
+import weka.classifiers.Classifier;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SerializationHelper;
+import weka.core.Utils;
+
+/**
+ * Applies a trained Weka classifier, such as an expertise model, to the {@link FeatureVector}s of a pilot.
+ *
+ * The model file must be saved together with its training header ({@code SerializationHelper.writeAll}, or
+ * "Save model" in the Weka Explorer), which names the attributes and the class. Feature values are matched to
+ * the header by attribute name, so the model may use any subset of the {@link FeatureExport} attributes in
+ * any order; attributes the vector does not have are passed as missing.
+ *
+ * Each model file is read once per JVM and cached. Weka does not promise that a classifier can be used from
+ * several threads at once, so predictions on one model are serialized; a pilot's vectors are scored as one
+ * batch while holding the model.
+ */
+public class WekaModelInference {
+
+	private static final Map<String, WekaModelInference> CACHE = new HashMap<>();
+
+	private final Classifier classifier;
+	private final Instances header;
+
+	private WekaModelInference(Classifier classifier, Instances header) {
+		this.classifier = classifier;
+		this.header = header;
+	}
+
+	/**
+	 * Predicted class of one feature vector.
+	 */
+	public static class Prediction {
+
+		private final String predictedClass;
+		private final double confidence;
+
+		public Prediction(String predictedClass, double confidence) {
+			this.predictedClass = predictedClass;
+			this.confidence = confidence;
+		}
+
+		/**
+		 * @return label of the most likely class, or the predicted value for a numeric class
+		 */
+		public String getPredictedClass() {
+			return predictedClass;
+		}
+
+		/**
+		 * @return probability of the predicted class, NaN for a numeric class
+		 */
+		public double getConfidence() {
+			return confidence;
+		}
+	}
+
+	/**
+	 * Returns the model stored in a file, reading it on the first call only.
+	 * @param modelFile	Weka model file with its training header
+	 * @return			cached model
+	 */
+	public static WekaModelInference load(String modelFile) throws IOException {
+		String key = new File(modelFile).getAbsolutePath();
+		synchronized (CACHE) {
+			WekaModelInference model = CACHE.get(key);
+			if (model == null) {
+				model = read(modelFile);
+				CACHE.put(key, model);
+			}
+			return model;
+		}
+	}
+
+	private static WekaModelInference read(String modelFile) throws IOException {
+		Object[] objects;
+		try {
+			objects = SerializationHelper.readAll(modelFile);
+		} catch (Exception e) {
+			throw new IOException("Unable to read Weka model " + modelFile, e);
+		}
+		if (objects.length < 2 || !(objects[0] instanceof Classifier) || !(objects[1] instanceof Instances)) {
+			throw new IOException("Weka model " + modelFile + " must be saved with its training header");
+		}
+		Instances header = new Instances((Instances) objects[1], 0);
+		if (header.classIndex() < 0) {
+			// Weka's default when no class was chosen
+			header.setClassIndex(header.numAttributes() - 1);
+		}
+		return new WekaModelInference((Classifier) objects[0], header);
+	}
+
+	/**
+	 * Classifies a batch of feature vectors.
+	 * @param vectors	feature vectors with values in {@link FeatureExport#getAttributeNames()} order
+	 * @return			one prediction per vector, in the same order
+	 */
+	public List<Prediction> predict(List<FeatureVector> vectors) throws IOException {
+		// position of each header attribute in the feature vectors, -1 if the vectors do not have it
+		String[] names = FeatureExport.getAttributeNames();
+		int[] source = new int[header.numAttributes()];
+		for (int a = 0; a < source.length; a++) {
+			source[a] = -1;
+			for (int i = 0; i < names.length; i++) {
+				if (names[i].equals(header.attribute(a).name())) {
+					source[a] = i;
+				}
+			}
+		}
+
+		List<Instance> instances = new ArrayList<>(vectors.size());
+		for (FeatureVector vector : vectors) {
+			double[] features = vector.getValues();
+			double[] values = new double[header.numAttributes()];
+			for (int a = 0; a < values.length; a++) {
+				Attribute attribute = header.attribute(a);
+				values[a] = Utils.missingValue();
+				if (a == header.classIndex()) {
+					continue;
+				}
+				if (source[a] != -1 && attribute.isNumeric()) {
+					values[a] = features[source[a]];
+				} else if (attribute.name().equals("window") && attribute.isNominal()) {
+					int index = attribute.indexOfValue(vector.getWindow());
+					if (index != -1) {
+						values[a] = index;
+					}
+				}
+			}
+			Instance instance = new DenseInstance(1, values);
+			instance.setDataset(header);
+			instances.add(instance);
+		}
+
+		Attribute classAttribute = header.classAttribute();
+		List<Prediction> predictions = new ArrayList<>(vectors.size());
+		synchronized (classifier) {
+			try {
+				for (Instance instance : instances) {
+					if (classAttribute.isNominal()) {
+						double[] distribution = classifier.distributionForInstance(instance);
+						int best = 0;
+						for (int c = 1; c < distribution.length; c++) {
+							if (distribution[c] > distribution[best]) {
+								best = c;
+							}
+						}
+						predictions.add(new Prediction(classAttribute.value(best), distribution[best]));
+					} else {
+						predictions.add(new Prediction(String.valueOf(classifier.classifyInstance(instance)), Double.NaN));
+					}
+				}
+			} catch (Exception e) {
+				throw new IOException("Weka model failed to classify a feature vector", e);
+			}
+		}
+		return predictions;
+	}
+
+	/**
+	 * Writes the predictions of one pilot to a csv file.
+	 * @param outputFile	path of the csv file to write
+	 * @param vectors		classified feature vectors
+	 * @param predictions	predictions in the same order as the vectors
+	 */
+	public static void writeToFile(String outputFile, List<FeatureVector> vectors, List<Prediction> predictions) throws IOException {
+		try (CSVWriter writer = new CSVWriter(new FileWriter(new File(outputFile)))) {
+			writer.writeNext(new String[] {"Pilot", "Window", "Predicted_Class", "Confidence"});
+			for (int i = 0; i < vectors.size(); i++) {
+				Prediction prediction = predictions.get(i);
+				writer.writeNext(new String[] {
+					vectors.get(i).getPilot(),
+					vectors.get(i).getWindow(),
+					prediction.getPredictedClass(),
+					Double.isNaN(prediction.getConfidence()) ? "" : String.valueOf(prediction.getConfidence())
+				});
+			}
+		}
+	}
+
+}
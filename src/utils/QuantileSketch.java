@@ -0,0 +1,226 @@
+package utils;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Mergeable quantile sketch (KLL style). Keeps a small hierarchy of compactors instead of the raw
+ * samples, so memory stays around a few times {@code k} values no matter how many samples are added.
+ * Sketches built separately (per flight, per pilot, or per thread) can be merged into one that
+ * answers quantiles for the combined stream.
+ * <p>
+ * A sketch is not thread-safe. Give each thread its own sketch and merge them when the threads are done.
+ */
+public class QuantileSketch implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	private static final int DEFAULT_K = 200;
+	private static final double CAPACITY_DECAY = 2.0 / 3.0;
+
+	private final int k;
+	private final Random random;
+	private long count = 0;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+
+	// items retained at each level; an item at level h stands for 2^h samples
+	private double[][] levels;
+	private int[] sizes;
+
+	public QuantileSketch() {
+		this(DEFAULT_K);
+	}
+
+	/**
+	 * @param k	accuracy parameter, rank error is roughly 1.7 / k
+	 */
+	public QuantileSketch(int k) {
+		if (k < 8) {
+			throw new IllegalArgumentException("k must be at least 8");
+		}
+		this.k = k;
+		this.random = new Random();
+		this.levels = new double[][] { new double[k] };
+		this.sizes = new int[1];
+	}
+
+	/**
+	 * Adds a sample to the sketch. NaN values are ignored.
+	 * @param value	sample to add
+	 */
+	public void update(double value) {
+		if (Double.isNaN(value)) {
+			return;
+		}
+		count++;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+		append(0, value);
+		if (retained() >= totalCapacity()) {
+			compress();
+		}
+	}
+
+	/**
+	 * Folds another sketch into this one. The other sketch is not modified.
+	 * @param other	sketch to merge
+	 */
+	public void merge(QuantileSketch other) {
+		if (other == null || other.count == 0) {
+			return;
+		}
+		while (levels.length < other.levels.length) {
+			addLevel();
+		}
+		for (int h = 0; h < other.levels.length; h++) {
+			for (int i = 0; i < other.sizes[h]; i++) {
+				append(h, other.levels[h][i]);
+			}
+		}
+		count += other.count;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+		while (retained() >= totalCapacity()) {
+			compress();
+		}
+	}
+
+	/**
+	 * @param fraction	quantile to estimate, between 0 and 1
+	 * @return			estimated value at the quantile, or NaN if the sketch is empty
+	 */
+	public double getQuantile(double fraction) {
+		if (count == 0) {
+			return Double.NaN;
+		}
+		if (fraction <= 0) {
+			return min;
+		}
+		if (fraction >= 1) {
+			return max;
+		}
+
+		int n = retained();
+		double[] values = new double[n];
+		long[] weights = new long[n];
+		Integer[] order = new Integer[n];
+		int j = 0;
+		for (int h = 0; h < levels.length; h++) {
+			for (int i = 0; i < sizes[h]; i++) {
+				values[j] = levels[h][i];
+				weights[j] = 1L << h;
+				order[j] = j;
+				j++;
+			}
+		}
+		Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+
+		long totalWeight = 0;
+		for (long weight : weights) {
+			totalWeight += weight;
+		}
+		double target = fraction * totalWeight;
+		long cumulative = 0;
+		for (int i = 0; i < n; i++) {
+			cumulative += weights[order[i]];
+			if (cumulative >= target) {
+				return values[order[i]];
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * @param value	value to rank
+	 * @return		estimated fraction of samples less than or equal to the value
+	 */
+	public double getRank(double value) {
+		if (count == 0) {
+			return Double.NaN;
+		}
+		long below = 0;
+		long totalWeight = 0;
+		for (int h = 0; h < levels.length; h++) {
+			for (int i = 0; i < sizes[h]; i++) {
+				totalWeight += 1L << h;
+				if (levels[h][i] <= value) {
+					below += 1L << h;
+				}
+			}
+		}
+		return (double) below / totalWeight;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getMin() {
+		return count == 0 ? Double.NaN : min;
+	}
+
+	public double getMax() {
+		return count == 0 ? Double.NaN : max;
+	}
+
+	private void append(int level, double value) {
+		if (sizes[level] == levels[level].length) {
+			levels[level] = Arrays.copyOf(levels[level], levels[level].length * 2);
+		}
+		levels[level][sizes[level]++] = value;
+	}
+
+	private void addLevel() {
+		levels = Arrays.copyOf(levels, levels.length + 1);
+		levels[levels.length - 1] = new double[k];
+		sizes = Arrays.copyOf(sizes, sizes.length + 1);
+	}
+
+	private int capacity(int level) {
+		int depth = levels.length - 1 - level;
+		return Math.max(2, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+	}
+
+	private int totalCapacity() {
+		int total = 0;
+		for (int h = 0; h < levels.length; h++) {
+			total += capacity(h);
+		}
+		return total;
+	}
+
+	private int retained() {
+		int total = 0;
+		for (int size : sizes) {
+			total += size;
+		}
+		return total;
+	}
+
+	/**
+	 * Compacts the lowest level that is over capacity: sorts it and promotes every other item
+	 * (starting at a random offset) to the next level, halving its weight in this level.
+	 */
+	private void compress() {
+		for (int h = 0; h < levels.length; h++) {
+			if (sizes[h] < capacity(h)) {
+				continue;
+			}
+			if (h + 1 == levels.length) {
+				addLevel();
+			}
+			double[] level = levels[h];
+			int size = sizes[h];
+			Arrays.sort(level, 0, size);
+			// an odd item out stays behind so the promoted items pair up exactly
+			int start = size % 2;
+			for (int i = start + (random.nextBoolean() ? 1 : 0); i < size; i += 2) {
+				append(h + 1, level[i]);
+			}
+			sizes[h] = start;
+			return;
+		}
+	}
+
+}
@@ -0,0 +1,174 @@
+package utils;
+
+/**
+ * Fast Fourier transform of real-valued input, in pure Java.
+ *
+ * The {@code n} real samples are packed into {@code n / 2} complex values, transformed with an
+ * iterative radix-2 FFT, and then split back into the {@code n / 2 + 1} non-redundant bins of the
+ * real spectrum. {@link #inverse} runs the same steps backwards. Twiddle factors, the bit-reversal
+ * table, and all work and output buffers are allocated once in the constructor, so repeated
+ * transforms do not allocate. An instance is not thread-safe; use one per thread.
+ */
+public class RealFft {
+
+	private final int size;
+	private final int half;
+	private final int[] bitReverse;
+	private final double[] cos;		// cos(2 pi j / size), j = 0..size/2
+	private final double[] sin;		// sin(2 pi j / size), j = 0..size/2
+	private final double[] workRe;
+	private final double[] workIm;
+	private final double[] outRe;
+	private final double[] outIm;
+
+	/**
+	 * @param size	number of real samples per transform, a power of two of at least 4
+	 */
+	public RealFft(int size) {
+		if (size < 4 || Integer.bitCount(size) != 1) {
+			throw new IllegalArgumentException("FFT size must be a power of two of at least 4");
+		}
+		this.size = size;
+		this.half = size / 2;
+		this.cos = new double[half + 1];
+		this.sin = new double[half + 1];
+		for (int j = 0; j <= half; j++) {
+			cos[j] = Math.cos(2 * Math.PI * j / size);
+			sin[j] = Math.sin(2 * Math.PI * j / size);
+		}
+		int bits = Integer.numberOfTrailingZeros(half);
+		this.bitReverse = new int[half];
+		for (int i = 0; i < half; i++) {
+			bitReverse[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+		}
+		this.workRe = new double[half];
+		this.workIm = new double[half];
+		this.outRe = new double[half + 1];
+		this.outIm = new double[half + 1];
+	}
+
+	/**
+	 * Transforms {@code size} samples starting at {@code offset}. Results are read with
+	 * {@link #getReal(int)}, {@link #getImag(int)}, and {@link #getPower(int)} until the next call.
+	 * @param input		real samples
+	 * @param offset	index of the first sample
+	 */
+	public void transform(double[] input, int offset) {
+		// pack even samples into the real part and odd samples into the imaginary part
+		for (int i = 0; i < half; i++) {
+			int j = bitReverse[i];
+			workRe[j] = input[offset + 2 * i];
+			workIm[j] = input[offset + 2 * i + 1];
+		}
+
+		complexTransform(-1);
+
+		// split the packed spectrum into the even and odd sample spectra and recombine
+		for (int k = 0; k <= half; k++) {
+			int a = k % half;
+			int b = (half - k) % half;
+			double zRe = workRe[a];
+			double zIm = workIm[a];
+			double cRe = workRe[b];
+			double cIm = -workIm[b];
+			double evenRe = (zRe + cRe) / 2;
+			double evenIm = (zIm + cIm) / 2;
+			double oddRe = (zIm - cIm) / 2;
+			double oddIm = -(zRe - cRe) / 2;
+			double wRe = cos[k];
+			double wIm = -sin[k];
+			outRe[k] = evenRe + oddRe * wRe - oddIm * wIm;
+			outIm[k] = evenIm + oddRe * wIm + oddIm * wRe;
+		}
+	}
+
+	/**
+	 * Inverse of {@link #transform(double[], int)}: turns the {@code size / 2 + 1} bins of the spectrum of a
+	 * real signal back into {@code size} samples.
+	 * @param re		real parts of the bins
+	 * @param im		imaginary parts of the bins; those of bin 0 and bin {@code size / 2} are ignored
+	 * @param output	array receiving the samples
+	 * @param offset	index of the first output sample
+	 */
+	public void inverse(double[] re, double[] im, double[] output, int offset) {
+		// rebuild the packed spectrum from the even and odd sample spectra
+		for (int k = 0; k < half; k++) {
+			double cRe = re[half - k];
+			double cIm = k == 0 ? 0 : -im[half - k];
+			double kIm = k == 0 ? 0 : im[k];
+			double evenRe = (re[k] + cRe) / 2;
+			double evenIm = (kIm + cIm) / 2;
+			double diffRe = (re[k] - cRe) / 2;
+			double diffIm = (kIm - cIm) / 2;
+			// odd spectrum = difference / twiddle, the twiddle having unit length
+			double wRe = cos[k];
+			double wIm = sin[k];
+			double oddRe = diffRe * wRe - diffIm * wIm;
+			double oddIm = diffRe * wIm + diffIm * wRe;
+			int j = bitReverse[k];
+			workRe[j] = evenRe - oddIm;
+			workIm[j] = evenIm + oddRe;
+		}
+
+		complexTransform(1);
+
+		// unpack even and odd samples, scaling by the length of the complex transform
+		for (int i = 0; i < half; i++) {
+			output[offset + 2 * i] = workRe[i] / half;
+			output[offset + 2 * i + 1] = workIm[i] / half;
+		}
+	}
+
+	/**
+	 * Iterative radix-2 FFT of length {@code size / 2} over the bit-reversed work buffers, in place.
+	 * @param sign	-1 for the forward transform, 1 for the unscaled inverse
+	 */
+	private void complexTransform(int sign) {
+		for (int length = 2; length <= half; length <<= 1) {
+			int step = size / length;
+			int span = length >> 1;
+			for (int start = 0; start < half; start += length) {
+				for (int k = 0; k < span; k++) {
+					double wRe = cos[k * step];
+					double wIm = sign * sin[k * step];
+					int a = start + k;
+					int b = a + span;
+					double tRe = workRe[b] * wRe - workIm[b] * wIm;
+					double tIm = workRe[b] * wIm + workIm[b] * wRe;
+					workRe[b] = workRe[a] - tRe;
+					workIm[b] = workIm[a] - tIm;
+					workRe[a] += tRe;
+					workIm[a] += tIm;
+				}
+			}
+		}
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return number of spectrum bins, {@code size / 2 + 1}
+	 */
+	public int getBinCount() {
+		return half + 1;
+	}
+
+	public double getReal(int bin) {
+		return outRe[bin];
+	}
+
+	public double getImag(int bin) {
+		return outIm[bin];
+	}
+
+	/**
+	 * @param bin	spectrum bin, 0 to {@code size / 2}
+	 * @return		squared magnitude of the bin
+	 */
+	public double getPower(int bin) {
+		return outRe[bin] * outRe[bin] + outIm[bin] * outIm[bin];
+	}
+
+}
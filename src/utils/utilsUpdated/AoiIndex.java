@@ -0,0 +1,304 @@
+package utils.utilsUpdated;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+
+/**
+ * Areas of interest (AOIs) on the cockpit display, defined as polygons in Gazepoint screen coordinates
+ * (0 to 1, origin top left), with a uniform grid over the polygons for constant-time hit-testing.
+ *
+ * The definition file is a csv file with the header {@code AOI,X,Y} and one vertex per row; consecutive
+ * rows with the same AOI name form one polygon, and rows whose first cell starts with {@code #} are
+ * comments. Where polygons overlap, the one listed first wins.
+ *
+ * Each grid cell keeps the polygons that partly overlap it, up to the first polygon that covers the whole
+ * cell, which is stored separately. Most cells are either empty or covered by a single instrument, so a
+ * lookup usually ends without any point-in-polygon test.
+ */
+public class AoiIndex {
+
+	private static final int DEFAULT_RESOLUTION = 64;
+
+	private final String[] names;
+	private final double[][] xs;
+	private final double[][] ys;
+
+	// grid over the bounding box of all polygons
+	private final int resolution;
+	private final double minX;
+	private final double minY;
+	private final double cellWidth;
+	private final double cellHeight;
+	private final int[] cover;			// polygon that covers the whole cell, -1 if none
+	private final int[] cellStart;		// candidates of cell c are candidates[cellStart[c] .. cellStart[c + 1])
+	private final int[] candidates;
+
+	/**
+	 * @param names	AOI names, in priority order
+	 * @param xs	x coordinates of each polygon's vertices
+	 * @param ys	y coordinates of each polygon's vertices
+	 */
+	public AoiIndex(String[] names, double[][] xs, double[][] ys) {
+		this(names, xs, ys, DEFAULT_RESOLUTION);
+	}
+
+	/**
+	 * @param names			AOI names, in priority order
+	 * @param xs			x coordinates of each polygon's vertices
+	 * @param ys			y coordinates of each polygon's vertices
+	 * @param resolution	number of grid cells along each axis
+	 */
+	public AoiIndex(String[] names, double[][] xs, double[][] ys, int resolution) {
+		this.names = names;
+		this.xs = xs;
+		this.ys = ys;
+		this.resolution = resolution;
+
+		double loX = Double.POSITIVE_INFINITY, loY = Double.POSITIVE_INFINITY;
+		double hiX = Double.NEGATIVE_INFINITY, hiY = Double.NEGATIVE_INFINITY;
+		for (int p = 0; p < names.length; p++) {
+			for (int v = 0; v < xs[p].length; v++) {
+				loX = Math.min(loX, xs[p][v]);
+				hiX = Math.max(hiX, xs[p][v]);
+				loY = Math.min(loY, ys[p][v]);
+				hiY = Math.max(hiY, ys[p][v]);
+			}
+		}
+		if (names.length == 0) {
+			loX = loY = 0;
+			hiX = hiY = 1;
+		}
+		this.minX = loX;
+		this.minY = loY;
+		this.cellWidth = Math.max(hiX - loX, 1e-9) / resolution;
+		this.cellHeight = Math.max(hiY - loY, 1e-9) / resolution;
+
+		int cells = resolution * resolution;
+		this.cover = new int[cells];
+		this.cellStart = new int[cells + 1];
+		int[] items = new int[Math.max(16, names.length * 4)];
+		int count = 0;
+		for (int row = 0; row < resolution; row++) {
+			for (int column = 0; column < resolution; column++) {
+				int cell = row * resolution + column;
+				double x0 = minX + column * cellWidth;
+				double y0 = minY + row * cellHeight;
+				double x1 = x0 + cellWidth;
+				double y1 = y0 + cellHeight;
+				cellStart[cell] = count;
+				cover[cell] = -1;
+				for (int p = 0; p < names.length; p++) {
+					int overlap = overlap(p, x0, y0, x1, y1);
+					if (overlap == 0) {
+						continue;
+					}
+					if (overlap == 2) {
+						// lower priority polygons can never be hit in this cell
+						cover[cell] = p;
+						break;
+					}
+					if (count == items.length) {
+						items = Arrays.copyOf(items, count * 2);
+					}
+					items[count++] = p;
+				}
+			}
+		}
+		cellStart[cells] = count;
+		this.candidates = Arrays.copyOf(items, count);
+	}
+
+	/**
+	 * Reads an AOI definition file.
+	 * @param definitionFile	csv file with AOI,X,Y rows
+	 * @return					index over the polygons in the file
+	 */
+	public static AoiIndex load(String definitionFile) throws IOException {
+		Map<String, List<double[]>> polygons = new LinkedHashMap<>();
+		try (CSVReader reader = new CSVReader(new FileReader(definitionFile))) {
+			String[] row;
+			boolean header = true;
+			while ((row = reader.readNext()) != null) {
+				if (header) {
+					header = false;
+					continue;
+				}
+				if (row.length < 3 || row[0].trim().isEmpty() || row[0].trim().startsWith("#")) {
+					continue;
+				}
+				String name = row[0].trim();
+				polygons.computeIfAbsent(name, k -> new ArrayList<>())
+					.add(new double[] {Double.parseDouble(row[1].trim()), Double.parseDouble(row[2].trim())});
+			}
+		} catch (CsvValidationException | NumberFormatException e) {
+			throw new IOException("Invalid AOI definition file " + definitionFile, e);
+		}
+
+		int n = polygons.size();
+		String[] names = new String[n];
+		double[][] xs = new double[n][];
+		double[][] ys = new double[n][];
+		int p = 0;
+		for (Map.Entry<String, List<double[]>> polygon : polygons.entrySet()) {
+			List<double[]> vertices = polygon.getValue();
+			if (vertices.size() < 3) {
+				throw new IOException("AOI " + polygon.getKey() + " needs at least three vertices in " + definitionFile);
+			}
+			names[p] = polygon.getKey();
+			xs[p] = new double[vertices.size()];
+			ys[p] = new double[vertices.size()];
+			for (int v = 0; v < vertices.size(); v++) {
+				xs[p][v] = vertices.get(v)[0];
+				ys[p][v] = vertices.get(v)[1];
+			}
+			p++;
+		}
+		return new AoiIndex(names, xs, ys);
+	}
+
+	/**
+	 * @param x	horizontal screen coordinate
+	 * @param y	vertical screen coordinate
+	 * @return	id of the AOI that contains the point, -1 if none
+	 */
+	public int locate(double x, double y) {
+		int column = (int) Math.floor((x - minX) / cellWidth);
+		int row = (int) Math.floor((y - minY) / cellHeight);
+		if (column < 0 || row < 0 || column >= resolution || row >= resolution) {
+			// also false for NaN
+			return -1;
+		}
+		int cell = row * resolution + column;
+		for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+			int p = candidates[i];
+			if (contains(p, x, y)) {
+				return p;
+			}
+		}
+		return cover[cell];
+	}
+
+	/**
+	 * Hit-tests every polygon in priority order, without the grid.
+	 * @param x	horizontal screen coordinate
+	 * @param y	vertical screen coordinate
+	 * @return	id of the AOI that contains the point, -1 if none
+	 */
+	public int locateBruteForce(double x, double y) {
+		for (int p = 0; p < names.length; p++) {
+			if (contains(p, x, y)) {
+				return p;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return number of AOIs
+	 */
+	public int size() {
+		return names.length;
+	}
+
+	/**
+	 * @return AOI names, indexed by id
+	 */
+	public String[] getNames() {
+		return names.clone();
+	}
+
+	/**
+	 * @param id	AOI id
+	 * @return		name of the AOI
+	 */
+	public String getName(int id) {
+		return names[id];
+	}
+
+	/**
+	 * @param name	AOI name
+	 * @return		id of the AOI, -1 if there is none with the name
+	 */
+	public int getId(String name) {
+		for (int p = 0; p < names.length; p++) {
+			if (names[p].equals(name)) {
+				return p;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Even-odd rule point-in-polygon test.
+	 */
+	private boolean contains(int p, double x, double y) {
+		double[] px = xs[p];
+		double[] py = ys[p];
+		boolean inside = false;
+		for (int i = 0, j = px.length - 1; i < px.length; j = i++) {
+			if ((py[i] > y) != (py[j] > y) && x < (px[j] - px[i]) * (y - py[i]) / (py[j] - py[i]) + px[i]) {
+				inside = !inside;
+			}
+		}
+		return inside;
+	}
+
+	/**
+	 * @return 0 if polygon p does not touch the box, 2 if it covers the whole box, 1 otherwise
+	 */
+	private int overlap(int p, double x0, double y0, double x1, double y1) {
+		double[] px = xs[p];
+		double[] py = ys[p];
+		boolean edgeCrosses = false;
+		for (int i = 0, j = px.length - 1; i < px.length; j = i++) {
+			if (segmentTouchesBox(px[j], py[j], px[i], py[i], x0, y0, x1, y1)) {
+				edgeCrosses = true;
+				break;
+			}
+		}
+		if (edgeCrosses) {
+			return 1;
+		}
+		// no edge touches the box, so the box is either wholly inside or wholly outside the polygon
+		return contains(p, (x0 + x1) / 2, (y0 + y1) / 2) ? 2 : 0;
+	}
+
+	/**
+	 * Liang-Barsky clip of a segment against a closed box.
+	 */
+	private static boolean segmentTouchesBox(double ax, double ay, double bx, double by,
+			double x0, double y0, double x1, double y1) {
+		double dx = bx - ax;
+		double dy = by - ay;
+		double[] p = {-dx, dx, -dy, dy};
+		double[] q = {ax - x0, x1 - ax, ay - y0, y1 - ay};
+		double t0 = 0;
+		double t1 = 1;
+		for (int i = 0; i < 4; i++) {
+			if (p[i] == 0) {
+				if (q[i] < 0) {
+					return false;
+				}
+			} else {
+				double t = q[i] / p[i];
+				if (p[i] < 0) {
+					t0 = Math.max(t0, t);
+				} else {
+					t1 = Math.min(t1, t);
+				}
+				if (t0 > t1) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,65 @@
+package utils.utilsUpdated;
+
+import java.util.Collection;
+
+/**
+ * Fills the empty {@code AOI} cells of a gaze file by hit-testing the fixation point ({@code FPOGX},
+ * {@code FPOGY}) against an {@link AoiIndex}. AOIs already exported by Gazepoint are kept, and rows the
+ * {@link GazeValidityFilter} does not pass to the stages are left empty. Files without the needed columns pass
+ * through unchanged.
+ */
+public class AoiStage implements GazeStage {
+
+	private final AoiIndex aois;
+	private int xIndex = -1;
+	private int yIndex = -1;
+	private int aoiIndex = -1;
+
+	/**
+	 * @param aois	AOI polygons, shared read-only between stages
+	 */
+	public AoiStage(AoiIndex aois) {
+		this.aois = aois;
+	}
+
+	@Override
+	public void open(String[] headers, GazeWindowTable windows) {
+		for (int i = 0; i < headers.length; i++) {
+			switch (headers[i]) {
+				case "FPOGX":	xIndex = i; break;
+				case "FPOGY":	yIndex = i; break;
+				case "AOI":		aoiIndex = i; break;
+				default:		break;
+			}
+		}
+	}
+
+	@Override
+	public int[] getColumns() {
+		return new int[] {xIndex, yIndex, aoiIndex};
+	}
+
+	@Override
+	public void accept(String[] row, Collection<Integer> active) {
+		if (xIndex == -1 || yIndex == -1 || aoiIndex == -1 || row.length <= aoiIndex) {
+			return;
+		}
+		if (!row[aoiIndex].isEmpty()) {
+			return;
+		}
+		try {
+			int id = aois.locate(Double.parseDouble(row[xIndex]), Double.parseDouble(row[yIndex]));
+			if (id != -1) {
+				row[aoiIndex] = aois.getName(id);
+			}
+		} catch (NumberFormatException e) {
+			// leave the AOI empty for rows without a fixation point
+		}
+	}
+
+	@Override
+	public void finish() {
+		// nothing is buffered
+	}
+
+}
@@ -0,0 +1,307 @@
+package utils.utilsUpdated;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import com.opencsv.CSVWriter;
+
+/**
+ * Builds AOI features for every gaze window in the same pass as trimming: dwell time per AOI, the AOI x AOI
+ * transition count matrix, and stationary and transition gaze entropy (in bits).
+ *
+ * Rows are grouped into fixations by {@code FPOGID}, so the stage works on both fixation exports and raw
+ * all-gaze files; a fixation's duration is its last {@code FPOGD} and its AOI the last non-empty {@code AOI}
+ * cell. Transitions are counted between consecutive fixations within each window, including
+ * re-fixations of the same AOI. A fixation outside every AOI breaks the chain. AOI names are interned to
+ * ids once, so all counts live in primitive arrays.
+ */
+public class AoiTransitionStage implements GazeStage {
+
+	private final String[] aoiNames;
+	private final Map<String, Integer> aoiIds = new HashMap<>();
+
+	private int aoiColumn = -1;
+	private int idColumn = -1;
+	private int durationColumn = -1;
+
+	private String[] windowLabels = new String[0];
+	private double[][] dwell;			// [window][aoi], seconds
+	private int[][] fixations;			// [window][aoi]
+	private int[][] transitions;		// [window][from * aoiCount + to]
+	private int[] previous;				// [window], AOI of the previous fixation, -1 if none
+
+	// fixation being read
+	private String fixationId;
+	private int fixationAoi = -1;
+	private double fixationDuration;
+	private int[] fixationWindows = new int[8];
+	private int fixationWindowCount;
+
+	/**
+	 * @param aoiNames	AOIs to count, for example from {@link AoiIndex}; other AOI names are ignored
+	 */
+	public AoiTransitionStage(String[] aoiNames) {
+		this.aoiNames = aoiNames.clone();
+		for (int i = 0; i < aoiNames.length; i++) {
+			aoiIds.put(aoiNames[i], i);
+		}
+	}
+
+	@Override
+	public void open(String[] headers, GazeWindowTable windows) {
+		for (int i = 0; i < headers.length; i++) {
+			switch (headers[i]) {
+				case "AOI":		aoiColumn = i; break;
+				case "FPOGID":	idColumn = i; break;
+				case "FPOGD":	durationColumn = i; break;
+				default:		break;
+			}
+		}
+		int n = windows.size();
+		int aoiCount = aoiNames.length;
+		windowLabels = new String[n];
+		for (int w = 0; w < n; w++) {
+			windowLabels[w] = windows.getLabel(w);
+		}
+		dwell = new double[n][aoiCount];
+		fixations = new int[n][aoiCount];
+		transitions = new int[n][aoiCount * aoiCount];
+		previous = new int[n];
+		Arrays.fill(previous, -1);
+	}
+
+	@Override
+	public int[] getColumns() {
+		return new int[] {aoiColumn, idColumn, durationColumn};
+	}
+
+	@Override
+	public void accept(String[] row, Collection<Integer> active) {
+		if (aoiColumn == -1 || idColumn == -1 || durationColumn == -1) {
+			return;
+		}
+		if (Math.max(aoiColumn, Math.max(idColumn, durationColumn)) >= row.length) {
+			return;
+		}
+		String id = row[idColumn];
+		if (!id.equals(fixationId)) {
+			commitFixation();
+			fixationId = id;
+			fixationAoi = -1;
+			fixationDuration = 0;
+			// a fixation counts toward the windows it starts in
+			if (fixationWindows.length < active.size()) {
+				fixationWindows = new int[active.size() * 2];
+			}
+			fixationWindowCount = 0;
+			for (int window : active) {
+				fixationWindows[fixationWindowCount++] = window;
+			}
+		}
+		Integer aoi = row[aoiColumn].isEmpty() ? null : aoiIds.get(row[aoiColumn]);
+		if (aoi != null) {
+			fixationAoi = aoi;
+		}
+		try {
+			fixationDuration = Double.parseDouble(row[durationColumn]);
+		} catch (NumberFormatException e) {
+			// keep the last duration read
+		}
+	}
+
+	private void commitFixation() {
+		if (fixationId == null) {
+			return;
+		}
+		int aoiCount = aoiNames.length;
+		for (int i = 0; i < fixationWindowCount; i++) {
+			int window = fixationWindows[i];
+			if (fixationAoi == -1) {
+				previous[window] = -1;
+				continue;
+			}
+			fixations[window][fixationAoi]++;
+			dwell[window][fixationAoi] += fixationDuration;
+			if (previous[window] != -1) {
+				transitions[window][previous[window] * aoiCount + fixationAoi]++;
+			}
+			previous[window] = fixationAoi;
+		}
+		fixationId = null;
+	}
+
+	@Override
+	public void finish() {
+		commitFixation();
+	}
+
+	/**
+	 * @param label	window label
+	 * @return		index of the window, -1 if the file was not trimmed into a window with the label
+	 */
+	public int indexOf(String label) {
+		for (int w = 0; w < windowLabels.length; w++) {
+			if (windowLabels[w].equals(label)) {
+				return w;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param window	window index
+	 * @return			number of fixations inside an AOI
+	 */
+	public int getFixationCount(int window) {
+		int total = 0;
+		for (int count : fixations[window]) {
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * @param window	window index
+	 * @return			number of transitions between AOIs, including re-fixations
+	 */
+	public int getTransitionCount(int window) {
+		int total = 0;
+		for (int count : transitions[window]) {
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * @param window	window index
+	 * @return			Shannon entropy of the fixation distribution over AOIs, in bits
+	 */
+	public double getStationaryEntropy(int window) {
+		int total = 0;
+		for (int count : fixations[window]) {
+			total += count;
+		}
+		double entropy = 0;
+		for (int count : fixations[window]) {
+			if (count > 0) {
+				double p = (double) count / total;
+				entropy -= p * log2(p);
+			}
+		}
+		return entropy;
+	}
+
+	/**
+	 * @param window	window index
+	 * @return			entropy of the transition matrix rows weighted by the share of transitions leaving each AOI, in bits
+	 */
+	public double getTransitionEntropy(int window) {
+		int aoiCount = aoiNames.length;
+		int total = 0;
+		for (int count : transitions[window]) {
+			total += count;
+		}
+		double entropy = 0;
+		for (int from = 0; from < aoiCount; from++) {
+			int rowTotal = 0;
+			for (int to = 0; to < aoiCount; to++) {
+				rowTotal += transitions[window][from * aoiCount + to];
+			}
+			if (rowTotal == 0) {
+				continue;
+			}
+			double rowEntropy = 0;
+			for (int to = 0; to < aoiCount; to++) {
+				int count = transitions[window][from * aoiCount + to];
+				if (count > 0) {
+					double p = (double) count / rowTotal;
+					rowEntropy -= p * log2(p);
+				}
+			}
+			entropy += (double) rowTotal / total * rowEntropy;
+		}
+		return entropy;
+	}
+
+	private static double log2(double x) {
+		return Math.log(x) / Math.log(2);
+	}
+
+	/**
+	 * @return csv header of the feature rows
+	 */
+	public String[] getHeaders() {
+		int aoiCount = aoiNames.length;
+		String[] headers = new String[6 + aoiCount + aoiCount * aoiCount];
+		int c = 0;
+		headers[c++] = "Source";
+		headers[c++] = "Window";
+		headers[c++] = "Fixations";
+		headers[c++] = "Transitions";
+		headers[c++] = "Stationary_Entropy";
+		headers[c++] = "Transition_Entropy";
+		for (String name : aoiNames) {
+			headers[c++] = "Dwell_" + name;
+		}
+		for (String from : aoiNames) {
+			for (String to : aoiNames) {
+				headers[c++] = from + "_to_" + to;
+			}
+		}
+		return headers;
+	}
+
+	/**
+	 * Writes one feature row per window.
+	 * @param writer	csv writer to append to
+	 * @param source	name of the gaze file, written in the first column
+	 */
+	public void writeRows(CSVWriter writer, String source) {
+		if (dwell == null) {
+			// the file was never opened
+			return;
+		}
+		int aoiCount = aoiNames.length;
+		for (int window = 0; window < windowLabels.length; window++) {
+			String[] row = new String[6 + aoiCount + aoiCount * aoiCount];
+			int c = 0;
+			row[c++] = source;
+			row[c++] = windowLabels[window];
+			row[c++] = String.valueOf(getFixationCount(window));
+			row[c++] = String.valueOf(getTransitionCount(window));
+			row[c++] = String.valueOf(getStationaryEntropy(window));
+			row[c++] = String.valueOf(getTransitionEntropy(window));
+			for (int aoi = 0; aoi < aoiCount; aoi++) {
+				row[c++] = String.valueOf(dwell[window][aoi]);
+			}
+			for (int i = 0; i < aoiCount * aoiCount; i++) {
+				row[c++] = String.valueOf(transitions[window][i]);
+			}
+			writer.writeNext(row);
+		}
+	}
+
+	/**
+	 * Writes the features of several gaze files of one pilot to a single csv file.
+	 * @param outputFile	path of the csv file to write
+	 * @param stages		finished stages, one per gaze file, all with the same AOIs
+	 * @param sources		gaze file names, in the same order as the stages
+	 */
+	public static void writeToFile(String outputFile, List<AoiTransitionStage> stages, List<String> sources) throws IOException {
+		if (stages.isEmpty()) {
+			return;
+		}
+		try (CSVWriter writer = new CSVWriter(new FileWriter(new File(outputFile)))) {
+			writer.writeNext(stages.get(0).getHeaders());
+			for (int i = 0; i < stages.size(); i++) {
+				stages.get(i).writeRows(writer, sources.get(i));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,390 @@
+package utils.utilsUpdated;
+
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Velocity-threshold (I-VT) fixation detection over a raw Gazepoint all-gaze recording.
+ *
+ * Samples are read from the best point of gaze ({@code BPOGX}, {@code BPOGY}) and its validity flag
+ * ({@code BPOGV}); invalid samples (blinks, track loss) are skipped. The velocity of each sample is the
+ * difference between the samples {@code HALF_WINDOW} before and after it, held in a small ring buffer, and is
+ * converted from screen fractions to degrees of visual angle. Consecutive samples below the velocity
+ * threshold form a fixation. As in the usual I-VT filter, adjacent fixations separated by less than
+ * {@code maxGap} and {@code mergeAngle} are merged, and fixations shorter than {@code minDuration} are dropped.
+ *
+ * Each fixation is written as one row in the layout of the Gazepoint fixation export: the last raw row of
+ * the fixation with {@code FPOGX}, {@code FPOGY}, {@code FPOGS}, {@code FPOGD}, {@code FPOGID}, and
+ * {@code FPOGV} replaced by the detected values. Rows are read with a {@link GazeCsvReader} projected onto the
+ * four needed columns, so no objects are created per sample.
+ */
+public class FixationDetector {
+
+	private static final int HALF_WINDOW = 2;
+	private static final int RING_SIZE = 2 * HALF_WINDOW + 1;
+
+	private static final double DEFAULT_VELOCITY_THRESHOLD = 30;		// degrees per second
+	private static final double DEFAULT_MIN_DURATION = 0.06;			// seconds
+	private static final double DEFAULT_MAX_GAP = 0.075;				// seconds
+	private static final double DEFAULT_MERGE_ANGLE = 0.5;				// degrees
+	private static final double DEFAULT_SCREEN_WIDTH = 45;				// degrees of visual angle, 24" screen at 65 cm
+	private static final double DEFAULT_SCREEN_HEIGHT = 27;
+
+	private static final String[] FIXATION_COLUMNS = {"FPOGX", "FPOGY", "FPOGS", "FPOGD", "FPOGID", "FPOGV"};
+
+	private final double velocityThreshold;
+	private final double minDuration;
+	private final double maxGap;
+	private final double mergeAngle;
+	private final double screenWidth;
+	private final double screenHeight;
+
+	// ring buffer of the last valid samples, with a copy of each raw row
+	private final double[] ringTime = new double[RING_SIZE];
+	private final double[] ringX = new double[RING_SIZE];
+	private final double[] ringY = new double[RING_SIZE];
+	private final byte[][] ringRow = new byte[RING_SIZE][256];
+	private final int[] ringRowLength = new int[RING_SIZE];
+	private int ringCount;
+	private int ringHead;				// slot of the oldest sample
+
+	// fixation being built and the previous fixation, held back in case the two merge
+	private final Fixation current = new Fixation();
+	private final Fixation pending = new Fixation();
+	private int fixationId;
+
+	// columns of the recording
+	private int timeColumn;
+	private int xColumn;
+	private int yColumn;
+	private int validColumn;
+	private int[] replacedColumns;		// index into FIXATION_COLUMNS per column, -1 if kept
+
+	private OutputStream output;
+
+	public FixationDetector() {
+		this(DEFAULT_VELOCITY_THRESHOLD, DEFAULT_MIN_DURATION, DEFAULT_MAX_GAP, DEFAULT_MERGE_ANGLE,
+			DEFAULT_SCREEN_WIDTH, DEFAULT_SCREEN_HEIGHT);
+	}
+
+	/**
+	 * @param velocityThreshold	samples slower than this are fixation samples, degrees per second
+	 * @param minDuration		shortest fixation kept, seconds
+	 * @param maxGap			longest gap bridged inside or between fixations, seconds
+	 * @param mergeAngle		largest distance between adjacent fixations that are merged, degrees
+	 * @param screenWidth		horizontal size of the screen, degrees of visual angle
+	 * @param screenHeight		vertical size of the screen, degrees of visual angle
+	 */
+	public FixationDetector(double velocityThreshold, double minDuration, double maxGap, double mergeAngle,
+			double screenWidth, double screenHeight) {
+		this.velocityThreshold = velocityThreshold;
+		this.minDuration = minDuration;
+		this.maxGap = maxGap;
+		this.mergeAngle = mergeAngle;
+		this.screenWidth = screenWidth;
+		this.screenHeight = screenHeight;
+	}
+
+	/**
+	 * Detects the fixations of a raw gaze recording and writes them as a fixation file.
+	 * @param allGazeFile	Gazepoint all-gaze csv file
+	 * @param fixationFile	csv file to write, in the Gazepoint fixation layout
+	 * @return				number of fixations written
+	 */
+	public int detect(String allGazeFile, String fixationFile) throws IOException {
+		ringCount = 0;
+		ringHead = 0;
+		current.samples = 0;
+		pending.samples = 0;
+		fixationId = 0;
+
+		try (
+			GazeCsvReader reader = new GazeCsvReader(new FileInputStream(allGazeFile));
+			OutputStream out = new BufferedOutputStream(new FileOutputStream(fixationFile), 1 << 16);
+		) {
+			output = out;
+			String[] headers = reader.readHeader();
+			if (headers != null) {
+				readHeader(headers);
+				reader.writeRow(out);
+				out.write('\n');
+				reader.project(timeColumn, xColumn, yColumn, validColumn);
+				while (reader.next()) {
+					readRow(reader);
+				}
+			}
+
+			classifyRemaining();
+			endFixation();
+			writePending();
+		} finally {
+			output = null;
+		}
+		return fixationId;
+	}
+
+	/**
+	 * Decodes the time, point of gaze, and validity of one data row and adds it as a sample if it is valid.
+	 */
+	private void readRow(GazeCsvReader reader) throws IOException {
+		if (validColumn != -1 && !reader.isSet(3)) {
+			return;
+		}
+		double time = reader.getDouble(0);
+		double x = reader.getDouble(1);
+		double y = reader.getDouble(2);
+		if (Double.isNaN(time) || Double.isNaN(x) || Double.isNaN(y)) {
+			return;
+		}
+		addSample(time, x, y, reader.getBuffer(), reader.getRowStart(), reader.getRowLength());
+	}
+
+	private void readHeader(String[] headers) throws IOException {
+		timeColumn = -1;
+		xColumn = -1;
+		yColumn = -1;
+		validColumn = -1;
+		replacedColumns = new int[headers.length];
+		Arrays.fill(replacedColumns, -1);
+		for (int i = 0; i < headers.length; i++) {
+			String name = headers[i].trim();
+			if (name.startsWith("TIME(")) {
+				timeColumn = i;
+			} else if (name.equals("BPOGX")) {
+				xColumn = i;
+			} else if (name.equals("BPOGY")) {
+				yColumn = i;
+			} else if (name.equals("BPOGV")) {
+				validColumn = i;
+			}
+			for (int f = 0; f < FIXATION_COLUMNS.length; f++) {
+				if (name.equals(FIXATION_COLUMNS[f])) {
+					replacedColumns[i] = f;
+				}
+			}
+		}
+		if (timeColumn == -1 || xColumn == -1 || yColumn == -1) {
+			throw new IOException("All-gaze file needs TIME, BPOGX, and BPOGY columns");
+		}
+	}
+
+	/**
+	 * Adds a valid sample. A sample is classified once {@code HALF_WINDOW} samples after it are known.
+	 */
+	private void addSample(double time, double x, double y, byte[] buffer, int rowStart, int rowLength) throws IOException {
+		if (ringCount == RING_SIZE) {
+			ringHead = (ringHead + 1) % RING_SIZE;
+			ringCount--;
+		}
+		int s = slot(ringCount);
+		ringTime[s] = time;
+		ringX[s] = x;
+		ringY[s] = y;
+		if (ringRow[s].length < rowLength) {
+			ringRow[s] = new byte[rowLength * 2];
+		}
+		System.arraycopy(buffer, rowStart, ringRow[s], 0, rowLength);
+		ringRowLength[s] = rowLength;
+		ringCount++;
+
+		int index = ringCount - 1 - HALF_WINDOW;
+		if (index >= 0) {
+			classify(index, ringCount - 1);
+		}
+	}
+
+	/**
+	 * Classifies the samples at the end of the recording, which have fewer than {@code HALF_WINDOW} successors.
+	 */
+	private void classifyRemaining() throws IOException {
+		for (int index = Math.max(0, ringCount - HALF_WINDOW); index < ringCount; index++) {
+			classify(index, ringCount - 1);
+		}
+	}
+
+	private int slot(int index) {
+		return (ringHead + index) % RING_SIZE;
+	}
+
+	/**
+	 * @param index	position of the sample in the ring buffer
+	 * @param last	position of the latest sample that may be used for its velocity
+	 */
+	private void classify(int index, int last) throws IOException {
+		int from = slot(Math.max(0, index - HALF_WINDOW));
+		int to = slot(last);
+		double velocity = from == to ? 0 : angle(ringX[from], ringY[from], ringX[to], ringY[to]) / (ringTime[to] - ringTime[from]);
+		int s = slot(index);
+		double time = ringTime[s];
+
+		if (!(velocity < velocityThreshold)) {
+			endFixation();
+			return;
+		}
+		if (current.samples > 0 && time - current.end > maxGap) {
+			endFixation();
+		}
+		current.add(time, ringX[s], ringY[s], s);
+	}
+
+	/**
+	 * @return distance between two screen points, degrees
+	 */
+	private double angle(double x0, double y0, double x1, double y1) {
+		double dx = (x1 - x0) * screenWidth;
+		double dy = (y1 - y0) * screenHeight;
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+
+	/**
+	 * Ends the current fixation, merging it into the pending one if they are close in time and space.
+	 */
+	private void endFixation() throws IOException {
+		if (current.samples == 0) {
+			return;
+		}
+		// the last sample of the fixation was classified just before this one, so its row is still in the ring
+		current.setRow(ringRow[current.lastSlot], ringRowLength[current.lastSlot]);
+		if (pending.samples > 0 && current.start - pending.end <= maxGap
+				&& angle(pending.meanX(), pending.meanY(), current.meanX(), current.meanY()) <= mergeAngle) {
+			pending.merge(current);
+		} else {
+			writePending();
+			pending.copy(current);
+		}
+		current.samples = 0;
+	}
+
+	/**
+	 * Writes the pending fixation if it is long enough: its last row with the fixation columns replaced.
+	 */
+	private void writePending() throws IOException {
+		if (pending.samples == 0) {
+			return;
+		}
+		double duration = pending.end - pending.start;
+		if (duration < minDuration || pending.samples < 2) {
+			pending.samples = 0;
+			return;
+		}
+		fixationId++;
+		String[] values = {
+			format(pending.meanX()),
+			format(pending.meanY()),
+			format(pending.start),
+			format(duration),
+			String.valueOf(fixationId),
+			"1"
+		};
+		int column = 0;
+		int fieldStart = 0;
+		for (int i = 0; i <= pending.rowLength; i++) {
+			if (i == pending.rowLength || pending.row[i] == ',') {
+				int replaced = column < replacedColumns.length ? replacedColumns[column] : -1;
+				if (replaced == -1) {
+					output.write(pending.row, fieldStart, i - fieldStart);
+				} else {
+					output.write(values[replaced].getBytes(StandardCharsets.US_ASCII));
+				}
+				if (i < pending.rowLength) {
+					output.write(',');
+				}
+				column++;
+				fieldStart = i + 1;
+			}
+		}
+		output.write('\n');
+		pending.samples = 0;
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.5f", value);
+	}
+
+	/**
+	 * Running sums of a fixation and a copy of its last raw row, taken when the fixation ends.
+	 */
+	private static class Fixation {
+
+		private int samples;
+		private double start;
+		private double end;
+		private double sumX;
+		private double sumY;
+		private int lastSlot;				// ring slot of the last sample
+		private byte[] row = new byte[256];
+		private int rowLength;
+
+		void add(double time, double x, double y, int slot) {
+			if (samples == 0) {
+				start = time;
+				sumX = 0;
+				sumY = 0;
+			}
+			samples++;
+			end = time;
+			sumX += x;
+			sumY += y;
+			lastSlot = slot;
+		}
+
+		void merge(Fixation next) {
+			samples += next.samples;
+			end = next.end;
+			sumX += next.sumX;
+			sumY += next.sumY;
+			setRow(next.row, next.rowLength);
+		}
+
+		void copy(Fixation other) {
+			samples = other.samples;
+			start = other.start;
+			end = other.end;
+			sumX = other.sumX;
+			sumY = other.sumY;
+			setRow(other.row, other.rowLength);
+		}
+
+		void setRow(byte[] source, int length) {
+			if (row.length < length) {
+				row = new byte[source.length];
+			}
+			System.arraycopy(source, 0, row, 0, length);
+			rowLength = length;
+		}
+
+		double meanX() {
+			return sumX / samples;
+		}
+
+		double meanY() {
+			return sumY / samples;
+		}
+	}
+
+	/**
+	 * Derives a fixation file from a raw all-gaze recording.
+	 * @param args[0] Gazepoint all-gaze csv file
+	 * @param args[1] fixation csv file to write
+	 */
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.out.println("All-gaze file or output file not specified.");
+			return;
+		}
+		try {
+			long start = System.nanoTime();
+			int fixations = new FixationDetector().detect(args[0], args[1]);
+			System.out.printf("Detected %d fixations in %.0f ms%n", fixations, (System.nanoTime() - start) / 1e6);
+		} catch (IOException e) {
+			System.out.println("Unable to detect fixations in " + args[0] + ": " + e.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,151 @@
+package utils.utilsUpdated;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Time base of one Gazepoint recording.
+ *
+ * The {@code TIME(...)} header gives the wall-clock start of the recording, the {@code TIME} column the
+ * seconds since that start, and the {@code TIMETICK(f=...)} column a high-resolution counter. Once the
+ * clock has been calibrated against a single row, wall-clock times convert to ticks exactly, so rows can be
+ * classified by comparing longs instead of parsing dates or doubles per row. Files without a
+ * {@code TIMETICK} column fall back to the {@code TIME} column scaled to ticks.
+ */
+public class GazeClock {
+
+	public static final long DEFAULT_FREQUENCY = 10000000L;
+	private static final long NANOS_PER_SECOND = 1000000000L;
+	private static final DateTimeFormatter GP_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy/MM/dd kk:mm:ss.SSS");	// time format in gazepoint data
+
+	private final LocalDateTime startTime;
+	private final int timeColumn;
+	private final int tickColumn;
+	private final long frequency;
+	private final long origin;			// tick value at TIME = 0
+	private final boolean calibrated;
+
+	private GazeClock(LocalDateTime startTime, int timeColumn, int tickColumn, long frequency, long origin, boolean calibrated) {
+		this.startTime = startTime;
+		this.timeColumn = timeColumn;
+		this.tickColumn = tickColumn;
+		this.frequency = frequency;
+		this.origin = origin;
+		this.calibrated = calibrated;
+	}
+
+	/**
+	 * Reads the start time, time column, and tick column from a Gazepoint header row.
+	 * @param headers	header row of the gaze file
+	 * @return			uncalibrated clock, or null if the file has no {@code TIME(...)} column
+	 */
+	public static GazeClock fromHeaders(String[] headers) {
+		int timeColumn = -1;
+		int tickColumn = -1;
+		long frequency = DEFAULT_FREQUENCY;
+		LocalDateTime startTime = null;
+		for (int i = 0; i < headers.length; i++) {
+			String header = headers[i];
+			if (header.startsWith("TIMETICK(")) {
+				tickColumn = i;
+				int f = header.indexOf("f=");
+				if (f != -1) {
+					frequency = Long.parseLong(header.substring(f + 2, header.indexOf(")", f)));
+				}
+			} else if (header.contains("TIME(") && timeColumn == -1) {
+				timeColumn = i;
+				startTime = LocalDateTime.parse(header.substring(header.indexOf("(") + 1, header.indexOf(")")), GP_TIME_FORMAT);
+			}
+		}
+		if (timeColumn == -1) {
+			return null;
+		}
+		if (tickColumn == -1) {
+			// TIME column in seconds, scaled to ticks of the default frequency
+			return new GazeClock(startTime, timeColumn, -1, DEFAULT_FREQUENCY, 0, true);
+		}
+		return new GazeClock(startTime, timeColumn, tickColumn, frequency, 0, false);
+	}
+
+	/**
+	 * Anchors the tick counter to the recording start using one data row.
+	 * @param row	any data row of the recording
+	 * @return		calibrated clock
+	 */
+	public GazeClock withOrigin(String[] row) {
+		if (tickColumn == -1) {
+			return this;
+		}
+		double seconds = Double.parseDouble(row[timeColumn]);
+		long rowOrigin = Long.parseLong(row[tickColumn].trim()) - Math.round(seconds * frequency);
+		return new GazeClock(startTime, timeColumn, tickColumn, frequency, rowOrigin, true);
+	}
+
+	/**
+	 * @param row	data row of the recording
+	 * @return		tick of the row
+	 */
+	public long tickOf(String[] row) {
+		if (tickColumn == -1) {
+			return Math.round(Double.parseDouble(row[timeColumn]) * frequency);
+		}
+		return Long.parseLong(row[tickColumn].trim());
+	}
+
+	/**
+	 * @param time	wall-clock time
+	 * @return		tick of the time in this recording
+	 */
+	public long toTick(LocalDateTime time) {
+		if (!calibrated) {
+			throw new IllegalStateException("Clock has not been calibrated against a data row");
+		}
+		Duration offset = Duration.between(startTime, time);
+		return origin + offset.getSeconds() * frequency + offset.getNano() * frequency / NANOS_PER_SECOND;
+	}
+
+	/**
+	 * @param time	wall-clock time
+	 * @return		seconds since the start of the recording, as in the {@code TIME} column
+	 */
+	public double toSeconds(LocalDateTime time) {
+		Duration offset = Duration.between(startTime, time);
+		return offset.getSeconds() + offset.getNano() / (double) NANOS_PER_SECOND;
+	}
+
+	/**
+	 * @param tick	tick of this recording
+	 * @return		wall-clock time of the tick
+	 */
+	public LocalDateTime toTime(long tick) {
+		if (!calibrated) {
+			throw new IllegalStateException("Clock has not been calibrated against a data row");
+		}
+		long ticks = tick - origin;
+		long seconds = Math.floorDiv(ticks, frequency);
+		long remainder = Math.floorMod(ticks, frequency);
+		return startTime.plusSeconds(seconds).plusNanos(remainder * NANOS_PER_SECOND / frequency);
+	}
+
+	public boolean isCalibrated() {
+		return calibrated;
+	}
+
+	public LocalDateTime getStartTime() {
+		return startTime;
+	}
+
+	public long getFrequency() {
+		return frequency;
+	}
+
+	public int getTimeColumn() {
+		return timeColumn;
+	}
+
+	public int getTickColumn() {
+		return tickColumn;
+	}
+
+}
@@ -0,0 +1,429 @@
+package utils.utilsUpdated;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads a Gazepoint csv file row by row in a reused byte buffer, decoding only the columns it is asked for.
+ *
+ * Gazepoint exports have around 60 columns, and most readers need a handful of them. After
+ * {@link #project(int...)} each row is split only up to the last projected column and the projected fields are
+ * kept as byte ranges, which {@link #getDouble}, {@link #getLong}, and {@link #isSet} decode straight into
+ * primitives. The rest of the row is never looked at; when it has to go to an output file, the whole row is
+ * copied as raw bytes with {@link #writeRow}. Fields may be quoted, as in files written by opencsv. Nothing is
+ * allocated per row unless a field is asked for as a string.
+ */
+public class GazeCsvReader implements Closeable {
+
+	private static final int INITIAL_BUFFER = 1 << 16;
+	// one division of an exact mantissa by an exact power of ten rounds the same way as Double.parseDouble
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+	private static final double[] POWERS_OF_TEN = {1, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+		1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+	private final InputStream in;
+	private byte[] buffer = new byte[INITIAL_BUFFER];
+	private long base;					// stream offset of the buffer start
+	private int position;				// start of the next row
+	private int limit;					// end of the bytes read so far
+	private boolean ended;
+
+	// current row, without its line terminator
+	private int rowStart;
+	private int rowEnd;
+
+	// projection
+	private int[] slotOfColumn = new int[0];	// [column], slot of the column, -1 if not projected
+	private int[] fieldStart = new int[0];		// [slot], -1 if the row is too short
+	private int[] fieldEnd = new int[0];		// [slot]
+	private int[] rawStart = new int[0];		// [slot], field with its quotes
+	private int[] rawEnd = new int[0];			// [slot]
+
+	/**
+	 * @param in	csv data, positioned at the start of a row; closed with the reader
+	 */
+	public GazeCsvReader(InputStream in) {
+		this.in = in;
+	}
+
+	/**
+	 * Reads the next row as the header row.
+	 * @return	column names, null at the end of the data
+	 */
+	public String[] readHeader() throws IOException {
+		if (!nextLine()) {
+			return null;
+		}
+		return getRow();
+	}
+
+	/**
+	 * Splits the whole current row, whatever was projected.
+	 * @return	every field of the row as a string
+	 */
+	public String[] getRow() {
+		List<String> fields = new ArrayList<>();
+		int i = rowStart;
+		while (true) {
+			int start = i;
+			int end = i = fieldEnd(i);
+			fields.add(decode(start, end));
+			if (i >= rowEnd) {
+				return fields.toArray(new String[0]);
+			}
+			i++;
+		}
+	}
+
+	/**
+	 * Selects the columns to decode, in slot order.
+	 * @param columns	column indexes, -1 for a slot that is always missing
+	 */
+	public void project(int... columns) {
+		int last = -1;
+		for (int column : columns) {
+			last = Math.max(last, column);
+		}
+		slotOfColumn = new int[last + 1];
+		Arrays.fill(slotOfColumn, -1);
+		for (int slot = 0; slot < columns.length; slot++) {
+			if (columns[slot] != -1) {
+				slotOfColumn[columns[slot]] = slot;
+			}
+		}
+		fieldStart = new int[columns.length];
+		fieldEnd = new int[columns.length];
+		rawStart = new int[columns.length];
+		rawEnd = new int[columns.length];
+		Arrays.fill(fieldStart, -1);
+	}
+
+	/**
+	 * Moves to the next non-empty row and locates its projected fields.
+	 * @return	false at the end of the data
+	 */
+	public boolean next() throws IOException {
+		do {
+			if (!nextLine()) {
+				return false;
+			}
+		} while (rowEnd == rowStart);
+
+		Arrays.fill(fieldStart, -1);
+		int column = 0;
+		int i = rowStart;
+		while (column < slotOfColumn.length) {
+			int start = i;
+			int end = i = fieldEnd(i);
+			int slot = slotOfColumn[column];
+			if (slot != -1) {
+				boolean quoted = end > start && buffer[start] == '"';
+				fieldStart[slot] = quoted ? start + 1 : start;
+				fieldEnd[slot] = quoted && end - 1 > start && buffer[end - 1] == '"' ? end - 1 : end;
+				rawStart[slot] = start;
+				rawEnd[slot] = end;
+			}
+			column++;
+			if (i >= rowEnd) {
+				break;
+			}
+			i++;
+		}
+		return true;
+	}
+
+	/**
+	 * @return end of the field starting at {@code i}: the comma after it or the end of the row
+	 */
+	private int fieldEnd(int i) {
+		boolean quoted = false;
+		for (; i < rowEnd; i++) {
+			byte b = buffer[i];
+			if (b == '"') {
+				quoted = !quoted;
+			} else if (b == ',' && !quoted) {
+				return i;
+			}
+		}
+		return rowEnd;
+	}
+
+	/**
+	 * Finds the next line, reading more data as needed.
+	 * @return	false at the end of the data
+	 */
+	private boolean nextLine() throws IOException {
+		while (true) {
+			for (int i = position; i < limit; i++) {
+				if (buffer[i] == '\n') {
+					setRow(position, i);
+					position = i + 1;
+					return true;
+				}
+			}
+			if (ended) {
+				if (position < limit) {
+					// last row without a line break
+					setRow(position, limit);
+					position = limit;
+					return true;
+				}
+				return false;
+			}
+			fill();
+		}
+	}
+
+	private void setRow(int start, int end) {
+		rowStart = start;
+		rowEnd = end > start && buffer[end - 1] == '\r' ? end - 1 : end;
+	}
+
+	/**
+	 * Moves the partial row to the front of the buffer, growing it if the row fills it, and reads more.
+	 */
+	private void fill() throws IOException {
+		int remaining = limit - position;
+		if (remaining == buffer.length) {
+			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		} else if (position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, remaining);
+		}
+		base += position;
+		position = 0;
+		limit = remaining;
+		int read = in.read(buffer, limit, buffer.length - limit);
+		if (read == -1) {
+			ended = true;
+		} else {
+			limit += read;
+		}
+	}
+
+	/**
+	 * @param slot	projected slot
+	 * @return		whether the row has the column
+	 */
+	public boolean hasField(int slot) {
+		return fieldStart[slot] != -1;
+	}
+
+	/**
+	 * @param slot	projected slot
+	 * @return		whether the field is exactly {@code 1}, as Gazepoint writes a set flag
+	 */
+	public boolean isSet(int slot) {
+		return fieldStart[slot] != -1 && fieldEnd[slot] - fieldStart[slot] == 1 && buffer[fieldStart[slot]] == '1';
+	}
+
+	/**
+	 * @param slot	projected slot
+	 * @return		field as a string, null if the row is too short
+	 */
+	public String getString(int slot) {
+		if (fieldStart[slot] == -1) {
+			return null;
+		}
+		return decode(fieldStart[slot], fieldEnd[slot]);
+	}
+
+	private String decode(int start, int end) {
+		if (end - start >= 2 && buffer[start] == '"' && buffer[end - 1] == '"') {
+			start++;
+			end--;
+		}
+		String value = new String(buffer, start, end - start, StandardCharsets.UTF_8);
+		return value.indexOf('"') == -1 ? value : value.replace("\"\"", "\"");
+	}
+
+	/**
+	 * Parses a decimal number such as {@code -0.01893} without creating a string. Numbers with more digits than
+	 * a double holds exactly, exponents, and other forms go through {@link Double#parseDouble}, so the result is
+	 * always the same as parsing the field.
+	 * @param slot	projected slot
+	 * @return		the number, NaN if the field is missing or not a number
+	 */
+	public double getDouble(int slot) {
+		int i = fieldStart[slot];
+		if (i == -1) {
+			return Double.NaN;
+		}
+		int end = fieldEnd[slot];
+		while (i < end && buffer[i] == ' ') {
+			i++;
+		}
+		while (end > i && buffer[end - 1] == ' ') {
+			end--;
+		}
+		boolean negative = false;
+		if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+			negative = buffer[i] == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int scale = 0;
+		boolean point = false;
+		boolean any = false;
+		for (; i < end; i++) {
+			byte b = buffer[i];
+			if (b >= '0' && b <= '9') {
+				if (mantissa > (MAX_EXACT_MANTISSA - (b - '0')) / 10) {
+					return slowDouble(slot);
+				}
+				mantissa = mantissa * 10 + (b - '0');
+				if (point) {
+					scale++;
+				}
+				any = true;
+			} else if (b == '.' && !point) {
+				point = true;
+			} else {
+				// exponents and anything unusual
+				return slowDouble(slot);
+			}
+		}
+		if (!any) {
+			return Double.NaN;
+		}
+		if (scale >= POWERS_OF_TEN.length) {
+			return slowDouble(slot);
+		}
+		double value = mantissa / POWERS_OF_TEN[scale];
+		return negative ? -value : value;
+	}
+
+	private double slowDouble(int slot) {
+		try {
+			return Double.parseDouble(getString(slot).trim());
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * Parses an integer such as a {@code TIMETICK} value without creating a string.
+	 * @param slot	projected slot
+	 * @return		the number
+	 * @throws NumberFormatException if the field is missing or not an integer
+	 */
+	public long getLong(int slot) {
+		int i = fieldStart[slot];
+		if (i == -1) {
+			throw new NumberFormatException("Missing field");
+		}
+		int end = fieldEnd[slot];
+		while (i < end && buffer[i] == ' ') {
+			i++;
+		}
+		while (end > i && buffer[end - 1] == ' ') {
+			end--;
+		}
+		boolean negative = false;
+		if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+			negative = buffer[i] == '-';
+			i++;
+		}
+		if (i == end || end - i > 18) {
+			// empty, or too long to add up without overflow
+			return Long.parseLong(getString(slot).trim());
+		}
+		long value = 0;
+		for (; i < end; i++) {
+			byte b = buffer[i];
+			if (b < '0' || b > '9') {
+				throw new NumberFormatException("For input string: \"" + getString(slot) + "\"");
+			}
+			value = value * 10 + (b - '0');
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * @return buffer holding the current row, valid until the next call to {@link #next}
+	 */
+	public byte[] getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * @return offset of the current row in {@link #getBuffer()}
+	 */
+	public int getRowStart() {
+		return rowStart;
+	}
+
+	/**
+	 * @return length of the current row in bytes, without its line terminator
+	 */
+	public int getRowLength() {
+		return rowEnd - rowStart;
+	}
+
+	/**
+	 * @return offset of the current row from the start of the stream, in bytes
+	 */
+	public long getRowOffset() {
+		return base + rowStart;
+	}
+
+	/**
+	 * @return offset of the row after the current one from the start of the stream, in bytes
+	 */
+	public long getNextRowOffset() {
+		return base + position;
+	}
+
+	/**
+	 * @param slot	projected slot
+	 * @return		offset in {@link #getBuffer()} of the field as written, with its quotes, -1 if the row is too short
+	 */
+	public int getFieldStart(int slot) {
+		return fieldStart[slot] == -1 ? -1 : rawStart[slot];
+	}
+
+	/**
+	 * @param slot	projected slot
+	 * @return		offset in {@link #getBuffer()} just after the field as written, with its quotes
+	 */
+	public int getFieldEnd(int slot) {
+		return rawEnd[slot];
+	}
+
+	/**
+	 * Copies the current row as it was read, without its line terminator.
+	 * @param out	stream to write to
+	 */
+	public void writeRow(OutputStream out) throws IOException {
+		out.write(buffer, rowStart, rowEnd - rowStart);
+	}
+
+	/**
+	 * Writes a value as one csv field, quoted only if it contains a comma, a quote, or a line break.
+	 * @param out	stream to write to
+	 * @param value	field value, null for an empty field
+	 */
+	public static void writeField(OutputStream out, String value) throws IOException {
+		if (value == null || value.isEmpty()) {
+			return;
+		}
+		boolean quote = false;
+		for (int i = 0; i < value.length() && !quote; i++) {
+			char c = value.charAt(i);
+			quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+		byte[] bytes = (quote ? "\"" + value.replace("\"", "\"\"") + "\"" : value).getBytes(StandardCharsets.UTF_8);
+		out.write(bytes);
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+}
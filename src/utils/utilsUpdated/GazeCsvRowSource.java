@@ -0,0 +1,148 @@
+package utils.utilsUpdated;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Reads the rows of a gaze csv file for the sweep of {@link GazeTrimmerUpdated} with a {@link GazeCsvReader},
+ * decoding only the columns the clock, the filter, and the stages use.
+ *
+ * Each row is returned with the other cells null and is kept as the bytes that were read, so that
+ * {@link #writeRow} can copy it to the output and only write again the cells that were changed. The last few
+ * rows are held in a ring sized to the look-ahead of the filter; a row that no longer has to be written is
+ * simply overwritten. Rows that do not have exactly as many fields as the header are split completely instead,
+ * as the stages expect of a short row, and are not held.
+ */
+class GazeCsvRowSource implements GazeRowSource {
+
+	private final GazeCsvReader reader;
+	private final int[] columns;		// [slot], projected columns in increasing order, the last header column last
+	private final int width;			// length of the rows returned
+
+	private final HeldRow[] held;
+	private int next;
+
+	/**
+	 * Bytes of a row as read, with the decoded cells to tell which ones were changed.
+	 */
+	private static class HeldRow {
+		private String[] row;
+		private String[] cells;
+		private int[] starts;		// [slot], field offsets in bytes, with their quotes
+		private int[] ends;
+		private byte[] bytes = new byte[1024];
+		private int length;
+	}
+
+	/**
+	 * @param reader		reader positioned at a data row, its header already read
+	 * @param headerWidth	number of columns in the header of the file
+	 * @param columns		columns to decode, null for all of them; -1 entries and repeats are ignored
+	 * @param width			length of the rows returned, at least {@code headerWidth}
+	 * @param lookAhead		most rows read past a row before it is written
+	 */
+	GazeCsvRowSource(GazeCsvReader reader, int headerWidth, int[] columns, int width, int lookAhead) {
+		this.reader = reader;
+		boolean[] used = new boolean[headerWidth];
+		if (columns == null) {
+			Arrays.fill(used, true);
+		} else {
+			for (int column : columns) {
+				if (column >= 0 && column < headerWidth) {
+					used[column] = true;
+				}
+			}
+		}
+		// the last column shows whether a row has as many fields as the header
+		used[headerWidth - 1] = true;
+		int count = 0;
+		for (boolean u : used) {
+			count += u ? 1 : 0;
+		}
+		this.columns = new int[count];
+		count = 0;
+		for (int column = 0; column < headerWidth; column++) {
+			if (used[column]) {
+				this.columns[count++] = column;
+			}
+		}
+		this.width = Math.max(width, headerWidth);
+		reader.project(this.columns);
+
+		held = new HeldRow[lookAhead + 1];
+		for (int i = 0; i < held.length; i++) {
+			held[i] = new HeldRow();
+			held[i].cells = new String[count];
+			held[i].starts = new int[count];
+			held[i].ends = new int[count];
+		}
+	}
+
+	@Override
+	public String[] readNext() throws IOException {
+		if (!reader.next()) {
+			return null;
+		}
+		int last = columns.length - 1;
+		int rowStart = reader.getRowStart();
+		if (!reader.hasField(last) || reader.getFieldEnd(last) != rowStart + reader.getRowLength()) {
+			return reader.getRow();
+		}
+
+		HeldRow entry = held[next];
+		next = (next + 1) % held.length;
+		String[] row = new String[width];
+		entry.row = row;
+		for (int slot = 0; slot < columns.length; slot++) {
+			String cell = reader.getString(slot);
+			row[columns[slot]] = cell;
+			entry.cells[slot] = cell;
+			entry.starts[slot] = reader.getFieldStart(slot) - rowStart;
+			entry.ends[slot] = reader.getFieldEnd(slot) - rowStart;
+		}
+		entry.length = reader.getRowLength();
+		if (entry.bytes.length < entry.length) {
+			entry.bytes = new byte[Math.max(entry.length, 2 * entry.bytes.length)];
+		}
+		System.arraycopy(reader.getBuffer(), rowStart, entry.bytes, 0, entry.length);
+		return row;
+	}
+
+	/**
+	 * Writes a row returned by {@link #readNext} as csv, without its line terminator: the bytes as read, with the
+	 * cells that were changed since and the columns beyond the header written again.
+	 * @param row	row to write
+	 * @param out	stream to write to
+	 * @return		false if the row is not held, in which case nothing is written
+	 */
+	boolean writeRow(String[] row, OutputStream out) throws IOException {
+		HeldRow entry = null;
+		for (HeldRow candidate : held) {
+			if (candidate.row == row) {
+				entry = candidate;
+				break;
+			}
+		}
+		if (entry == null) {
+			return false;
+		}
+		int position = 0;
+		for (int slot = 0; slot < columns.length; slot++) {
+			String cell = row[columns[slot]];
+			if (cell == entry.cells[slot]) {
+				continue;
+			}
+			out.write(entry.bytes, position, entry.starts[slot] - position);
+			GazeCsvReader.writeField(out, cell);
+			position = entry.ends[slot];
+		}
+		out.write(entry.bytes, position, entry.length - position);
+		for (int column = columns[columns.length - 1] + 1; column < row.length; column++) {
+			out.write(',');
+			GazeCsvReader.writeField(out, row[column]);
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,237 @@
+package utils.utilsUpdated;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.logging.Level;
+import utils.SystemLogger;
+
+/**
+ * Sparse index from the {@code TIME(...)} column of a Gazepoint csv file to byte offsets in the file.
+ *
+ * One entry is kept roughly every {@code interval} seconds of recording, always at the start of a row,
+ * so any time window can be read by seeking to the entry just before the window and scanning forward.
+ * The index is saved next to the gaze file as {@code <file>.idx} and is rebuilt only when the gaze file's
+ * size or modification time no longer match the values recorded in the sidecar.
+ */
+public class GazeFileIndex {
+
+	private static final int MAGIC = 0x475A4958;	// "GZIX"
+	private static final int VERSION = 2;
+	private static final double DEFAULT_INTERVAL = 10;
+
+	private final File gazeFile;
+	private final long fileLength;
+	private final long lastModified;
+	private final double interval;
+	private final long dataOffset;		// offset of the first data row
+	private final double[] times;
+	private final long[] offsets;
+
+	private GazeFileIndex(File gazeFile, long fileLength, long lastModified, double interval, long dataOffset,
+			double[] times, long[] offsets) {
+		this.gazeFile = gazeFile;
+		this.fileLength = fileLength;
+		this.lastModified = lastModified;
+		this.interval = interval;
+		this.dataOffset = dataOffset;
+		this.times = times;
+		this.offsets = offsets;
+	}
+
+	/**
+	 * Loads the sidecar index of a gaze file with one entry every 10 seconds, building it if needed.
+	 * @param inputFile	Gazepoint csv file
+	 * @return			index of the file
+	 */
+	public static GazeFileIndex load(String inputFile) throws IOException {
+		return load(inputFile, DEFAULT_INTERVAL);
+	}
+
+	/**
+	 * Loads the sidecar index of a gaze file, building and saving it if it is missing or stale.
+	 * @param inputFile	Gazepoint csv file
+	 * @param interval	seconds of recording between index entries
+	 * @return			index of the file
+	 */
+	public static GazeFileIndex load(String inputFile, double interval) throws IOException {
+		File gazeFile = new File(inputFile);
+		File sidecar = sidecarFile(gazeFile);
+		if (sidecar.exists()) {
+			try {
+				GazeFileIndex index = read(gazeFile, sidecar);
+				if (index.fileLength == gazeFile.length() && index.lastModified == gazeFile.lastModified()
+						&& index.interval == interval) {
+					return index;
+				}
+			} catch (IOException e) {
+				// unreadable sidecar, rebuild it below
+			}
+		}
+
+		GazeFileIndex index = build(gazeFile, interval);
+		try {
+			index.write(sidecar);
+		} catch (IOException e) {
+			// the index still works from memory, it just is not reused next time
+			SystemLogger.writeToSystemLog(Level.WARNING, GazeFileIndex.class.getName(), "Unable to save index " + sidecar + "\n" + e.toString());
+		}
+		return index;
+	}
+
+	private static File sidecarFile(File gazeFile) {
+		return new File(gazeFile.getPath() + ".idx");
+	}
+
+	/**
+	 * Scans the file once, recording the offset of a row every {@code interval} seconds. The header and the rows
+	 * are read with a {@link GazeCsvReader}, the same reader as the trim, so quoted files resolve the same
+	 * {@code TIME(...)} column, and only that column is decoded.
+	 */
+	private static GazeFileIndex build(File gazeFile, double interval) throws IOException {
+		long fileLength = gazeFile.length();
+		long lastModified = gazeFile.lastModified();
+		double[] times = new double[64];
+		long[] offsets = new long[64];
+		int count = 0;
+
+		long dataOffset = fileLength;
+		try (GazeCsvReader reader = new GazeCsvReader(new FileInputStream(gazeFile))) {
+			String[] headers = reader.readHeader();
+			if (headers != null) {
+				int timeColumn = timeColumn(headers);
+				if (timeColumn == -1) {
+					throw new IOException("No time column in file " + gazeFile);
+				}
+				dataOffset = reader.getNextRowOffset();
+				reader.project(timeColumn);
+				double nextIndexedTime = Double.NEGATIVE_INFINITY;
+				while (reader.next()) {
+					double time = reader.getDouble(0);
+					if (!(time >= nextIndexedTime)) {
+						// before the next entry is due, or no time in the row
+						continue;
+					}
+					if (count == times.length) {
+						times = Arrays.copyOf(times, count * 2);
+						offsets = Arrays.copyOf(offsets, count * 2);
+					}
+					times[count] = time;
+					offsets[count] = reader.getRowOffset();
+					count++;
+					nextIndexedTime = time + interval;
+				}
+			}
+		}
+		return new GazeFileIndex(gazeFile, fileLength, lastModified, interval, dataOffset,
+			Arrays.copyOf(times, count), Arrays.copyOf(offsets, count));
+	}
+
+	/**
+	 * @param headers	header row of a Gazepoint csv file
+	 * @return			index of the {@code TIME(...)} column, or -1 if there is none
+	 */
+	static int timeColumn(String[] headers) {
+		for (int i = 0; i < headers.length; i++) {
+			if (headers[i].contains("TIME(")) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static GazeFileIndex read(File gazeFile, File sidecar) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(sidecar)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException("Not a gaze index: " + sidecar);
+			}
+			long fileLength = in.readLong();
+			long lastModified = in.readLong();
+			double interval = in.readDouble();
+			long dataOffset = in.readLong();
+			int count = in.readInt();
+			double[] times = new double[count];
+			long[] offsets = new long[count];
+			for (int i = 0; i < count; i++) {
+				times[i] = in.readDouble();
+				offsets[i] = in.readLong();
+			}
+			return new GazeFileIndex(gazeFile, fileLength, lastModified, interval, dataOffset, times, offsets);
+		}
+	}
+
+	/**
+	 * Writes the sidecar through a temporary file so concurrent readers never see a partial index.
+	 */
+	private void write(File sidecar) throws IOException {
+		File temp = File.createTempFile(sidecar.getName(), ".tmp", sidecar.getAbsoluteFile().getParentFile());
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temp))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(fileLength);
+			out.writeLong(lastModified);
+			out.writeDouble(interval);
+			out.writeLong(dataOffset);
+			out.writeInt(times.length);
+			for (int i = 0; i < times.length; i++) {
+				out.writeDouble(times[i]);
+				out.writeLong(offsets[i]);
+			}
+		}
+		Files.move(temp.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * @param time	seconds since the start of the recording
+	 * @return		byte offset of a row start at or before every row whose time is at least {@code time}
+	 */
+	public long offsetBefore(double time) {
+		// last entry strictly before the time, so rows that share the time with an entry are not skipped
+		int lo = 0;
+		int hi = times.length - 1;
+		long offset = dataOffset;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (times[mid] < time) {
+				offset = offsets[mid];
+				lo = mid + 1;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return offset;
+	}
+
+	/**
+	 * Opens the gaze file positioned at the start of a data row, at or shortly before the given time.
+	 * The header row is not included; read it separately if needed.
+	 * @param time	seconds since the start of the recording
+	 * @return		unbuffered stream over the remaining rows, for a reader that buffers itself such as {@link GazeCsvReader}
+	 */
+	public InputStream openAt(double time) throws IOException {
+		FileInputStream in = new FileInputStream(gazeFile);
+		try {
+			in.getChannel().position(offsetBefore(time));
+			return in;
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return number of index entries
+	 */
+	public int size() {
+		return times.length;
+	}
+
+}
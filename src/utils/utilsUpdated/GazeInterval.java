@@ -0,0 +1,84 @@
+package utils.utilsUpdated;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.lang3.Pair;
+
+/**
+ * Labelled time interval of a gaze recording, from {@code start} (inclusive) to {@code end} (exclusive).
+ * Intervals may overlap, so the same gaze row can belong to a phase window and to any number of event
+ * windows at once.
+ */
+public class GazeInterval {
+
+	private final String label;
+	private final LocalDateTime start;
+	private final LocalDateTime end;
+
+	/**
+	 * @param label	label of the window, used in the output file name
+	 * @param start	first time in the window
+	 * @param end	first time after the window
+	 */
+	public GazeInterval(String label, LocalDateTime start, LocalDateTime end) {
+		this.label = label;
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * Window centered on an event, for example {@code around("exceedance_1", time, 5)} for five seconds
+	 * either side of an exceedance.
+	 * @param label		label of the window
+	 * @param center	time of the event
+	 * @param seconds	seconds kept before and after the event
+	 * @return			window around the event
+	 */
+	public static GazeInterval around(String label, LocalDateTime center, double seconds) {
+		long nanos = Math.round(seconds * 1e9);
+		return new GazeInterval(label, center.minusNanos(nanos), center.plusNanos(nanos));
+	}
+
+	/**
+	 * Window that ends at an event, for example the final minute before touchdown.
+	 * @param label		label of the window
+	 * @param end		time of the event
+	 * @param seconds	length of the window
+	 * @return			window before the event
+	 */
+	public static GazeInterval before(String label, LocalDateTime end, double seconds) {
+		return new GazeInterval(label, end.minusNanos(Math.round(seconds * 1e9)), end);
+	}
+
+	/**
+	 * Converts labelled timestamps to back-to-back windows. Each window starts at its timestamp and ends at
+	 * the following one; the label of the last timestamp is only used as the end marker.
+	 * @param timestamps	labels and start times of the windows, in time order, followed by the end time
+	 * @return				contiguous windows
+	 */
+	public static List<GazeInterval> contiguous(List<Pair<String, LocalDateTime>> timestamps) {
+		List<GazeInterval> intervals = new ArrayList<>();
+		Pair<String, LocalDateTime> previous = null;
+		for (Pair<String, LocalDateTime> timestamp : timestamps) {
+			if (previous != null) {
+				intervals.add(new GazeInterval(previous.left, previous.right, timestamp.right));
+			}
+			previous = timestamp;
+		}
+		return intervals;
+	}
+
+	public String getLabel() {
+		return label;
+	}
+
+	public LocalDateTime getStart() {
+		return start;
+	}
+
+	public LocalDateTime getEnd() {
+		return end;
+	}
+
+}
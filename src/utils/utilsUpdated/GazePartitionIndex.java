@@ -0,0 +1,204 @@
+package utils.utilsUpdated;
+
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVWriter;
+import com.opencsv.exceptions.CsvValidationException;
+
+/**
+ * Row ranges of the windows in a partitioned gaze file written by {@link GazeTrimmerUpdated} in
+ * {@link GazeTrimmerUpdated.OutputMode#PARTITIONED} mode. The ranges are saved next to the partitioned file as
+ * {@code <file>_index.csv} with one row per window: label, first data row, row count, byte offset, and byte
+ * length, so a reader can seek straight to a window instead of scanning the whole file.
+ */
+public class GazePartitionIndex {
+
+	private static final String[] HEADERS = {"Window", "First_Row", "Row_Count", "Byte_Offset", "Byte_Length"};
+
+	private final String partitionFile;
+	private final Map<String, long[]> ranges = new LinkedHashMap<>();	// label -> first row, row count, offset, length
+
+	GazePartitionIndex(String partitionFile) {
+		this.partitionFile = partitionFile;
+	}
+
+	/**
+	 * @param partitionFile	partitioned gaze file
+	 * @return				path of its index sidecar
+	 */
+	public static String indexFile(String partitionFile) {
+		String base = partitionFile.endsWith(".csv") ? partitionFile.substring(0, partitionFile.length() - 4) : partitionFile;
+		return base + "_index.csv";
+	}
+
+	/**
+	 * Reads the index sidecar of a partitioned gaze file.
+	 * @param partitionFile	partitioned gaze file
+	 * @return				row ranges of its windows
+	 */
+	public static GazePartitionIndex read(String partitionFile) throws IOException {
+		GazePartitionIndex index = new GazePartitionIndex(partitionFile);
+		try (CSVReader reader = new CSVReader(new FileReader(indexFile(partitionFile)))) {
+			reader.readNext();
+			String[] row;
+			while ((row = reader.readNext()) != null) {
+				index.add(row[0], Long.parseLong(row[1]), Long.parseLong(row[2]), Long.parseLong(row[3]), Long.parseLong(row[4]));
+			}
+		} catch (CsvValidationException | NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			throw new IOException("Unable to read partition index for " + partitionFile, e);
+		}
+		return index;
+	}
+
+	void add(String label, long firstRow, long rowCount, long byteOffset, long byteLength) {
+		ranges.put(label, new long[] {firstRow, rowCount, byteOffset, byteLength});
+	}
+
+	void write() throws IOException {
+		try (CSVWriter writer = new CSVWriter(new FileWriter(indexFile(partitionFile)))) {
+			writer.writeNext(HEADERS);
+			for (Map.Entry<String, long[]> entry : ranges.entrySet()) {
+				long[] range = entry.getValue();
+				writer.writeNext(new String[] {
+					entry.getKey(),
+					String.valueOf(range[0]),
+					String.valueOf(range[1]),
+					String.valueOf(range[2]),
+					String.valueOf(range[3])
+				});
+			}
+		}
+	}
+
+	/**
+	 * @return labels of the windows that have rows, in order of their first row
+	 */
+	public List<String> getLabels() {
+		return new ArrayList<>(ranges.keySet());
+	}
+
+	public boolean contains(String label) {
+		return ranges.containsKey(label);
+	}
+
+	/**
+	 * @param label	window label
+	 * @return		index of the window's first data row in the partitioned file (0 is the row after the header)
+	 */
+	public long getFirstRow(String label) {
+		return range(label)[0];
+	}
+
+	/**
+	 * @param label	window label
+	 * @return		number of rows in the window
+	 */
+	public long getRowCount(String label) {
+		return range(label)[1];
+	}
+
+	/**
+	 * Reads the header row of the partitioned file, which ends with the {@code window} column.
+	 * @return	column names
+	 */
+	public String[] readHeader() throws IOException {
+		try (GazeCsvReader reader = new GazeCsvReader(new FileInputStream(partitionFile))) {
+			String[] headers = reader.readHeader();
+			if (headers == null) {
+				throw new IOException("No header in " + partitionFile);
+			}
+			return headers;
+		}
+	}
+
+	/**
+	 * Seeks to the rows of one window. The reader starts at the window's first row, so {@link GazeCsvReader#next()}
+	 * is called directly without reading a header, and ends after its last row. Use {@link #readHeader()} to find
+	 * the columns. The rows keep the trailing {@code window} column.
+	 * @param label	window label
+	 * @return		reader over exactly the rows of the window
+	 */
+	public GazeCsvReader openWindow(String label) throws IOException {
+		long[] range = range(label);
+		FileInputStream in = new FileInputStream(partitionFile);
+		try {
+			in.getChannel().position(range[2]);
+			return new GazeCsvReader(new LimitedInputStream(in, range[3]));
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	private long[] range(String label) {
+		long[] range = ranges.get(label);
+		if (range == null) {
+			throw new IllegalArgumentException("No window " + label + " in " + partitionFile);
+		}
+		return range;
+	}
+
+	/**
+	 * Stops reading after a fixed number of bytes.
+	 */
+	private static class LimitedInputStream extends FilterInputStream {
+
+		private long remaining;
+
+		LimitedInputStream(InputStream in, long limit) {
+			super(in);
+			this.remaining = limit;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			int b = in.read();
+			if (b != -1) {
+				remaining--;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			int n = in.read(b, off, (int) Math.min(len, remaining));
+			if (n > 0) {
+				remaining -= n;
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = in.skip(Math.min(n, remaining));
+			remaining -= skipped;
+			return skipped;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return (int) Math.min(in.available(), remaining);
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,158 @@
+package utils.utilsUpdated;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.logging.Level;
+import utils.SystemLogger;
+
+/**
+ * Writes all windows of one gaze file to a single csv file, {@code <fileName>_windows.csv}, with an extra
+ * {@code window} column naming the windows each row belongs to (separated by {@code ;} where windows
+ * overlap). Rows are written once, in time order, so the rows of every window form one contiguous run;
+ * the first row, row count, and byte range of each run are saved to a {@link GazePartitionIndex} sidecar.
+ *
+ * Rows are encoded as in {@link WindowFileSink}, copied as read where the {@link GazeCsvRowSource} holds them.
+ * Short rows are padded to the header so that the {@code window} column always comes after the header columns.
+ */
+class GazePartitionWriter implements GazeWindowSink {
+
+	static final String WINDOW_COLUMN = "window";
+	static final String LABEL_SEPARATOR = ";";
+
+	private final String outputFile;
+	private final String[] headers;
+	private final GazeWindowTable windows;
+	private final GazeCsvRowSource source;
+	private final long[] firstRow;
+	private final long[] endRow;
+	private final long[] byteStart;
+	private final long[] byteEnd;
+	private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+	private final ByteArrayOutputStream labelCell = new ByteArrayOutputStream();
+
+	private OutputStream writer;
+	private long rows;
+	private long bytes;
+	private boolean activeChanged = true;
+
+	/**
+	 * @param source	source of the rows, whose rows are copied as read, or null to write every cell
+	 */
+	GazePartitionWriter(String outputFolder, String fileName, String[] headers, GazeWindowTable windows, GazeCsvRowSource source) {
+		this.outputFile = outputFolder + "/" + fileName + "_windows.csv";
+		this.headers = headers;
+		this.windows = windows;
+		this.source = source;
+		int n = windows.size();
+		this.firstRow = new long[n];
+		this.endRow = new long[n];
+		this.byteStart = new long[n];
+		this.byteEnd = new long[n];
+		Arrays.fill(firstRow, -1);
+		Arrays.fill(endRow, -1);
+	}
+
+	@Override
+	public void windowStarted(int window) {
+		activeChanged = true;
+	}
+
+	@Override
+	public void row(String[] row, Collection<Integer> active) throws IOException {
+		if (writer == null) {
+			writer = new BufferedOutputStream(new FileOutputStream(outputFile), 1 << 16);
+			String[] header = Arrays.copyOf(headers, headers.length + 1);
+			header[headers.length] = WINDOW_COLUMN;
+			line.reset();
+			WindowFileSink.writeCells(header, line);
+			line.write('\n');
+			line.writeTo(writer);
+			bytes = line.size();
+		}
+		if (activeChanged) {
+			int[] labels = new int[active.size()];
+			int i = 0;
+			for (int window : active) {
+				labels[i++] = window;
+				if (firstRow[window] == -1) {
+					firstRow[window] = rows;
+					byteStart[window] = bytes;
+				}
+			}
+			Arrays.sort(labels);
+			StringBuilder cell = new StringBuilder();
+			for (int window : labels) {
+				if (cell.length() > 0) {
+					cell.append(LABEL_SEPARATOR);
+				}
+				cell.append(windows.getLabel(window));
+			}
+			labelCell.reset();
+			GazeCsvReader.writeField(labelCell, cell.toString());
+			activeChanged = false;
+		}
+
+		line.reset();
+		if (source == null || !source.writeRow(row, line)) {
+			WindowFileSink.writeCells(row, line);
+		}
+		for (int column = row.length; column < headers.length; column++) {
+			line.write(',');
+		}
+		line.write(',');
+		labelCell.writeTo(line);
+		line.write('\n');
+		line.writeTo(writer);
+		bytes += line.size();
+		rows++;
+	}
+
+	@Override
+	public void windowEnded(int window) {
+		activeChanged = true;
+		if (firstRow[window] != -1 && endRow[window] == -1) {
+			endRow[window] = rows;
+			byteEnd[window] = bytes;
+		}
+	}
+
+	@Override
+	public void finish() throws IOException {
+		if (writer == null) {
+			return;
+		}
+		for (int window = 0; window < firstRow.length; window++) {
+			windowEnded(window);
+		}
+		writer.close();
+		writer = null;
+
+		GazePartitionIndex index = new GazePartitionIndex(outputFile);
+		for (int window = 0; window < firstRow.length; window++) {
+			if (firstRow[window] != -1) {
+				index.add(windows.getLabel(window), firstRow[window], endRow[window] - firstRow[window],
+					byteStart[window], byteEnd[window] - byteStart[window]);
+			}
+		}
+		index.write();
+	}
+
+	@Override
+	public void close() {
+		if (writer == null) {
+			return;
+		}
+		try {
+			writer.close();
+		} catch (IOException e) {
+			SystemLogger.writeToSystemLog(Level.WARNING, GazePartitionWriter.class.getName(), "Unable to close " + outputFile + "\n" + e.toString());
+		}
+		writer = null;
+	}
+
+}
@@ -0,0 +1,17 @@
+package utils.utilsUpdated;
+
+import java.io.IOException;
+import com.opencsv.exceptions.CsvValidationException;
+
+/**
+ * Supplies the rows of a gaze recording in time order, from a csv file or a live stream, to the sweep of
+ * {@link GazeTrimmerUpdated}.
+ */
+interface GazeRowSource {
+
+	/**
+	 * @return next row, or null when the recording ends
+	 */
+	String[] readNext() throws IOException, CsvValidationException;
+
+}
@@ -0,0 +1,43 @@
+package utils.utilsUpdated;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Processing step that runs inside the single pass of {@link GazeTrimmerUpdated} over a gaze file. Stages see
+ * every row that falls in at least one window and that the {@link GazeValidityFilter}, if one is used, finds
+ * usable, in file order, before the row is written out, and may change the row's cells in place. Validity is
+ * decided by the filter alone, so stages do not check {@code FPOGV} or {@code BKID} themselves. A stage holds per-file state, so create one instance per gaze file; anything
+ * shared between files (such as an {@link AoiIndex}) must only be read.
+ */
+public interface GazeStage {
+
+	/**
+	 * Called once before the first row.
+	 * @param headers	header row of the gaze file
+	 * @param windows	windows the file is trimmed into
+	 */
+	void open(String[] headers, GazeWindowTable windows);
+
+	/**
+	 * Columns the stage reads or changes, known after {@link #open}. When reading a csv file, the trimmer only
+	 * decodes the columns its stages ask for; the other cells of a row are null and are copied to the output
+	 * as they were read.
+	 * @return	column indexes, -1 entries are ignored; null if the stage may use any column
+	 */
+	default int[] getColumns() {
+		return null;
+	}
+
+	/**
+	 * @param row		gaze row, may be modified
+	 * @param active	indexes of the windows that contain the row, in no particular order
+	 */
+	void accept(String[] row, Collection<Integer> active);
+
+	/**
+	 * Called once after the last row when the whole file was processed.
+	 */
+	void finish() throws IOException;
+
+}
@@ -1,22 +1,23 @@
 package utils.utilsUpdated;
 
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
-import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.logging.Level;
-import java.util.Iterator;
 import org.apache.commons.compress.utils.FileNameUtils;
 import org.apache.commons.lang3.Pair;
-import com.opencsv.CSVReader;
 import com.opencsv.exceptions.CsvValidationException;
+import exceptions.GazeTrimException;
 import utils.SystemLogger;
-import utils.CsvUtils;
 
 /**
  * Modified version of {@link GazeTrimmer}.
@@ -30,7 +31,66 @@ import utils.CsvUtils;
  * <p>
  * 2. Duration compatibility: uses {@code Duration.getSeconds()} (available
  *    since Java 8) instead of {@code Duration.toSeconds()} (added in Java 9)
- *    to maintain broader runtime compatibility.
+ *    to maintain broader runtime compatibility. Boundaries now keep their
+ *    fractional seconds, see item 6.
+ * <p>
+ * 3. Streaming output: rows are written through a buffered writer for the
+ *    current window as they are read, and the writer rolls over to the next
+ *    window file at each boundary. The original collected every row of a
+ *    window in memory before writing it, so memory grew with window length.
+ *    This also keeps the first row of the first window, which the original
+ *    consumed while discarding the data before the first timestamp.
+ * <p>
+ * 4. Shared window table and per-file errors: {@code trim()} takes a
+ *    {@link GazeWindowTable} built once per pilot, so several gaze files can
+ *    be trimmed concurrently against the same table, and reports failures by
+ *    throwing {@link GazeTrimException}. {@code trimGazeFile()} keeps the old
+ *    log-and-return-false behavior.
+ * <p>
+ * 5. Indexed seek: rows before the first window are skipped by seeking with
+ *    the file's {@link GazeFileIndex} instead of reading them one by one.
+ * <p>
+ * 6. Tick boundaries: window boundaries are converted once per file to
+ *    {@code TIMETICK} values through a {@link GazeClock}, and each row is
+ *    classified by comparing its tick with {@code Long.parseLong}. The original
+ *    parsed the {@code TIME} cell as a double for every row and truncated the
+ *    boundaries to whole seconds, so rows up to a second before a timestamp
+ *    landed in the following window. Files without a {@code TIMETICK} column
+ *    fall back to the {@code TIME} column.
+ * <p>
+ * 7. Overlapping windows: {@code trim()} takes arbitrary labelled
+ *    {@link GazeInterval}s instead of contiguous timestamps and routes each
+ *    row to every window that contains it, in one pass. Windows are swept
+ *    in start order with the active ones in a heap ordered by end, so event
+ *    windows (for example the last minute before touchdown) can overlap the
+ *    phase windows and each other. The original could only cut
+ *    back-to-back windows in timestamp order.
+ * <p>
+ * 8. Partitioned output: with {@link OutputMode#PARTITIONED} every gaze
+ *    file is written once to {@code <file>_windows.csv} with a trailing
+ *    {@code window} column, plus a {@link GazePartitionIndex} sidecar with
+ *    the row and byte range of each window, instead of one file per window.
+ *    {@link GazePartitionIndex#openWindow} seeks straight to one window.
+ * <p>
+ * 9. Gaze stages: {@link GazeStage}s such as {@link AoiStage} run on each
+ *    windowed row in the same pass, before it is written.
+ * <p>
+ * 10. Validity filter: an optional {@link GazeValidityFilter} screens the
+ *    rows as they are read, dropping or flagging invalid and blink rows and
+ *    filling short gaps, before the stages and the output see them. Only
+ *    usable rows reach the stages, flagged rows go to the output only.
+ * <p>
+ * 11. Live sessions: the sweep reads rows through a {@link GazeRowSource},
+ *    so {@link OpenGazeClient} runs the same windows, filter, and stages on
+ *    records received from the tracker during a session.
+ * <p>
+ * 12. Raw rows: the file is read with a {@link GazeCsvReader} through a
+ *    {@link GazeCsvRowSource}, which decodes only the columns the clock, the
+ *    filter, and the stages declare ({@link GazeStage#getColumns()}). Rows go
+ *    to the window files as the bytes that were read, with only the changed
+ *    cells written again, in either output mode. The original parsed and
+ *    re-quoted every cell of every row with opencsv; output fields are now
+ *    quoted only where needed.
  */
 
 public class GazeTrimmerUpdated {
@@ -49,100 +109,228 @@ public class GazeTrimmerUpdated {
 
 		if (timestamps.size() == 0) {
 			SystemLogger.writeToSystemLog(Level.SEVERE, GazeTrimmerUpdated.class.getName(), "No window timestamps were provided\n");
+			return false;
 		}
-		LocalDateTime gazeStartTime = null;
-		DateTimeFormatter gpTimeFormat = DateTimeFormatter.ofPattern("yyyy/MM/dd kk:mm:ss.SSS");	// time format in gazepoint data
+
+		try {
+			trim(inputFile, outputFolder, new GazeWindowTable(GazeInterval.contiguous(timestamps)));
+		} catch (GazeTrimException e) {
+			SystemLogger.writeToSystemLog(Level.SEVERE, GazeTrimmerUpdated.class.getName(), e.getMessage() + "\n" + e.getCause());
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Layout of the trimmed output.
+	 */
+	public enum OutputMode {
+		/** one csv file per window, {@code <file>_<label>.csv} */
+		WINDOW_FILES,
+		/** one csv file per gaze file, {@code <file>_windows.csv}, with a window column and a {@link GazePartitionIndex} */
+		PARTITIONED
+	}
+
+	/**
+	 * Trims a gaze csv file into one csv file per window of a precomputed window table, {@code <file>_<label>.csv}, in
+	 * one pass. Windows may overlap, in which case a row belongs to every window that contains it. The table is only
+	 * read, so one table can be shared by several trims running at the same time.
+	 * @param inputFile		CSV file to be trimmed or cut into windows.
+	 * @param outputFolder	Directory to save new csv files.
+	 * @param windows		Labels and intervals of the windows.
+	 * @throws GazeTrimException if the file cannot be read, parsed, or written
+	 */
+	public static void trim(String inputFile, String outputFolder, GazeWindowTable windows) throws GazeTrimException {
+		trim(inputFile, outputFolder, windows, Collections.<GazeStage>emptyList());
+	}
+
+	/**
+	 * Trims a gaze csv file into the windows of a precomputed window table in one pass, running the given stages on
+	 * every row that falls in a window before it is written.
+	 * @param inputFile		CSV file to be trimmed or cut into windows.
+	 * @param outputFolder	Directory to save new csv files.
+	 * @param windows		Labels and intervals of the windows.
+	 * @param stages		Stages to run, in order, each used for this file only.
+	 * @throws GazeTrimException if the file cannot be read, parsed, or written
+	 */
+	public static void trim(String inputFile, String outputFolder, GazeWindowTable windows, List<GazeStage> stages)
+			throws GazeTrimException {
+		trim(inputFile, outputFolder, windows, stages, null);
+	}
+
+	/**
+	 * Trims a gaze csv file into the windows of a precomputed window table in one pass, screening every row with a
+	 * validity filter before the stages run on it and it is written.
+	 * @param inputFile		CSV file to be trimmed or cut into windows.
+	 * @param outputFolder	Directory to save new csv files.
+	 * @param windows		Labels and intervals of the windows.
+	 * @param stages		Stages to run, in order, each used for this file only.
+	 * @param filter		Validity filter used for this file only, or null to keep every row as read.
+	 * @throws GazeTrimException if the file cannot be read, parsed, or written
+	 */
+	public static void trim(String inputFile, String outputFolder, GazeWindowTable windows, List<GazeStage> stages,
+			GazeValidityFilter filter) throws GazeTrimException {
+		trim(inputFile, outputFolder, windows, OutputMode.WINDOW_FILES, stages, filter);
+	}
+
+	/**
+	 * Trims a gaze csv file into the windows of a precomputed window table in one pass, in the given output layout.
+	 * @param inputFile		CSV file to be trimmed or cut into windows.
+	 * @param outputFolder	Directory to save new csv files.
+	 * @param windows		Labels and intervals of the windows.
+	 * @param mode			Layout of the output files.
+	 * @param stages		Stages to run, in order, each used for this file only.
+	 * @param filter		Validity filter used for this file only, or null to keep every row as read.
+	 * @throws GazeTrimException if the file cannot be read, parsed, or written
+	 */
+	public static void trim(String inputFile, String outputFolder, GazeWindowTable windows, OutputMode mode,
+			List<GazeStage> stages, GazeValidityFilter filter) throws GazeTrimException {
+
 		String fileName = FileNameUtils.getBaseName(inputFile);
 
-		// we are using iterator in case a linked list is passed in for timestamps. Review your data structures if you don't understand the reason.
-		Iterator<Pair<String, LocalDateTime>> tsIterator = timestamps.iterator();
-		// we are using LinkedLists because insertion is faster and we will never need to index this data structure
-		List<String[]> data = new LinkedList<>();
-
-		try(
-			FileReader fileReader = new FileReader(inputFile);
-			CSVReader csvReader = new CSVReader(fileReader);
-		){
-			String[] headers = csvReader.readNext();
-			String[] nextLine = null;
-
-			int timestampIndex = -1;
-			for(int i = 0; i < headers.length; i++)
-			{
-				if (headers[i].contains("TIME("))
-				{
-					String timeHeader = headers[i];
-					gazeStartTime = LocalDateTime.parse(timeHeader.substring(timeHeader.indexOf("(")+1, timeHeader.indexOf(")")), gpTimeFormat);
-					timestampIndex = i;
-					break;
-				}
+		// rows are written straight to the output as they are read, only windows that are active have output open
+		GazeWindowSink sink = null;
+
+		try {
+			String[] headers;
+			try (GazeCsvReader headerReader = new GazeCsvReader(new FileInputStream(inputFile))) {
+				headers = headerReader.readHeader();
 			}
 
+			GazeClock clock = headers != null ? GazeClock.fromHeaders(headers) : null;
+
 			// check there is a timestamp index
-			if (timestampIndex == -1) {
-				SystemLogger.writeToSystemLog(Level.SEVERE, GazeTrimmerUpdated.class.getName(), "No time column in file" + inputFile +"\n");
-				return false;
+			if (clock == null) {
+				throw new GazeTrimException("No time column in file " + inputFile);
+			}
+			if (windows.size() == 0) {
+				return;
+			}
+			int headerWidth = headers.length;
+			if (filter != null) {
+				headers = filter.open(headers, windows);
+			}
+			for (GazeStage stage : stages) {
+				stage.open(headers, windows);
 			}
 
-			double end;
-			double timeRecord;
-			Pair<String, LocalDateTime> nextTimestamp = tsIterator.next();
-			// throw away start data from before the start of the first timestamp
-			while((nextLine = csvReader.readNext()) != null) {
-				end = Duration.between(gazeStartTime, nextTimestamp.right).getSeconds();
-				timeRecord = Double.valueOf(nextLine[timestampIndex]);
-				if (timeRecord >= end) {
-					break;
+			// skip straight to the first window instead of reading the recording from its first row,
+			// with a millisecond of margin for the rounding of the TIME column against TIMETICK
+			GazeFileIndex index = GazeFileIndex.load(inputFile);
+			try (GazeCsvReader reader = new GazeCsvReader(index.openAt(clock.toSeconds(windows.getStart(0)) - 0.001))) {
+				GazeCsvRowSource source = new GazeCsvRowSource(reader, headerWidth, columns(clock, stages, filter),
+					headers.length, filter != null ? filter.getLookAhead() : 0);
+				sink = mode == OutputMode.PARTITIONED
+					? new GazePartitionWriter(outputFolder, fileName, headers, windows, source)
+					: new WindowFileSink(outputFolder, fileName, headers, windows, source);
+				String[] nextLine = filter != null ? filter.next(source) : source.readNext();
+				if (nextLine != null) {
+					sweep(source, nextLine, clock.withOrigin(nextLine), windows, stages, filter, sink);
 				}
 			}
 
-			while(tsIterator.hasNext()) {
-				String windowName = nextTimestamp.left;
-				nextTimestamp = tsIterator.next();
-				end = Duration.between(gazeStartTime, nextTimestamp.right).getSeconds();
-				boolean windowComplete = false;
-				while((nextLine = csvReader.readNext()) != null) {
-					timeRecord = Double.valueOf(nextLine[timestampIndex]);
-					if (timeRecord < end) {
-						data.add(nextLine);
-						continue;
-					}
-
-					// write data to file
-					String outputFile = outputFolder+ "/" + fileName + "_" + windowName + ".csv";
-					CsvUtils.writeCsvFile(outputFile, headers, data);
-					data = new LinkedList<>(); 	// clear data list
-					data.add(nextLine);
-					// go to the next time window
-					windowComplete = true;
-					break;
-				}
-				// CSV exhausted before reaching next window boundary -- flush remaining data
-				if (!windowComplete && !data.isEmpty()) {
-					String outputFile = outputFolder + "/" + fileName + "_" + windowName + ".csv";
-					CsvUtils.writeCsvFile(outputFile, headers, data);
-					break;
-				}
+			// CSV exhausted before reaching the end of some windows -- they keep the rows written so far
+			sink.finish();
+			for (GazeStage stage : stages) {
+				stage.finish();
 			}
 
 		} catch(FileNotFoundException e) {
-			SystemLogger.writeToSystemLog(Level.SEVERE, GazeTrimmerUpdated.class.getName(), "Unable to open file\n" + e.toString());
-			return false;
+			throw new GazeTrimException("Unable to open file " + inputFile, e);
 		} catch(IOException e) {
-			SystemLogger.writeToSystemLog(Level.SEVERE, GazeTrimmerUpdated.class.getName(), "Unable to read file\n" + e.toString());
-			return false;
+			throw new GazeTrimException("Unable to read file " + inputFile, e);
 		} catch (CsvValidationException e) {
-			SystemLogger.writeToSystemLog(Level.SEVERE, GazeTrimmerUpdated.class.getName(), "Unable to read csv file\n" + e.toString());
-			return false;
+			throw new GazeTrimException("Unable to read csv file " + inputFile, e);
 		} catch (DateTimeParseException e) {
-			SystemLogger.writeToSystemLog(Level.SEVERE, GazeTrimmerUpdated.class.getName(), "Time format cannot be parsed\n" + e.toString());
-			return false;
-		} catch (Exception e) {
-			SystemLogger.writeToSystemLog(Level.SEVERE, GazeTrimmerUpdated.class.getName(), "Unexpected error\n" + e.toString());
-			return false;
+			throw new GazeTrimException("Time format cannot be parsed in " + inputFile, e);
+		} catch (RuntimeException e) {
+			throw new GazeTrimException("Unexpected error in " + inputFile, e);
+		} finally {
+			closeQuietly(sink);
 		}
+	}
 
-		return true;
+	/**
+	 * @return columns used by the clock, the filter, and the stages, null if a stage may use any column
+	 */
+	private static int[] columns(GazeClock clock, List<GazeStage> stages, GazeValidityFilter filter) {
+		List<int[]> used = new ArrayList<>();
+		used.add(new int[] {clock.getTimeColumn(), clock.getTickColumn()});
+		if (filter != null) {
+			used.add(filter.getColumns());
+		}
+		for (GazeStage stage : stages) {
+			int[] columns = stage.getColumns();
+			if (columns == null) {
+				return null;
+			}
+			used.add(columns);
+		}
+		return used.stream().flatMapToInt(Arrays::stream).toArray();
+	}
+
+	/**
+	 * Routes each row to the windows that contain it. Windows are opened in start order and the active ones are kept
+	 * in a heap ordered by end, so each row costs one tick comparison plus the windows it enters or leaves.
+	 * @param source	source of the rows after {@code firstLine}
+	 * @param firstLine	first row read, at or before the start of the first window
+	 * @param clock		clock calibrated against the file
+	 * @param filter	validity filter that read {@code firstLine}, or null
+	 */
+	static void sweep(GazeRowSource source, String[] firstLine, GazeClock clock, GazeWindowTable windows,
+			List<GazeStage> stages, GazeValidityFilter filter, GazeWindowSink sink) throws IOException, CsvValidationException {
+
+		// window bounds in ticks, computed once per file
+		long[] starts = windows.startTicks(clock);
+		long[] ends = windows.endTicks(clock);
+
+		PriorityQueue<Integer> active = new PriorityQueue<>(windows.size(), (a, b) -> Long.compare(ends[a], ends[b]));
+		int next = 0;
+		String[] nextLine = firstLine;
+		do {
+			long tick = clock.tickOf(nextLine);
+
+			while (!active.isEmpty() && ends[active.peek()] <= tick) {
+				sink.windowEnded(active.poll());
+			}
+			while (next < starts.length && starts[next] <= tick) {
+				if (ends[next] > tick) {
+					active.add(next);
+					sink.windowStarted(next);
+				}
+				next++;
+			}
+
+			if (active.isEmpty()) {
+				if (next == starts.length) {
+					// past the end of the last window
+					break;
+				}
+				continue;
+			}
+			String[] row = filter != null ? filter.accept(nextLine, active) : nextLine;
+			if (row == null) {
+				// dropped by the filter, but still counted toward its windows
+				continue;
+			}
+			if (filter == null || filter.isUsable()) {
+				for (GazeStage stage : stages) {
+					stage.accept(row, active);
+				}
+			}
+			sink.row(row, active);
+		} while ((nextLine = filter != null ? filter.next(source) : source.readNext()) != null);
+	}
+
+	private static void closeQuietly(GazeWindowSink sink) {
+		if (sink == null) {
+			return;
+		}
+		try {
+			sink.close();
+		} catch (IOException e) {
+			SystemLogger.writeToSystemLog(Level.WARNING, GazeTrimmerUpdated.class.getName(), "Unable to close window output\n" + e.toString());
+		}
 	}
 
 	/**
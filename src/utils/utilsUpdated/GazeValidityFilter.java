@@ -0,0 +1,407 @@
+package utils.utilsUpdated;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import com.opencsv.CSVWriter;
+import com.opencsv.exceptions.CsvValidationException;
+
+/**
+ * Screens gaze rows for validity once, while {@link GazeTrimmerUpdated} reads them, so that the windows, the
+ * stages, and everything reading the trimmed files get the same verdict.
+ *
+ * A row is a blink when {@code BKID} is set, invalid when {@code FPOGV} is not 1, and, if pupils are checked,
+ * invalid when neither {@code LPMMV} nor {@code RPMMV} is 1. Invalid rows are either dropped before the stages
+ * and the output, or kept with their verdict in a {@code GAZE_FILTER} column ({@code valid}, {@code interpolated},
+ * {@code blink}, {@code fixation}, or {@code pupil}), which takes the place of the empty column that ends a
+ * Gazepoint header. Either way the stages only see the usable rows, valid or interpolated, so they need no
+ * validity checks of their own.
+ *
+ * Runs of at most {@code maxGapRows} bad rows between two valid rows can be filled by linear interpolation of
+ * the point of gaze and the pupil diameters, after which they count as valid. Rows are held back only while a
+ * gap is open, so the look-ahead buffer never exceeds {@code maxGapRows + 1} rows; a longer gap is released
+ * unchanged. Interpolation is by row, which suits the fixed sample rate of all-gaze files.
+ *
+ * Each window counts its rows per verdict, written by {@link #writeToFile}. A filter holds per-file state, so
+ * create one per gaze file.
+ */
+public class GazeValidityFilter {
+
+	/**
+	 * What happens to rows that are not valid.
+	 */
+	public enum Action {
+		/** invalid rows are not passed to the stages or written */
+		DROP,
+		/** every row is kept, with its verdict in the {@code GAZE_FILTER} column */
+		FLAG
+	}
+
+	public static final String FLAG_COLUMN = "GAZE_FILTER";
+
+	private static final byte VALID = 0;
+	private static final byte INTERPOLATED = 1;
+	private static final byte BLINK = 2;
+	private static final byte FIXATION = 3;
+	private static final byte PUPIL = 4;
+	private static final String[] VERDICTS = {"valid", "interpolated", "blink", "fixation", "pupil"};
+
+	// columns filled across a short gap, each with the validity column that is set when it is filled
+	private static final String[][] INTERPOLATED_COLUMNS = {
+		{"FPOGX", "FPOGV"},
+		{"FPOGY", "FPOGV"},
+		{"BPOGX", "BPOGV"},
+		{"BPOGY", "BPOGV"},
+		{"LPMM", "LPMMV"},
+		{"RPMM", "RPMMV"}
+	};
+
+	private final Action action;
+	private final boolean checkPupils;
+	private final int maxGapRows;
+
+	private int validColumn = -1;
+	private int blinkColumn = -1;
+	private int leftValidColumn = -1;
+	private int rightValidColumn = -1;
+	private int[] valueColumns;				// [interpolated column], -1 if missing
+	private int[] valueValidColumns;		// [interpolated column], -1 if missing
+	private int flagColumn = -1;
+	private int width;						// row length after the flag column is added
+
+	private String[] windowLabels;
+	private long[][] counts;				// [window][verdict]
+
+	// rows read ahead while a gap was open, with their verdicts
+	private final ArrayDeque<String[]> pending = new ArrayDeque<>();
+	private final ArrayDeque<Byte> pendingVerdicts = new ArrayDeque<>();
+	private String[] lastValid;
+	private byte verdict;
+
+	/**
+	 * @param action		drop or flag rows that are not valid
+	 * @param checkPupils	whether a row without a valid pupil is invalid
+	 * @param maxGapRows	longest run of bad rows to interpolate, 0 to turn interpolation off
+	 */
+	public GazeValidityFilter(Action action, boolean checkPupils, int maxGapRows) {
+		this.action = action;
+		this.checkPupils = checkPupils;
+		this.maxGapRows = Math.max(0, maxGapRows);
+	}
+
+	/**
+	 * Finds the columns the filter reads.
+	 * @param headers	header row of the gaze file
+	 * @param windows	windows the file is trimmed into
+	 * @return			header row of the output, with the flag column when rows are flagged
+	 */
+	String[] open(String[] headers, GazeWindowTable windows) {
+		for (int i = 0; i < headers.length; i++) {
+			switch (headers[i]) {
+				case "FPOGV":	validColumn = i; break;
+				case "BKID":	blinkColumn = i; break;
+				case "LPMMV":	leftValidColumn = i; break;
+				case "RPMMV":	rightValidColumn = i; break;
+				default:		break;
+			}
+		}
+		valueColumns = new int[INTERPOLATED_COLUMNS.length];
+		valueValidColumns = new int[INTERPOLATED_COLUMNS.length];
+		List<String> names = Arrays.asList(headers);
+		for (int c = 0; c < INTERPOLATED_COLUMNS.length; c++) {
+			valueColumns[c] = names.indexOf(INTERPOLATED_COLUMNS[c][0]);
+			valueValidColumns[c] = names.indexOf(INTERPOLATED_COLUMNS[c][1]);
+		}
+
+		int n = windows.size();
+		windowLabels = new String[n];
+		for (int w = 0; w < n; w++) {
+			windowLabels[w] = windows.getLabel(w);
+		}
+		counts = new long[n][VERDICTS.length];
+
+		if (action != Action.FLAG) {
+			width = headers.length;
+			return headers;
+		}
+		// Gazepoint headers end with a comma, so the flag can take the empty last column
+		boolean trailing = headers.length > 0 && headers[headers.length - 1].isEmpty();
+		flagColumn = trailing ? headers.length - 1 : headers.length;
+		width = flagColumn + 1;
+		String[] output = Arrays.copyOf(headers, width);
+		output[flagColumn] = FLAG_COLUMN;
+		return output;
+	}
+
+	/**
+	 * @return	columns the filter reads or changes, known after {@link #open}, -1 for missing ones
+	 */
+	int[] getColumns() {
+		int[] columns = new int[5 + 2 * valueColumns.length];
+		int c = 0;
+		columns[c++] = validColumn;
+		columns[c++] = blinkColumn;
+		columns[c++] = leftValidColumn;
+		columns[c++] = rightValidColumn;
+		columns[c++] = flagColumn;
+		for (int i = 0; i < valueColumns.length; i++) {
+			columns[c++] = valueColumns[i];
+			columns[c++] = valueValidColumns[i];
+		}
+		return columns;
+	}
+
+	/**
+	 * @return	most rows {@link #next} reads past a row before returning it
+	 */
+	int getLookAhead() {
+		return maxGapRows + 1;
+	}
+
+	/**
+	 * Reads the next row, filling a short gap before it if one is found.
+	 * @param reader	source of the rows
+	 * @return			next row, null at the end of the recording
+	 */
+	String[] next(GazeRowSource reader) throws IOException, CsvValidationException {
+		if (!pending.isEmpty()) {
+			verdict = pendingVerdicts.poll();
+			String[] row = pending.poll();
+			if (verdict == VALID) {
+				lastValid = row;
+			}
+			return row;
+		}
+		String[] row = reader.readNext();
+		if (row == null) {
+			return null;
+		}
+		verdict = classify(row);
+		if (verdict == VALID) {
+			lastValid = row;
+			return row;
+		}
+		if (maxGapRows == 0 || lastValid == null) {
+			return row;
+		}
+
+		// hold the gap back until it closes or grows too long
+		List<String[]> gap = new ArrayList<>();
+		List<Byte> gapVerdicts = new ArrayList<>();
+		gap.add(row);
+		gapVerdicts.add(verdict);
+		while (gap.size() <= maxGapRows) {
+			String[] following = reader.readNext();
+			if (following == null) {
+				break;
+			}
+			byte followingVerdict = classify(following);
+			if (followingVerdict == VALID) {
+				interpolate(lastValid, gap, following);
+				for (String[] filled : gap) {
+					pending.add(filled);
+					pendingVerdicts.add(INTERPOLATED);
+				}
+				pending.add(following);
+				pendingVerdicts.add(VALID);
+				return next(reader);
+			}
+			gap.add(following);
+			gapVerdicts.add(followingVerdict);
+		}
+		// too long or unterminated, nothing is filled until the next valid row
+		lastValid = null;
+		pending.addAll(gap);
+		pendingVerdicts.addAll(gapVerdicts);
+		return next(reader);
+	}
+
+	private byte classify(String[] row) {
+		if (blinkColumn != -1 && blinkColumn < row.length && !row[blinkColumn].isEmpty() && !"0".equals(row[blinkColumn])) {
+			return BLINK;
+		}
+		if (validColumn != -1 && (validColumn >= row.length || !"1".equals(row[validColumn]))) {
+			return FIXATION;
+		}
+		if (checkPupils && (leftValidColumn != -1 || rightValidColumn != -1)
+				&& !isSet(row, leftValidColumn) && !isSet(row, rightValidColumn)) {
+			return PUPIL;
+		}
+		return VALID;
+	}
+
+	private static boolean isSet(String[] row, int column) {
+		return column != -1 && column < row.length && "1".equals(row[column]);
+	}
+
+	/**
+	 * Fills the gap rows linearly between the valid rows around them, column by column, where both ends have a
+	 * valid value.
+	 */
+	private void interpolate(String[] before, List<String[]> gap, String[] after) {
+		for (int c = 0; c < valueColumns.length; c++) {
+			int column = valueColumns[c];
+			int validity = valueValidColumns[c];
+			if (column == -1 || column >= before.length || column >= after.length) {
+				continue;
+			}
+			if (validity != -1 && (!isSet(before, validity) || !isSet(after, validity))) {
+				continue;
+			}
+			double from;
+			double to;
+			try {
+				from = Double.parseDouble(before[column]);
+				to = Double.parseDouble(after[column]);
+			} catch (NumberFormatException e) {
+				continue;
+			}
+			for (int i = 0; i < gap.size(); i++) {
+				String[] row = gap.get(i);
+				if (column >= row.length) {
+					continue;
+				}
+				double fraction = (i + 1.0) / (gap.size() + 1);
+				row[column] = String.valueOf(from + fraction * (to - from));
+				if (validity != -1 && validity < row.length) {
+					row[validity] = "1";
+				}
+			}
+		}
+		for (String[] row : gap) {
+			if (blinkColumn != -1 && blinkColumn < row.length) {
+				row[blinkColumn] = "0";
+			}
+			if (validColumn != -1 && validColumn < row.length) {
+				row[validColumn] = "1";
+			}
+		}
+	}
+
+	/**
+	 * @return	whether the row returned by the last {@link #next} was valid or interpolated
+	 */
+	boolean isUsable() {
+		return verdict == VALID || verdict == INTERPOLATED;
+	}
+
+	/**
+	 * Counts the row returned by the last {@link #next} toward its windows and flags it.
+	 * @param row		row returned by the last {@link #next}
+	 * @param active	windows that contain the row
+	 * @return			the row to pass on, or null if it is dropped
+	 */
+	String[] accept(String[] row, Collection<Integer> active) {
+		for (int window : active) {
+			counts[window][verdict]++;
+		}
+		if (action == Action.DROP) {
+			return isUsable() ? row : null;
+		}
+		String[] output = row.length >= width ? row : Arrays.copyOf(row, width);
+		output[flagColumn] = VERDICTS[verdict];
+		return output;
+	}
+
+	/**
+	 * @param label	window label
+	 * @return		index of the window, -1 if the file was not trimmed into a window with the label
+	 */
+	public int indexOf(String label) {
+		if (windowLabels == null) {
+			return -1;
+		}
+		for (int w = 0; w < windowLabels.length; w++) {
+			if (windowLabels[w].equals(label)) {
+				return w;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param window	window index
+	 * @return			number of rows read in the window, including dropped ones
+	 */
+	public long getRowCount(int window) {
+		long total = 0;
+		for (long count : counts[window]) {
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * @param window	window index
+	 * @return			percentage of the window's rows that were valid as read, NaN for an empty window
+	 */
+	public double getValidPercent(int window) {
+		long total = getRowCount(window);
+		return total > 0 ? 100.0 * counts[window][VALID] / total : Double.NaN;
+	}
+
+	/**
+	 * @return csv header of the validity rows
+	 */
+	public static String[] getHeaders() {
+		String[] headers = new String[3 + VERDICTS.length + 1];
+		int c = 0;
+		headers[c++] = "Source";
+		headers[c++] = "Window";
+		headers[c++] = "Rows";
+		for (String name : VERDICTS) {
+			headers[c++] = Character.toUpperCase(name.charAt(0)) + name.substring(1) + "_Percent";
+		}
+		headers[c++] = "Usable_Percent";
+		return headers;
+	}
+
+	/**
+	 * Writes one validity row per window.
+	 * @param writer	csv writer to append to
+	 * @param source	name of the gaze file, written in the first column
+	 */
+	public void writeRows(CSVWriter writer, String source) {
+		if (windowLabels == null) {
+			// the file was never opened
+			return;
+		}
+		for (int w = 0; w < windowLabels.length; w++) {
+			long total = getRowCount(w);
+			String[] row = new String[3 + VERDICTS.length + 1];
+			int c = 0;
+			row[c++] = source;
+			row[c++] = windowLabels[w];
+			row[c++] = String.valueOf(total);
+			for (int v = 0; v < VERDICTS.length; v++) {
+				row[c++] = total > 0 ? String.valueOf(100.0 * counts[w][v] / total) : "";
+			}
+			row[c++] = total > 0 ? String.valueOf(100.0 * (counts[w][VALID] + counts[w][INTERPOLATED]) / total) : "";
+			writer.writeNext(row);
+		}
+	}
+
+	/**
+	 * Writes the validity of several gaze files of one pilot to a single csv file.
+	 * @param outputFile	path of the csv file to write
+	 * @param filters		filters that were used, one per gaze file
+	 * @param sources		gaze file names, in the same order as the filters
+	 */
+	public static void writeToFile(String outputFile, List<GazeValidityFilter> filters, List<String> sources) throws IOException {
+		if (filters.isEmpty()) {
+			return;
+		}
+		try (CSVWriter writer = new CSVWriter(new FileWriter(new File(outputFile)))) {
+			writer.writeNext(getHeaders());
+			for (int i = 0; i < filters.size(); i++) {
+				filters.get(i).writeRows(writer, sources.get(i));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,35 @@
+package utils.utilsUpdated;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Receives the rows of a gaze recording while {@link GazeTrimmerUpdated} sweeps its windows. Windows are
+ * identified by their index in the {@link GazeWindowTable}. {@link #close()} only releases resources, so
+ * call {@link #finish()} first when the sweep completes normally.
+ */
+interface GazeWindowSink extends Closeable {
+
+	/**
+	 * @param window	window that becomes active before the next row
+	 */
+	void windowStarted(int window) throws IOException;
+
+	/**
+	 * @param row		gaze row
+	 * @param active	windows that contain the row, in no particular order
+	 */
+	void row(String[] row, Collection<Integer> active) throws IOException;
+
+	/**
+	 * @param window	window that ended before the next row
+	 */
+	void windowEnded(int window) throws IOException;
+
+	/**
+	 * Completes the output after the last row.
+	 */
+	void finish() throws IOException;
+
+}
@@ -0,0 +1,101 @@
+package utils.utilsUpdated;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable table of gaze windows, built once from labelled intervals and shared by every gaze file that is
+ * trimmed for a pilot. Windows are sorted by start time so a trimmer can sweep them in a single pass over a
+ * recording; they may overlap each other and leave gaps.
+ */
+public class GazeWindowTable {
+
+	private final String[] labels;
+	private final LocalDateTime[] starts;
+	private final LocalDateTime[] ends;
+
+	/**
+	 * @param intervals	windows to cut, in any order, with unique labels
+	 */
+	public GazeWindowTable(List<GazeInterval> intervals) {
+		List<GazeInterval> sorted = new ArrayList<>(intervals);
+		sorted.sort(Comparator.comparing(GazeInterval::getStart));
+		int n = sorted.size();
+		this.labels = new String[n];
+		this.starts = new LocalDateTime[n];
+		this.ends = new LocalDateTime[n];
+		Set<String> seen = new HashSet<>();
+		for (int i = 0; i < n; i++) {
+			GazeInterval interval = sorted.get(i);
+			if (!seen.add(interval.getLabel())) {
+				// the label names the output file, so a repeated label would overwrite another window
+				throw new IllegalArgumentException("Duplicate gaze window label: " + interval.getLabel());
+			}
+			labels[i] = interval.getLabel();
+			starts[i] = interval.getStart();
+			ends[i] = interval.getEnd();
+		}
+	}
+
+	/**
+	 * @return number of windows
+	 */
+	public int size() {
+		return labels.length;
+	}
+
+	/**
+	 * @param window	window index
+	 * @return			label of the window
+	 */
+	public String getLabel(int window) {
+		return labels[window];
+	}
+
+	/**
+	 * @param window	window index
+	 * @return			first time in the window
+	 */
+	public LocalDateTime getStart(int window) {
+		return starts[window];
+	}
+
+	/**
+	 * @param window	window index
+	 * @return			first time after the window
+	 */
+	public LocalDateTime getEnd(int window) {
+		return ends[window];
+	}
+
+	/**
+	 * Converts the window starts to ticks of one gaze recording, so rows can be classified by comparing
+	 * their {@code TIMETICK} values directly.
+	 * @param clock	calibrated clock of the gaze recording
+	 * @return		start tick of each window, in window order (non-decreasing)
+	 */
+	public long[] startTicks(GazeClock clock) {
+		return ticks(starts, clock);
+	}
+
+	/**
+	 * @param clock	calibrated clock of the gaze recording
+	 * @return		end tick of each window, in window order
+	 */
+	public long[] endTicks(GazeClock clock) {
+		return ticks(ends, clock);
+	}
+
+	private static long[] ticks(LocalDateTime[] times, GazeClock clock) {
+		long[] ticks = new long[times.length];
+		for (int i = 0; i < times.length; i++) {
+			ticks[i] = clock.toTick(times[i]);
+		}
+		return ticks;
+	}
+
+}
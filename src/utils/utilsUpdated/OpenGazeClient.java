@@ -0,0 +1,290 @@
+package utils.utilsUpdated;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import com.opencsv.exceptions.CsvValidationException;
+import exceptions.GazeTrimException;
+
+/**
+ * Live counterpart of {@link GazeTrimmerUpdated#trim}: reads records from a Gazepoint tracker over the Open Gaze
+ * API (TCP, port 4242 by default) and runs them through the same sweep, so windows, the
+ * {@link GazeValidityFilter}, and the {@link GazeStage}s see exactly what they would see reading a csv export,
+ * while the session is still running.
+ *
+ * The client enables the counter, time, fixation, best point of gaze, pupil, and blink fields and lays each
+ * record out under Gazepoint csv headers. The API reports {@code TIME} in seconds since the tracker started, so
+ * the {@code TIME(...)} header is dated from the local clock when the first record arrives, which lets windows
+ * be given as wall-clock times. Rows are also written to the window files like a trim, with an empty
+ * {@code AOI} column for an {@link AoiStage} to fill.
+ *
+ * {@link OpenGazeReplayServer} stands in for a tracker by replaying a recorded fixation file.
+ */
+public class OpenGazeClient {
+
+	public static final int DEFAULT_PORT = 4242;
+	private static final DateTimeFormatter GP_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy/MM/dd kk:mm:ss.SSS");	// time format in gazepoint data
+	private static final long NANOS_PER_SECOND = 1000000000L;
+
+	private static final String[] ENABLE = {
+		"ENABLE_SEND_COUNTER",
+		"ENABLE_SEND_TIME",
+		"ENABLE_SEND_TIME_TICK",
+		"ENABLE_SEND_POG_FIX",
+		"ENABLE_SEND_POG_BEST",
+		"ENABLE_SEND_PUPILMM",
+		"ENABLE_SEND_BLINK"
+	};
+
+	// record attributes in csv column order; TIME and TIME_TICK get their csv headers in headers()
+	static final String[] FIELDS = {
+		"CNT",
+		"TIME",
+		"TIME_TICK",
+		"FPOGX",
+		"FPOGY",
+		"FPOGS",
+		"FPOGD",
+		"FPOGID",
+		"FPOGV",
+		"BPOGX",
+		"BPOGY",
+		"BPOGV",
+		"BKID",
+		"BKDUR",
+		"BKPMIN",
+		"LPMM",
+		"LPMMV",
+		"RPMM",
+		"RPMMV"
+	};
+
+	private final String host;
+	private final int port;
+
+	/**
+	 * @param host	address of the machine running Gazepoint Control
+	 * @param port	Open Gaze API port
+	 */
+	public OpenGazeClient(String host, int port) {
+		this.host = host;
+		this.port = port;
+	}
+
+	/**
+	 * Receives records until the last window ends or the tracker closes the connection.
+	 * @param outputFolder	Directory to save the window csv files.
+	 * @param fileName		Base name of the window csv files.
+	 * @param windows		Labels and wall-clock intervals of the windows.
+	 * @param stages		Stages to run, in order, each used for this session only.
+	 * @param filter		Validity filter used for this session only, or null to keep every row as received.
+	 * @throws GazeTrimException if the connection fails or the records cannot be processed
+	 */
+	public void stream(String outputFolder, String fileName, GazeWindowTable windows, List<GazeStage> stages,
+			GazeValidityFilter filter) throws GazeTrimException {
+
+		if (windows.size() == 0) {
+			return;
+		}
+		GazeWindowSink sink = null;
+		try (Socket socket = new Socket(host, port)) {
+			socket.setTcpNoDelay(true);
+			OutputStream out = socket.getOutputStream();
+			send(out, "<GET ID=\"TIME_TICK_FREQUENCY\" />");
+			for (String id : ENABLE) {
+				send(out, "<SET ID=\"" + id + "\" STATE=\"1\" />");
+			}
+			send(out, "<SET ID=\"ENABLE_SEND_DATA\" STATE=\"1\" />");
+
+			String[] columns = new String[FIELDS.length + 2];
+			System.arraycopy(FIELDS, 0, columns, 0, FIELDS.length);
+			OpenGazeScanner scanner = new OpenGazeScanner(new BufferedInputStream(socket.getInputStream()), columns);
+
+			// the acknowledgements come first, the first record dates the session
+			long frequency = GazeClock.DEFAULT_FREQUENCY;
+			String[] first = null;
+			while (first == null && scanner.next()) {
+				if (scanner.isAck() && "TIME_TICK_FREQUENCY".equals(scanner.getAttribute("ID"))) {
+					String freq = scanner.getAttribute("FREQ");
+					if (freq != null) {
+						frequency = Long.parseLong(freq);
+					}
+				} else if (scanner.isRecord()) {
+					first = scanner.getRow();
+				}
+			}
+			if (first == null) {
+				throw new GazeTrimException("Open Gaze API at " + host + ":" + port + " closed before sending data");
+			}
+			double seconds = Double.parseDouble(first[1]);
+			LocalDateTime startTime = LocalDateTime.now().minusNanos(Math.round(seconds * NANOS_PER_SECOND));
+			String[] headers = headers(startTime, frequency);
+
+			GazeClock clock = GazeClock.fromHeaders(headers).withOrigin(first);
+			if (filter != null) {
+				headers = filter.open(headers, windows);
+			}
+			for (GazeStage stage : stages) {
+				stage.open(headers, windows);
+			}
+			sink = new WindowFileSink(outputFolder, fileName, headers, windows);
+
+			String[] firstRow = first;
+			GazeRowSource source = new GazeRowSource() {
+				private String[] pending = firstRow;
+
+				@Override
+				public String[] readNext() throws IOException {
+					if (pending != null) {
+						String[] row = pending;
+						pending = null;
+						return row;
+					}
+					while (scanner.next()) {
+						if (scanner.isRecord()) {
+							return scanner.getRow();
+						}
+					}
+					return null;
+				}
+			};
+			String[] nextLine = filter != null ? filter.next(source) : source.readNext();
+			if (nextLine != null) {
+				GazeTrimmerUpdated.sweep(source, nextLine, clock, windows, stages, filter, sink);
+			}
+			sink.finish();
+			for (GazeStage stage : stages) {
+				stage.finish();
+			}
+		} catch (IOException e) {
+			throw new GazeTrimException("Unable to read from Open Gaze API at " + host + ":" + port, e);
+		} catch (RuntimeException e) {
+			throw new GazeTrimException("Unexpected error in Open Gaze API stream from " + host + ":" + port, e);
+		} catch (CsvValidationException e) {
+			// declared by the row source for csv files, not thrown by the live stream
+			throw new GazeTrimException("Unable to read Open Gaze API stream", e);
+		} finally {
+			if (sink != null) {
+				try {
+					sink.close();
+				} catch (IOException e) {
+					System.out.println("Unable to close window output: " + e.getMessage());
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return Gazepoint csv headers of the live rows: the record fields, an empty AOI column, and the empty last column
+	 */
+	static String[] headers(LocalDateTime startTime, long frequency) {
+		String[] headers = new String[FIELDS.length + 2];
+		for (int i = 0; i < FIELDS.length; i++) {
+			switch (FIELDS[i]) {
+				case "TIME":		headers[i] = "TIME(" + GP_TIME_FORMAT.format(startTime) + ")"; break;
+				case "TIME_TICK":	headers[i] = "TIMETICK(f=" + frequency + ")"; break;
+				default:			headers[i] = FIELDS[i]; break;
+			}
+		}
+		headers[FIELDS.length] = "AOI";
+		headers[FIELDS.length + 1] = "";
+		return headers;
+	}
+
+	private static void send(OutputStream out, String command) throws IOException {
+		out.write((command + "\r\n").getBytes(StandardCharsets.US_ASCII));
+		out.flush();
+	}
+
+	/**
+	 * Streams a live session into one window starting now, printing the share of valid rows and the fixation
+	 * count every few seconds.
+	 * @param args host, port, output folder, session length in seconds, and optionally an AOI definition file
+	 */
+	public static void main(String[] args) {
+		if (args.length < 4) {
+			System.out.println("Usage: OpenGazeClient <host> <port> <output folder> <seconds> [aoi file]");
+			return;
+		}
+		LocalDateTime start = LocalDateTime.now();
+		List<GazeInterval> intervals = new ArrayList<>();
+		intervals.add(new GazeInterval("live", start, start.plusSeconds(Long.parseLong(args[3]))));
+		GazeWindowTable windows = new GazeWindowTable(intervals);
+
+		List<GazeStage> stages = new ArrayList<>();
+		AoiTransitionStage transitions = null;
+		if (args.length > 4) {
+			try {
+				AoiIndex aois = AoiIndex.load(args[4]);
+				transitions = new AoiTransitionStage(aois.getNames());
+				stages.add(new AoiStage(aois));
+				stages.add(transitions);
+			} catch (IOException e) {
+				System.out.println("Unable to read AOI definitions " + args[4] + ": " + e.getMessage());
+			}
+		}
+		GazeValidityFilter filter = new GazeValidityFilter(GazeValidityFilter.Action.FLAG, true, 0);
+		stages.add(new FeedbackStage(filter, transitions));
+
+		try {
+			new OpenGazeClient(args[0], Integer.parseInt(args[1])).stream(args[2], "live", windows, stages, filter);
+		} catch (GazeTrimException e) {
+			System.out.println(e.getMessage() + (e.getCause() != null ? " (" + e.getCause() + ")" : ""));
+		}
+	}
+
+	/**
+	 * Prints running figures of the first window while the session runs.
+	 */
+	private static class FeedbackStage implements GazeStage {
+
+		private static final long REPORT_NANOS = 5 * NANOS_PER_SECOND;
+
+		private final GazeValidityFilter filter;
+		private final AoiTransitionStage transitions;
+		private long lastReport = System.nanoTime();
+
+		FeedbackStage(GazeValidityFilter filter, AoiTransitionStage transitions) {
+			this.filter = filter;
+			this.transitions = transitions;
+		}
+
+		@Override
+		public void open(String[] headers, GazeWindowTable windows) {
+			// reads the other stages only
+		}
+
+		@Override
+		public int[] getColumns() {
+			return new int[0];
+		}
+
+		@Override
+		public void accept(String[] row, Collection<Integer> active) {
+			long now = System.nanoTime();
+			if (now - lastReport >= REPORT_NANOS) {
+				lastReport = now;
+				report();
+			}
+		}
+
+		@Override
+		public void finish() {
+			report();
+		}
+
+		private void report() {
+			System.out.println("Rows: " + filter.getRowCount(0)
+				+ ", valid: " + String.format("%.1f", filter.getValidPercent(0)) + "%"
+				+ (transitions != null ? ", AOI fixations: " + transitions.getFixationCount(0) : ""));
+		}
+	}
+
+}
@@ -0,0 +1,223 @@
+package utils.utilsUpdated;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+
+/**
+ * Stand-in for Gazepoint Control that replays a recorded csv file, such as a {@code _fixations.csv} export,
+ * over the Open Gaze API, for testing {@link OpenGazeClient} without a tracker.
+ *
+ * The server accepts one client, acknowledges its {@code SET} and {@code GET} commands, and once
+ * {@code ENABLE_SEND_DATA} is on sends one {@code REC} tag per csv row with the fields the client enabled.
+ * {@code TIME} and {@code TIME_TICK} are taken from the recording, and rows are paced by their {@code TIME} at
+ * the given speed (1 for real time, 10 for ten times faster, 0 for as fast as the client reads). The connection
+ * is closed after the last row.
+ */
+public class OpenGazeReplayServer {
+
+	private static final long NANOS_PER_SECOND = 1000000000L;
+
+	// record fields switched on by each ENABLE_SEND command
+	private static final Map<String, List<String>> FIELDS_BY_COMMAND = new HashMap<>();
+	static {
+		FIELDS_BY_COMMAND.put("ENABLE_SEND_COUNTER", Arrays.asList("CNT"));
+		FIELDS_BY_COMMAND.put("ENABLE_SEND_TIME", Arrays.asList("TIME"));
+		FIELDS_BY_COMMAND.put("ENABLE_SEND_TIME_TICK", Arrays.asList("TIME_TICK"));
+		FIELDS_BY_COMMAND.put("ENABLE_SEND_POG_FIX", Arrays.asList("FPOGX", "FPOGY", "FPOGS", "FPOGD", "FPOGID", "FPOGV"));
+		FIELDS_BY_COMMAND.put("ENABLE_SEND_POG_BEST", Arrays.asList("BPOGX", "BPOGY", "BPOGV"));
+		FIELDS_BY_COMMAND.put("ENABLE_SEND_PUPILMM", Arrays.asList("LPMM", "LPMMV", "RPMM", "RPMMV"));
+		FIELDS_BY_COMMAND.put("ENABLE_SEND_BLINK", Arrays.asList("BKID", "BKDUR", "BKPMIN"));
+	}
+
+	private final String inputFile;
+	private final int port;
+	private final double speed;
+
+	// state set by the command thread and read by the sending thread
+	private final Set<String> enabledFields = new HashSet<>();
+	private boolean sending;
+	private long frequency = GazeClock.DEFAULT_FREQUENCY;
+
+	/**
+	 * @param inputFile	Gazepoint csv file to replay
+	 * @param port		port to listen on
+	 * @param speed		replay speed relative to the recording, 0 for no pacing
+	 */
+	public OpenGazeReplayServer(String inputFile, int port, double speed) {
+		this.inputFile = inputFile;
+		this.port = port;
+		this.speed = speed;
+	}
+
+	/**
+	 * Waits for one client and replays the whole file to it.
+	 * @return	number of records sent
+	 */
+	public int serve() throws IOException {
+		try (
+			ServerSocket server = new ServerSocket(port);
+			Socket client = server.accept();
+			CSVReader reader = new CSVReader(new FileReader(inputFile));
+		) {
+			client.setTcpNoDelay(true);
+			OutputStream out = new BufferedOutputStream(client.getOutputStream());
+
+			String[] headers = reader.readNext();
+			if (headers == null) {
+				return 0;
+			}
+			GazeClock clock = GazeClock.fromHeaders(headers);
+			if (clock == null) {
+				throw new IOException("No time column in file " + inputFile);
+			}
+			frequency = clock.getFrequency();
+			// record field of each csv column, null for columns the API does not send
+			String[] fields = new String[headers.length];
+			for (int i = 0; i < headers.length; i++) {
+				if (i == clock.getTimeColumn()) {
+					fields[i] = "TIME";
+				} else if (headers[i].startsWith("TIMETICK(")) {
+					fields[i] = "TIME_TICK";
+				} else if (!headers[i].isEmpty()) {
+					fields[i] = headers[i];
+				}
+			}
+
+			Thread commands = new Thread(() -> readCommands(client, out), "open-gaze-commands");
+			commands.setDaemon(true);
+			commands.start();
+
+			int sent = 0;
+			long startNanos = 0;
+			double startSeconds = Double.NaN;
+			StringBuilder record = new StringBuilder(512);
+			String[] row;
+			try {
+				while ((row = reader.readNext()) != null) {
+					synchronized (this) {
+						while (!sending) {
+							wait();
+						}
+					}
+					if (speed > 0) {
+						double seconds = Double.parseDouble(row[clock.getTimeColumn()]);
+						if (Double.isNaN(startSeconds)) {
+							startSeconds = seconds;
+							startNanos = System.nanoTime();
+						}
+						long due = startNanos + Math.round((seconds - startSeconds) / speed * NANOS_PER_SECOND);
+						long wait = due - System.nanoTime();
+						if (wait > 0) {
+							write(out, "", true);
+							Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+						}
+					}
+					record.setLength(0);
+					record.append("<REC");
+					synchronized (this) {
+						for (int i = 0; i < fields.length && i < row.length; i++) {
+							if (fields[i] != null && enabledFields.contains(fields[i])) {
+								record.append(' ').append(fields[i]).append("=\"").append(row[i].trim()).append('"');
+							}
+						}
+					}
+					record.append(" />\r\n");
+					write(out, record.toString(), false);
+					sent++;
+				}
+				write(out, "", true);
+			} catch (SocketException e) {
+				// the client closed the connection, it has what it needed
+			}
+			return sent;
+		} catch (CsvValidationException e) {
+			throw new IOException("Unable to read csv file " + inputFile, e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while replaying " + inputFile, e);
+		}
+	}
+
+	/**
+	 * Answers the client's commands until it disconnects.
+	 */
+	private void readCommands(Socket client, OutputStream out) {
+		try {
+			OpenGazeScanner scanner = new OpenGazeScanner(new BufferedInputStream(client.getInputStream()), new String[0]);
+			while (scanner.next()) {
+				String id = scanner.getAttribute("ID");
+				if (id == null) {
+					continue;
+				}
+				String name = scanner.getName();
+				if ("SET".equals(name)) {
+					boolean on = "1".equals(scanner.getAttribute("STATE"));
+					synchronized (this) {
+						if ("ENABLE_SEND_DATA".equals(id)) {
+							sending = on;
+							notifyAll();
+						} else if (FIELDS_BY_COMMAND.containsKey(id)) {
+							if (on) {
+								enabledFields.addAll(FIELDS_BY_COMMAND.get(id));
+							} else {
+								enabledFields.removeAll(FIELDS_BY_COMMAND.get(id));
+							}
+						}
+					}
+					write(out, "<ACK ID=\"" + id + "\" STATE=\"" + (on ? 1 : 0) + "\" />\r\n", true);
+				} else if ("GET".equals(name) && "TIME_TICK_FREQUENCY".equals(id)) {
+					write(out, "<ACK ID=\"TIME_TICK_FREQUENCY\" FREQ=\"" + frequency + "\" />\r\n", true);
+				}
+			}
+		} catch (IOException e) {
+			// the client closed the connection
+		}
+	}
+
+	/**
+	 * Writes to the client from either thread.
+	 */
+	private static void write(OutputStream out, String text, boolean flush) throws IOException {
+		synchronized (out) {
+			out.write(text.getBytes(StandardCharsets.US_ASCII));
+			if (flush) {
+				out.flush();
+			}
+		}
+	}
+
+	/**
+	 * Replays a gaze file to the first client that connects.
+	 * @param args csv file, optionally the port (4242) and the speed (1)
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.out.println("Usage: OpenGazeReplayServer <csv file> [port] [speed]");
+			return;
+		}
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : OpenGazeClient.DEFAULT_PORT;
+		double speed = args.length > 2 ? Double.parseDouble(args[2]) : 1;
+		try {
+			int sent = new OpenGazeReplayServer(args[0], port, speed).serve();
+			System.out.println("Replayed " + sent + " records of " + args[0]);
+		} catch (IOException e) {
+			System.out.println("Unable to replay " + args[0] + ": " + e.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,223 @@
+package utils.utilsUpdated;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Splits a Gazepoint Open Gaze API stream into its XML tags, such as
+ * {@code <REC CNT="12" FPOGX="0.5" ... />} and {@code <ACK ID="ENABLE_SEND_DATA" STATE="1" />}.
+ *
+ * The API sends one flat, self-closing tag per line, so this is a scanner over a reused byte buffer rather
+ * than an XML parser: a tag is located by its angle brackets, attribute names are compared as bytes against
+ * names encoded once, and the only objects made per record are the row and its value strings. Values are
+ * taken as written; the API only sends numbers and identifiers, so entities are not decoded.
+ */
+class OpenGazeScanner {
+
+	private static final int INITIAL_BUFFER = 8192;
+	private static final byte[] REC = "REC".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] ACK = "ACK".getBytes(StandardCharsets.US_ASCII);
+
+	private final InputStream in;
+	private final byte[][] columns;			// [column], attribute name of each row cell, null for none
+	private byte[] buffer = new byte[INITIAL_BUFFER];
+	private int position;					// next unread byte
+	private int limit;						// end of the bytes read so far
+
+	// current tag, as offsets into the buffer
+	private int tagStart;
+	private int tagEnd;
+	private int nameEnd;
+
+	/**
+	 * @param in		stream to read
+	 * @param columns	attribute read into each cell of a record row, null for cells that stay empty
+	 */
+	OpenGazeScanner(InputStream in, String[] columns) {
+		this.in = in;
+		this.columns = new byte[columns.length][];
+		for (int i = 0; i < columns.length; i++) {
+			this.columns[i] = columns[i] == null ? null : columns[i].getBytes(StandardCharsets.US_ASCII);
+		}
+	}
+
+	/**
+	 * Moves to the next tag.
+	 * @return	false when the stream ends
+	 */
+	boolean next() throws IOException {
+		while (true) {
+			int open = indexOf((byte) '<', position);
+			if (open != -1) {
+				int close = indexOf((byte) '>', open + 1);
+				if (close != -1) {
+					tagStart = open + 1;
+					tagEnd = close;
+					if (tagEnd > tagStart && buffer[tagEnd - 1] == '/') {
+						tagEnd--;
+					}
+					nameEnd = tagStart;
+					while (nameEnd < tagEnd && !isSpace(buffer[nameEnd])) {
+						nameEnd++;
+					}
+					position = close + 1;
+					return true;
+				}
+				// keep the partial tag
+				position = open;
+			} else {
+				position = limit;
+			}
+			if (!fill()) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Moves the unread bytes to the front of the buffer, growing it if a tag fills it, and reads more.
+	 * @return	false at the end of the stream
+	 */
+	private boolean fill() throws IOException {
+		int remaining = limit - position;
+		if (remaining == buffer.length) {
+			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		} else if (position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, remaining);
+		}
+		position = 0;
+		limit = remaining;
+		int read = in.read(buffer, limit, buffer.length - limit);
+		if (read == -1) {
+			return false;
+		}
+		limit += read;
+		return true;
+	}
+
+	private int indexOf(byte b, int from) {
+		for (int i = from; i < limit; i++) {
+			if (buffer[i] == b) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean isSpace(byte b) {
+		return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+	}
+
+	/**
+	 * @return whether the current tag is a data record
+	 */
+	boolean isRecord() {
+		return nameIs(REC);
+	}
+
+	/**
+	 * @return whether the current tag acknowledges a command
+	 */
+	boolean isAck() {
+		return nameIs(ACK);
+	}
+
+	/**
+	 * @return name of the current tag
+	 */
+	String getName() {
+		return new String(buffer, tagStart, nameEnd - tagStart, StandardCharsets.US_ASCII);
+	}
+
+	private boolean nameIs(byte[] name) {
+		return regionEquals(tagStart, nameEnd, name);
+	}
+
+	private boolean regionEquals(int from, int to, byte[] name) {
+		if (to - from != name.length) {
+			return false;
+		}
+		for (int i = 0; i < name.length; i++) {
+			if (buffer[from + i] != name[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reads the attributes of the current tag into a row laid out by the scanner's columns.
+	 * @return	new row, with empty cells for attributes the tag does not have
+	 */
+	String[] getRow() {
+		String[] row = new String[columns.length];
+		Arrays.fill(row, "");
+		int i = nameEnd;
+		while (true) {
+			// attribute name
+			while (i < tagEnd && isSpace(buffer[i])) {
+				i++;
+			}
+			int attributeStart = i;
+			while (i < tagEnd && buffer[i] != '=' && !isSpace(buffer[i])) {
+				i++;
+			}
+			int attributeEnd = i;
+			// quoted value
+			while (i < tagEnd && buffer[i] != '"') {
+				i++;
+			}
+			if (i >= tagEnd) {
+				return row;
+			}
+			int valueStart = ++i;
+			while (i < tagEnd && buffer[i] != '"') {
+				i++;
+			}
+			int valueEnd = i++;
+			for (int c = 0; c < columns.length; c++) {
+				if (columns[c] != null && regionEquals(attributeStart, attributeEnd, columns[c])) {
+					row[c] = new String(buffer, valueStart, valueEnd - valueStart, StandardCharsets.US_ASCII);
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param name	attribute name
+	 * @return		value of the attribute in the current tag, null if the tag does not have it
+	 */
+	String getAttribute(String name) {
+		byte[] bytes = name.getBytes(StandardCharsets.US_ASCII);
+		int i = nameEnd;
+		while (i < tagEnd) {
+			while (i < tagEnd && isSpace(buffer[i])) {
+				i++;
+			}
+			int attributeStart = i;
+			while (i < tagEnd && buffer[i] != '=' && !isSpace(buffer[i])) {
+				i++;
+			}
+			int attributeEnd = i;
+			while (i < tagEnd && buffer[i] != '"') {
+				i++;
+			}
+			if (i >= tagEnd) {
+				return null;
+			}
+			int valueStart = ++i;
+			while (i < tagEnd && buffer[i] != '"') {
+				i++;
+			}
+			int valueEnd = i++;
+			if (regionEquals(attributeStart, attributeEnd, bytes)) {
+				return new String(buffer, valueStart, valueEnd - valueStart, StandardCharsets.US_ASCII);
+			}
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,233 @@
+package utils.utilsUpdated;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import com.opencsv.CSVWriter;
+
+/**
+ * Pupil-diameter workload metrics for every gaze window, computed in the same pass as trimming.
+ *
+ * A sample's pupil diameter is the mean of the valid eyes ({@code LPMM} and {@code RPMM} with
+ * {@code LPMMV}/{@code RPMMV} set to 1). Blinks and other unusable rows are screened out by the
+ * {@link GazeValidityFilter} before the stage; the eye flags only choose which diameters to average, since an
+ * eye that lost tracking still reports a diameter.
+ * Each window keeps only a count, a running mean and variance, and the peak, so memory does not grow with
+ * the recording. Dilation is reported relative to the mean of a baseline window, usually a quiet stretch
+ * before the approach; when the baseline window has no valid samples the dilation columns are left empty.
+ */
+public class PupilStage implements GazeStage {
+
+	private final String baselineLabel;
+
+	private int leftColumn = -1;
+	private int leftValidColumn = -1;
+	private int rightColumn = -1;
+	private int rightValidColumn = -1;
+
+	private String[] windowLabels;
+	private long[] samples;				// [window]
+	private double[] mean;				// [window], mm
+	private double[] squares;			// [window], sum of squared differences from the mean
+	private double[] peak;				// [window], mm
+
+	/**
+	 * @param baselineLabel	label of the window that dilation is measured against
+	 */
+	public PupilStage(String baselineLabel) {
+		this.baselineLabel = baselineLabel;
+	}
+
+	@Override
+	public void open(String[] headers, GazeWindowTable windows) {
+		for (int i = 0; i < headers.length; i++) {
+			switch (headers[i]) {
+				case "LPMM":	leftColumn = i; break;
+				case "LPMMV":	leftValidColumn = i; break;
+				case "RPMM":	rightColumn = i; break;
+				case "RPMMV":	rightValidColumn = i; break;
+				default:		break;
+			}
+		}
+		int n = windows.size();
+		windowLabels = new String[n];
+		for (int w = 0; w < n; w++) {
+			windowLabels[w] = windows.getLabel(w);
+		}
+		samples = new long[n];
+		mean = new double[n];
+		squares = new double[n];
+		peak = new double[n];
+	}
+
+	@Override
+	public int[] getColumns() {
+		return new int[] {leftColumn, leftValidColumn, rightColumn, rightValidColumn};
+	}
+
+	@Override
+	public void accept(String[] row, Collection<Integer> active) {
+		double left = eye(row, leftColumn, leftValidColumn);
+		double right = eye(row, rightColumn, rightValidColumn);
+		double pupil;
+		if (Double.isNaN(left)) {
+			pupil = right;
+		} else if (Double.isNaN(right)) {
+			pupil = left;
+		} else {
+			pupil = (left + right) / 2;
+		}
+		if (Double.isNaN(pupil)) {
+			return;
+		}
+		// Welford's update keeps the variance without storing the samples
+		for (int window : active) {
+			samples[window]++;
+			double delta = pupil - mean[window];
+			mean[window] += delta / samples[window];
+			squares[window] += delta * (pupil - mean[window]);
+			if (samples[window] == 1 || pupil > peak[window]) {
+				peak[window] = pupil;
+			}
+		}
+	}
+
+	/**
+	 * @return diameter of one eye in mm, NaN if the column is missing, the eye is not valid, or the diameter is not positive
+	 */
+	private static double eye(String[] row, int column, int validColumn) {
+		if (column == -1 || column >= row.length) {
+			return Double.NaN;
+		}
+		if (validColumn != -1 && (validColumn >= row.length || !"1".equals(row[validColumn]))) {
+			return Double.NaN;
+		}
+		try {
+			double diameter = Double.parseDouble(row[column]);
+			return diameter > 0 ? diameter : Double.NaN;
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+
+	@Override
+	public void finish() {
+		// statistics are complete after the last row
+	}
+
+	/**
+	 * @param label	window label
+	 * @return		index of the window, -1 if the file was not trimmed into a window with the label
+	 */
+	public int indexOf(String label) {
+		if (windowLabels == null) {
+			return -1;
+		}
+		for (int w = 0; w < windowLabels.length; w++) {
+			if (windowLabels[w].equals(label)) {
+				return w;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param window	window index
+	 * @return			number of valid pupil samples
+	 */
+	public long getSampleCount(int window) {
+		return samples[window];
+	}
+
+	/**
+	 * @param window	window index
+	 * @return			mean pupil diameter in mm, NaN if the window has no valid samples
+	 */
+	public double getMean(int window) {
+		return samples[window] > 0 ? mean[window] : Double.NaN;
+	}
+
+	/**
+	 * @param window	window index
+	 * @return			largest pupil diameter in mm, NaN if the window has no valid samples
+	 */
+	public double getPeak(int window) {
+		return samples[window] > 0 ? peak[window] : Double.NaN;
+	}
+
+	/**
+	 * @return mean pupil diameter of the baseline window in mm, NaN if it has no valid samples
+	 */
+	public double getBaseline() {
+		int w = indexOf(baselineLabel);
+		return w == -1 ? Double.NaN : getMean(w);
+	}
+
+	/**
+	 * @return csv header of the metric rows
+	 */
+	public static String[] getHeaders() {
+		return new String[] {
+			"Source",
+			"Window",
+			"Pupil_Samples",
+			"Mean_Pupil_mm",
+			"SD_Pupil_mm",
+			"Peak_Pupil_mm",
+			"Baseline_Pupil_mm",
+			"Mean_Dilation_mm",
+			"Peak_Dilation_mm",
+			"Mean_Dilation_Percent"
+		};
+	}
+
+	/**
+	 * Writes one metric row per window.
+	 * @param writer	csv writer to append to
+	 * @param source	name of the gaze file, written in the first column
+	 */
+	public void writeRows(CSVWriter writer, String source) {
+		if (windowLabels == null) {
+			// the file was never opened
+			return;
+		}
+		double baseline = getBaseline();
+		for (int w = 0; w < windowLabels.length; w++) {
+			boolean any = samples[w] > 0;
+			boolean corrected = any && !Double.isNaN(baseline);
+			writer.writeNext(new String[] {
+				source,
+				windowLabels[w],
+				String.valueOf(samples[w]),
+				any ? String.valueOf(mean[w]) : "",
+				samples[w] > 1 ? String.valueOf(Math.sqrt(squares[w] / (samples[w] - 1))) : "",
+				any ? String.valueOf(peak[w]) : "",
+				Double.isNaN(baseline) ? "" : String.valueOf(baseline),
+				corrected ? String.valueOf(mean[w] - baseline) : "",
+				corrected ? String.valueOf(peak[w] - baseline) : "",
+				corrected ? String.valueOf((mean[w] - baseline) / baseline * 100) : ""
+			});
+		}
+	}
+
+	/**
+	 * Appends the metrics of several gaze files of one pilot to the pilot's score file.
+	 * @param scoreFile	score csv file written by {@code ScoreCalculationUpdated.writeToFile}
+	 * @param stages	finished stages, one per gaze file
+	 * @param sources	gaze file names, in the same order as the stages
+	 */
+	public static void appendToFile(String scoreFile, List<PupilStage> stages, List<String> sources) throws IOException {
+		if (stages.isEmpty()) {
+			return;
+		}
+		try (CSVWriter writer = new CSVWriter(new FileWriter(new File(scoreFile), true))) {
+			writer.writeNext(getHeaders());
+			for (int i = 0; i < stages.size(); i++) {
+				stages.get(i).writeRows(writer, sources.get(i));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,237 @@
+package utils.utilsUpdated;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import com.opencsv.CSVWriter;
+
+/**
+ * Saccade metrics for every gaze window, computed in the same pass as trimming: saccade count and rate,
+ * mean and peak amplitude, and fixed-bin histograms of amplitude and direction.
+ *
+ * Gazepoint reports the saccade that led into a fixation in {@code SACCADE_MAG} (pixels) and
+ * {@code SACCADE_DIR} (degrees) of the fixation's rows. Rows are grouped into fixations by {@code FPOGID}, as in
+ * {@link AoiTransitionStage}, so each saccade is counted once on both fixation exports and raw all-gaze files,
+ * toward the windows its fixation starts in. A magnitude of 0 (the first fixation of a recording) is not a
+ * saccade. Amplitudes fall into {@code AMPLITUDE_BINS} bins of {@code AMPLITUDE_BIN_WIDTH} pixels, the last one
+ * open-ended, and directions into {@code DIRECTION_BINS} sectors centred on 0, 45, ... degrees.
+ */
+public class SaccadeStage implements GazeStage {
+
+	private static final double AMPLITUDE_BIN_WIDTH = 100;		// pixels
+	private static final int AMPLITUDE_BINS = 10;
+	private static final int DIRECTION_BINS = 8;
+
+	private int idColumn = -1;
+	private int magnitudeColumn = -1;
+	private int directionColumn = -1;
+
+	private String[] windowLabels;
+	private double[] seconds;			// [window], length of the window
+	private int[] count;				// [window]
+	private double[] amplitudeSum;		// [window], pixels
+	private double[] peak;				// [window], pixels
+	private int[][] amplitudes;			// [window][bin]
+	private int[][] directions;			// [window][sector]
+
+	private String fixationId;
+
+	@Override
+	public void open(String[] headers, GazeWindowTable windows) {
+		for (int i = 0; i < headers.length; i++) {
+			switch (headers[i]) {
+				case "FPOGID":		idColumn = i; break;
+				case "SACCADE_MAG":	magnitudeColumn = i; break;
+				case "SACCADE_DIR":	directionColumn = i; break;
+				default:			break;
+			}
+		}
+		int n = windows.size();
+		windowLabels = new String[n];
+		seconds = new double[n];
+		for (int w = 0; w < n; w++) {
+			windowLabels[w] = windows.getLabel(w);
+			seconds[w] = Duration.between(windows.getStart(w), windows.getEnd(w)).toMillis() / 1000.0;
+		}
+		count = new int[n];
+		amplitudeSum = new double[n];
+		peak = new double[n];
+		amplitudes = new int[n][AMPLITUDE_BINS];
+		directions = new int[n][DIRECTION_BINS];
+	}
+
+	@Override
+	public int[] getColumns() {
+		return new int[] {idColumn, magnitudeColumn, directionColumn};
+	}
+
+	@Override
+	public void accept(String[] row, Collection<Integer> active) {
+		if (idColumn == -1 || magnitudeColumn == -1 || directionColumn == -1) {
+			return;
+		}
+		if (idColumn >= row.length || magnitudeColumn >= row.length || directionColumn >= row.length) {
+			return;
+		}
+		String id = row[idColumn];
+		if (id.equals(fixationId)) {
+			return;
+		}
+		fixationId = id;
+
+		// the first row of a fixation carries the saccade into it
+		double magnitude;
+		double direction;
+		try {
+			magnitude = Double.parseDouble(row[magnitudeColumn]);
+			direction = Double.parseDouble(row[directionColumn]);
+		} catch (NumberFormatException e) {
+			return;
+		}
+		if (!(magnitude > 0)) {
+			return;
+		}
+		int amplitudeBin = Math.min(AMPLITUDE_BINS - 1, (int) (magnitude / AMPLITUDE_BIN_WIDTH));
+		double sector = 360.0 / DIRECTION_BINS;
+		double shifted = ((direction + sector / 2) % 360 + 360) % 360;
+		int directionBin = Math.min(DIRECTION_BINS - 1, (int) (shifted / sector));
+		for (int window : active) {
+			count[window]++;
+			amplitudeSum[window] += magnitude;
+			if (magnitude > peak[window]) {
+				peak[window] = magnitude;
+			}
+			amplitudes[window][amplitudeBin]++;
+			directions[window][directionBin]++;
+		}
+	}
+
+	@Override
+	public void finish() {
+		// counts are complete after the last row
+	}
+
+	/**
+	 * @param label	window label
+	 * @return		index of the window, -1 if the file was not trimmed into a window with the label
+	 */
+	public int indexOf(String label) {
+		if (windowLabels == null) {
+			return -1;
+		}
+		for (int w = 0; w < windowLabels.length; w++) {
+			if (windowLabels[w].equals(label)) {
+				return w;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param window	window index
+	 * @return			number of saccades into fixations that start in the window
+	 */
+	public int getSaccadeCount(int window) {
+		return count[window];
+	}
+
+	/**
+	 * @param window	window index
+	 * @return			saccades per second of the window, NaN for an empty window
+	 */
+	public double getRate(int window) {
+		return seconds[window] > 0 ? count[window] / seconds[window] : Double.NaN;
+	}
+
+	/**
+	 * @param window	window index
+	 * @return			mean amplitude in pixels, NaN if the window has no saccades
+	 */
+	public double getMeanAmplitude(int window) {
+		return count[window] > 0 ? amplitudeSum[window] / count[window] : Double.NaN;
+	}
+
+	/**
+	 * @param window	window index
+	 * @return			largest amplitude in pixels, NaN if the window has no saccades
+	 */
+	public double getPeakAmplitude(int window) {
+		return count[window] > 0 ? peak[window] : Double.NaN;
+	}
+
+	/**
+	 * @return csv header of the metric rows
+	 */
+	public static String[] getHeaders() {
+		String[] headers = new String[6 + AMPLITUDE_BINS + DIRECTION_BINS];
+		int c = 0;
+		headers[c++] = "Source";
+		headers[c++] = "Window";
+		headers[c++] = "Saccades";
+		headers[c++] = "Saccades_Per_Second";
+		headers[c++] = "Mean_Amplitude_px";
+		headers[c++] = "Peak_Amplitude_px";
+		for (int bin = 0; bin < AMPLITUDE_BINS; bin++) {
+			int from = (int) (bin * AMPLITUDE_BIN_WIDTH);
+			headers[c++] = bin < AMPLITUDE_BINS - 1
+				? "Amplitude_" + from + "_" + (int) ((bin + 1) * AMPLITUDE_BIN_WIDTH) + "px"
+				: "Amplitude_" + from + "px_plus";
+		}
+		for (int bin = 0; bin < DIRECTION_BINS; bin++) {
+			headers[c++] = "Direction_" + (bin * 360 / DIRECTION_BINS) + "deg";
+		}
+		return headers;
+	}
+
+	/**
+	 * Writes one metric row per window.
+	 * @param writer	csv writer to append to
+	 * @param source	name of the gaze file, written in the first column
+	 */
+	public void writeRows(CSVWriter writer, String source) {
+		if (windowLabels == null) {
+			// the file was never opened
+			return;
+		}
+		for (int w = 0; w < windowLabels.length; w++) {
+			String[] row = new String[6 + AMPLITUDE_BINS + DIRECTION_BINS];
+			int c = 0;
+			boolean any = count[w] > 0;
+			row[c++] = source;
+			row[c++] = windowLabels[w];
+			row[c++] = String.valueOf(count[w]);
+			row[c++] = seconds[w] > 0 ? String.valueOf(getRate(w)) : "";
+			row[c++] = any ? String.valueOf(getMeanAmplitude(w)) : "";
+			row[c++] = any ? String.valueOf(getPeakAmplitude(w)) : "";
+			for (int bin = 0; bin < AMPLITUDE_BINS; bin++) {
+				row[c++] = String.valueOf(amplitudes[w][bin]);
+			}
+			for (int bin = 0; bin < DIRECTION_BINS; bin++) {
+				row[c++] = String.valueOf(directions[w][bin]);
+			}
+			writer.writeNext(row);
+		}
+	}
+
+	/**
+	 * Writes the metrics of several gaze files of one pilot to a single csv file.
+	 * @param outputFile	path of the csv file to write
+	 * @param stages		finished stages, one per gaze file
+	 * @param sources		gaze file names, in the same order as the stages
+	 */
+	public static void writeToFile(String outputFile, List<SaccadeStage> stages, List<String> sources) throws IOException {
+		if (stages.isEmpty()) {
+			return;
+		}
+		try (CSVWriter writer = new CSVWriter(new FileWriter(new File(outputFile)))) {
+			writer.writeNext(getHeaders());
+			for (int i = 0; i < stages.size(); i++) {
+				stages.get(i).writeRows(writer, sources.get(i));
+			}
+		}
+	}
+
+}
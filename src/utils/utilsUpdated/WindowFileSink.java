@@ -0,0 +1,112 @@
+package utils.utilsUpdated;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.logging.Level;
+import utils.SystemLogger;
+
+/**
+ * Writes every window to its own csv file, {@code <fileName>_<label>.csv}. A file is only created once its
+ * window receives a row, and is closed as soon as the window ends.
+ *
+ * Rows read by a {@link GazeCsvRowSource} are copied as the bytes that were read, with only the changed cells
+ * written again; other rows are written cell by cell. Fields are quoted only where csv needs it. Each row is
+ * encoded once, however many windows it goes to.
+ */
+class WindowFileSink implements GazeWindowSink {
+
+	private final String outputFolder;
+	private final String fileName;
+	private final String[] headers;
+	private final GazeWindowTable windows;
+	private final GazeCsvRowSource source;
+	private final OutputStream[] windowWriters;
+	private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+	WindowFileSink(String outputFolder, String fileName, String[] headers, GazeWindowTable windows) {
+		this(outputFolder, fileName, headers, windows, null);
+	}
+
+	/**
+	 * @param source	source of the rows, whose rows are copied as read, or null to write every cell
+	 */
+	WindowFileSink(String outputFolder, String fileName, String[] headers, GazeWindowTable windows, GazeCsvRowSource source) {
+		this.outputFolder = outputFolder;
+		this.fileName = fileName;
+		this.headers = headers;
+		this.windows = windows;
+		this.source = source;
+		this.windowWriters = new OutputStream[windows.size()];
+	}
+
+	@Override
+	public void windowStarted(int window) {
+		// the file is opened with the first row of the window
+	}
+
+	@Override
+	public void row(String[] row, Collection<Integer> active) throws IOException {
+		line.reset();
+		if (source == null || !source.writeRow(row, line)) {
+			writeCells(row, line);
+		}
+		line.write('\n');
+		for (int window : active) {
+			if (windowWriters[window] == null) {
+				String outputFile = outputFolder + "/" + fileName + "_" + windows.getLabel(window) + ".csv";
+				windowWriters[window] = new BufferedOutputStream(new FileOutputStream(outputFile));
+				writeCells(headers, windowWriters[window]);
+				windowWriters[window].write('\n');
+			}
+			line.writeTo(windowWriters[window]);
+		}
+	}
+
+	/**
+	 * Writes cells as one csv row, without its line terminator.
+	 */
+	static void writeCells(String[] cells, OutputStream out) throws IOException {
+		for (int i = 0; i < cells.length; i++) {
+			if (i > 0) {
+				out.write(',');
+			}
+			GazeCsvReader.writeField(out, cells[i]);
+		}
+	}
+
+	@Override
+	public void windowEnded(int window) throws IOException {
+		if (windowWriters[window] != null) {
+			windowWriters[window].close();
+			windowWriters[window] = null;
+		}
+	}
+
+	@Override
+	public void finish() throws IOException {
+		// windows still open when the recording ends keep the rows written so far
+		for (int window = 0; window < windowWriters.length; window++) {
+			windowEnded(window);
+		}
+	}
+
+	@Override
+	public void close() {
+		for (int window = 0; window < windowWriters.length; window++) {
+			if (windowWriters[window] == null) {
+				continue;
+			}
+			try {
+				windowWriters[window].close();
+			} catch (IOException e) {
+				SystemLogger.writeToSystemLog(Level.WARNING, WindowFileSink.class.getName(), "Unable to close window file\n" + e.toString());
+			}
+			windowWriters[window] = null;
+		}
+	}
+
+}
@@ -0,0 +1,102 @@
+package scoring_tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import scoring.scoringUpdated.DtwSimilarity;
+import scoring.scoringUpdated.DtwSimilarity.Match;
+import scoring.scoringUpdated.DtwSimilarity.Reference;
+
+public class DtwSimilarityTester {
+
+	private static final int LENGTH = 64;
+	private static final int CHANNELS = 5;
+
+	private static DtwSimilarity similarity = new DtwSimilarity(LENGTH, 0.1);
+
+	public static void main(String[] args) {
+		Random random = new Random(29);
+		List<double[][]> library = new ArrayList<>();
+		List<Reference> references = new ArrayList<>();
+		for (int r = 0; r < 40; r++) {
+			double[][] series = randomSeries(random);
+			library.add(series);
+			references.add(similarity.reference("reference" + r, series));
+		}
+		checkDistance(library);
+		checkBand(library);
+		checkNearest(library, references, random);
+	}
+
+	private static double[][] randomSeries(Random random) {
+		double[][] series = new double[CHANNELS][LENGTH];
+		for (int c = 0; c < CHANNELS; c++) {
+			double value = random.nextGaussian();
+			for (int t = 0; t < LENGTH; t++) {
+				value += random.nextGaussian() * 0.2;
+				series[c][t] = value;
+			}
+		}
+		return series;
+	}
+
+	private static void checkDistance(List<double[][]> library) {
+		double[][] a = library.get(0);
+		double[][] b = library.get(1);
+		assert similarity.distance(a, a) == 0 : "Distance to itself should be 0";
+		assert Math.abs(similarity.distance(a, b) - similarity.distance(b, a)) < 1e-9 : "Distance should be symmetric";
+	}
+
+	/**
+	 * The rolling rows only reset the cells around the band, so compare against a full matrix DTW in the same band.
+	 */
+	private static void checkBand(List<double[][]> library) {
+		int window = Math.max(1, (int) Math.round(LENGTH * 0.1));
+		for (int r = 1; r < library.size(); r++) {
+			double[][] a = library.get(0);
+			double[][] b = library.get(r);
+			double[][] matrix = new double[LENGTH + 1][LENGTH + 1];
+			for (double[] row : matrix) {
+				Arrays.fill(row, Double.POSITIVE_INFINITY);
+			}
+			matrix[0][0] = 0;
+			for (int i = 1; i <= LENGTH; i++) {
+				for (int j = Math.max(1, i - window); j <= Math.min(LENGTH, i + window); j++) {
+					double cost = 0;
+					for (int c = 0; c < CHANNELS; c++) {
+						double d = a[c][i - 1] - b[c][j - 1];
+						cost += d * d;
+					}
+					matrix[i][j] = cost + Math.min(matrix[i - 1][j - 1], Math.min(matrix[i - 1][j], matrix[i][j - 1]));
+				}
+			}
+			double expected = Math.sqrt(matrix[LENGTH][LENGTH]);
+			assert Math.abs(similarity.distance(a, b) - expected) < 1e-9 : "Banded distance differs from the full matrix";
+		}
+	}
+
+	/**
+	 * The lower bounds may only skip references that cannot be nearest, so the cascade must find the same
+	 * reference as a full DTW against every one.
+	 */
+	private static void checkNearest(List<double[][]> library, List<Reference> references, Random random) {
+		for (int q = 0; q < 100; q++) {
+			double[][] query = randomSeries(random);
+			int best = 0;
+			double bestDistance = Double.POSITIVE_INFINITY;
+			for (int r = 0; r < library.size(); r++) {
+				double distance = similarity.distance(query, library.get(r));
+				if (distance < bestDistance) {
+					bestDistance = distance;
+					best = r;
+				}
+			}
+			Match match = similarity.nearest(query, references);
+			assert match.getReference().equals("reference" + best) : "Lower bound pruned the nearest reference";
+			assert Math.abs(match.getDistance() - bestDistance) < 1e-9 : "Incorrect nearest distance";
+		}
+	}
+
+}
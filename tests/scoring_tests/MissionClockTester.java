@@ -0,0 +1,115 @@
+package scoring_tests;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+import scoring.scoringUpdated.MissionClock;
+
+public class MissionClockTester {
+
+	private static final LocalDateTime EPOCH = LocalDateTime.of(2023, 11, 6, 13, 2, 8);
+	private static final double OFFSET = 0.37;
+	private static final double RATE = 1.00002;
+	private static final int FLIGHT = 1000;
+	private static final int PAUSE = 60;
+
+	public static void main(String[] args) {
+		Random random = new Random(42);
+		double[] missionTimes = new double[FLIGHT + PAUSE];
+		long[] sysSeconds = new long[FLIGHT + PAUSE];
+		double mission = 0.05;
+		for (int i = 0; i < FLIGHT; i++) {
+			missionTimes[i] = mission;
+			sysSeconds[i] = (long) Math.floor(OFFSET + RATE * mission);
+			mission += 0.8 + random.nextDouble() * 0.4;
+		}
+		// paused tail: the mission time stays frozen while sys_time keeps advancing
+		double frozen = missionTimes[FLIGHT - 1];
+		double wall = OFFSET + RATE * frozen;
+		for (int i = FLIGHT; i < FLIGHT + PAUSE; i++) {
+			wall += 0.8 + random.nextDouble() * 0.4;
+			missionTimes[i] = frozen;
+			sysSeconds[i] = (long) Math.floor(wall);
+		}
+		MissionClock clock = MissionClock.fit(missionTimes, sysSeconds, missionTimes.length, EPOCH);
+		checkRows(clock, missionTimes, sysSeconds, FLIGHT);
+		checkRoundTrip(clock);
+
+		// a paused tail that is longer than the flight still does not win over the advancing run
+		MissionClock shortClock = MissionClock.fit(shift(missionTimes, FLIGHT - 40), shift(sysSeconds, FLIGHT - 40),
+			40 + PAUSE, EPOCH);
+		assert Math.abs(shortClock.getRate() - RATE) < 1e-2 : "Paused rows should not be fitted";
+
+		checkMidFlightPause(random);
+	}
+
+	/**
+	 * A short leg, a pause, then the long rest of the flight: only the long leg is fitted, and the pairs of the
+	 * short leg and the pause are reported as outside the model.
+	 */
+	private static void checkMidFlightPause(Random random) {
+		int leg = 200;
+		int count = leg + PAUSE + FLIGHT;
+		double[] missionTimes = new double[count];
+		long[] sysSeconds = new long[count];
+		double mission = 0.05;
+		double wall = OFFSET + RATE * mission;
+		for (int i = 0; i < count; i++) {
+			double step = 0.8 + random.nextDouble() * 0.4;
+			wall += RATE * step;
+			if (i < leg || i >= leg + PAUSE) {
+				mission += step;
+			}
+			missionTimes[i] = mission;
+			sysSeconds[i] = (long) Math.floor(wall);
+		}
+		MissionClock clock = MissionClock.fit(missionTimes, sysSeconds, count, EPOCH);
+		for (int i = 0; i < count; i++) {
+			assert clock.isFitted(i) == i > leg + PAUSE - 1 : "Pair " + i + " should " + (clock.isFitted(i) ? "not " : "") + "be fitted";
+		}
+		assert !clock.isFitted(-1) : "A row without a pair is never fitted";
+		for (int i = leg + PAUSE; i < count; i++) {
+			double seconds = seconds(clock.toWallClock(missionTimes[i]));
+			assert seconds >= sysSeconds[i] && seconds < sysSeconds[i] + 1
+				: "Row " + i + " after the pause lands outside its sys_time second: " + (seconds - sysSeconds[i]);
+		}
+		// on the fitted line the short leg lands about a whole pause late
+		double late = seconds(clock.toWallClock(missionTimes[0])) - sysSeconds[0];
+		assert late > PAUSE / 2 : "The short leg should not fit the line after the pause";
+	}
+
+	private static void checkRows(MissionClock clock, double[] missionTimes, long[] sysSeconds, int count) {
+		assert Math.abs(clock.getRate() - RATE) < 1e-3 : "Incorrect rate " + clock.getRate();
+		for (int i = 0; i < count; i++) {
+			double seconds = seconds(clock.toWallClock(missionTimes[i]));
+			assert seconds >= sysSeconds[i] && seconds < sysSeconds[i] + 1
+				: "Row " + i + " lands outside its sys_time second: " + (seconds - sysSeconds[i]);
+			double expected = OFFSET + RATE * missionTimes[i];
+			assert Math.abs(seconds - expected) < 0.03 : "Row " + i + " is off by " + (seconds - expected);
+		}
+	}
+
+	private static void checkRoundTrip(MissionClock clock) {
+		for (double mission = 0; mission < 1000; mission += 37.5) {
+			double back = clock.toMissionTime(clock.toWallClock(mission));
+			assert Math.abs(back - mission) < 1e-6 : "Round trip changed " + mission + " to " + back;
+		}
+	}
+
+	private static double seconds(LocalDateTime time) {
+		return Duration.between(EPOCH, time).toNanos() / 1e9;
+	}
+
+	private static double[] shift(double[] values, int from) {
+		double[] shifted = new double[values.length - from];
+		System.arraycopy(values, from, shifted, 0, shifted.length);
+		return shifted;
+	}
+
+	private static long[] shift(long[] values, int from) {
+		long[] shifted = new long[values.length - from];
+		System.arraycopy(values, from, shifted, 0, shifted.length);
+		return shifted;
+	}
+}
@@ -0,0 +1,68 @@
+package scoring_tests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import scoring.FlightDataPoint;
+import scoring.scoringUpdated.FlightRangeIndex;
+import scoring.scoringUpdated.FlightRangeIndex.Channel;
+
+public class RangeIndexTester {
+
+	private static List<FlightDataPoint> points = new ArrayList<>();
+
+	public static void main(String[] args) {
+		Random random = new Random(26);
+		for (int i = 0; i < 500; i++) {
+			points.add(new FlightDataPoint(i * 0.5, 90 + random.nextGaussian() * 5, 2400, random.nextGaussian() * 10, 0,
+				-500 + random.nextGaussian() * 100, 3000 - i, 344, 47, -122, 10, random.nextGaussian(), random.nextGaussian()));
+		}
+		FlightRangeIndex index = FlightRangeIndex.build(points);
+		checkRanges(index, random);
+		checkEmptyRange(index);
+		checkUnordered(index, random);
+	}
+
+	private static void checkRanges(FlightRangeIndex index, Random random) {
+		for (int q = 0; q < 1000; q++) {
+			double from = random.nextDouble() * 250;
+			double to = from + random.nextDouble() * 100;
+			double max = Double.NEGATIVE_INFINITY;
+			double min = Double.POSITIVE_INFINITY;
+			double sum = 0;
+			int count = 0;
+			for (FlightDataPoint point : points) {
+				if (point.getMissn_time() >= from && point.getMissn_time() <= to) {
+					max = Math.max(max, point.getBank());
+					min = Math.min(min, point.getBank());
+					sum += point.getBank();
+					count++;
+				}
+			}
+			if (count == 0) {
+				continue;
+			}
+			assert index.max(Channel.BANK, from, to) == max : "Incorrect range max";
+			assert index.min(Channel.BANK, from, to) == min : "Incorrect range min";
+			assert Math.abs(index.mean(Channel.BANK, from, to) - sum / count) < 1e-9 : "Incorrect range mean";
+			assert index.count(from, to) == count : "Incorrect range count";
+		}
+	}
+
+	private static void checkEmptyRange(FlightRangeIndex index) {
+		assert Double.isNaN(index.max(Channel.AIRSPEED, 1000, 2000)) : "Empty range should be NaN";
+		assert index.count(1000, 2000) == 0 : "Empty range should have no samples";
+	}
+
+	private static void checkUnordered(FlightRangeIndex index, Random random) {
+		List<FlightDataPoint> shuffled = new ArrayList<>(points);
+		Collections.shuffle(shuffled, random);
+		FlightRangeIndex unordered = FlightRangeIndex.build(shuffled);
+		assert unordered.getStartTime() == index.getStartTime() : "Unordered points should be sorted";
+		assert unordered.max(Channel.BANK, 10, 60) == index.max(Channel.BANK, 10, 60) : "Incorrect range max of unordered points";
+		assert unordered.mean(Channel.VDEF, 10, 60) == index.mean(Channel.VDEF, 10, 60) : "Incorrect range mean of unordered points";
+	}
+
+}
@@ -0,0 +1,91 @@
+package utils_tests;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvException;
+
+import utils.utilsUpdated.FixationDetector;
+
+public class FixationDetectorTester {
+
+	private static final double RATE = 150;
+	private static final double FIXATION_SECONDS = 0.3;
+	private static final int SACCADE_SAMPLES = 5;
+
+	// fixation targets as fractions of the screen
+	private static final double[][] TARGETS = {{0.2, 0.3}, {0.7, 0.3}, {0.7, 0.8}, {0.25, 0.75}, {0.5, 0.5}};
+
+	private static String inputFile;
+	private static String outputFile;
+
+	public static void main(String[] args) throws IOException, CsvException {
+		String currentPath = Paths.get("").toAbsolutePath().toString() + "/tests/utils_tests/";
+		String outputFolder = currentPath + "output/";
+		new File(outputFolder).mkdirs();
+		inputFile = outputFolder + "Synthetic_all_gaze.csv";
+		outputFile = outputFolder + "Synthetic_ivt_fixations.csv";
+		writeTrace(new Random(39));
+		int count = new FixationDetector().detect(inputFile, outputFile);
+		assert count == TARGETS.length : "Incorrect number of fixations";
+		checkFixations();
+	}
+
+	/**
+	 * Writes a 150 Hz trace that rests on each target with a little noise and jumps between targets in a few
+	 * samples, with one invalid sample in the middle of the first fixation.
+	 */
+	private static void writeTrace(Random random) throws IOException {
+		try (PrintWriter out = new PrintWriter(new FileWriter(inputFile))) {
+			out.print("CNT,TIME(2023/11/06 13:01:28.058),FPOGX,FPOGY,FPOGS,FPOGD,FPOGID,FPOGV,BPOGX,BPOGY,BPOGV,\r\n");
+			int n = 0;
+			for (int t = 0; t < TARGETS.length; t++) {
+				int samples = (int) Math.round(FIXATION_SECONDS * RATE);
+				for (int i = 0; i < samples; i++) {
+					double x = TARGETS[t][0] + random.nextGaussian() * 0.001;
+					double y = TARGETS[t][1] + random.nextGaussian() * 0.001;
+					boolean valid = !(t == 0 && i == samples / 2);
+					out.print(row(n++, x, y, valid));
+				}
+				if (t + 1 < TARGETS.length) {
+					for (int i = 1; i <= SACCADE_SAMPLES; i++) {
+						double fraction = i / (SACCADE_SAMPLES + 1.0);
+						double x = TARGETS[t][0] + fraction * (TARGETS[t + 1][0] - TARGETS[t][0]);
+						double y = TARGETS[t][1] + fraction * (TARGETS[t + 1][1] - TARGETS[t][1]);
+						out.print(row(n++, x, y, true));
+					}
+				}
+			}
+		}
+	}
+
+	private static String row(int count, double x, double y, boolean valid) {
+		return String.format(Locale.ROOT, "%d,%.5f,0,0,0,0,0,0,%.5f,%.5f,%d,\r\n", count, count / RATE, x, y, valid ? 1 : 0);
+	}
+
+	private static void checkFixations() throws IOException, CsvException {
+		try (CSVReader reader = new CSVReader(new FileReader(outputFile))) {
+			List<String[]> rows = reader.readAll();
+			assert rows.size() == TARGETS.length + 1 : "Fixation file should have a header and one row per fixation";
+			assert rows.get(0)[2].equals("FPOGX") : "Header should be copied from the input";
+			for (int t = 0; t < TARGETS.length; t++) {
+				String[] row = rows.get(t + 1);
+				assert Math.abs(Double.parseDouble(row[2]) - TARGETS[t][0]) < 0.005 : "Incorrect FPOGX of fixation " + t;
+				assert Math.abs(Double.parseDouble(row[3]) - TARGETS[t][1]) < 0.005 : "Incorrect FPOGY of fixation " + t;
+				assert Math.abs(Double.parseDouble(row[5]) - FIXATION_SECONDS) < 0.05 : "Incorrect FPOGD of fixation " + t;
+				assert row[6].equals(String.valueOf(t + 1)) : "Fixations should be numbered in order";
+				assert row[7].equals("1") : "Fixations should be valid";
+				assert Math.abs(Double.parseDouble(row[8]) - TARGETS[t][0]) < 0.01 : "BPOGX should be copied from the last row";
+			}
+		}
+	}
+
+}
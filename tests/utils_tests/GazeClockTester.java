@@ -0,0 +1,63 @@
+package utils_tests;
+
+import java.time.LocalDateTime;
+import java.util.Random;
+
+import utils.utilsUpdated.GazeClock;
+
+public class GazeClockTester {
+
+	private static final LocalDateTime START = LocalDateTime.of(2023, 11, 6, 13, 1, 28, 58000000);
+	private static final long FREQUENCY = 10000000L;
+	private static final long ORIGIN = 58805949737296L;
+
+	private static String[] headers = {"CNT", "TIME(2023/11/06 13:01:28.058)", "TIMETICK(f=10000000)", "FPOGX", ""};
+
+	public static void main(String[] args) {
+		checkHeaders();
+		checkTicks(new Random(34));
+		checkTimeOnly();
+	}
+
+	private static void checkHeaders() {
+		GazeClock clock = GazeClock.fromHeaders(headers);
+		assert clock.getTimeColumn() == 1 : "Incorrect time column";
+		assert clock.getFrequency() == FREQUENCY : "Incorrect tick frequency";
+		assert clock.getStartTime().equals(START) : "Incorrect start time";
+		assert !clock.isCalibrated() : "Clock with a tick column needs a data row";
+		assert GazeClock.fromHeaders(new String[] {"CNT", "FPOGX"}) == null : "Headers without TIME should have no clock";
+		try {
+			clock.toTick(START);
+			assert false : "Uncalibrated clock should not convert times";
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	private static void checkTicks(Random random) {
+		GazeClock clock = GazeClock.fromHeaders(headers).withOrigin(row(12.34567, ORIGIN + 123456700));
+		assert clock.isCalibrated() : "Clock should be calibrated by a data row";
+		assert clock.toTick(START) == ORIGIN : "Recording start should be the origin tick";
+		assert clock.toTick(START.plusNanos(1234567000)) == ORIGIN + 12345670 : "Incorrect tick of a time";
+		assert clock.tickOf(row(1.5, ORIGIN + 15000000)) == ORIGIN + 15000000 : "Row tick should come from TIMETICK";
+		for (int i = 0; i < 1000; i++) {
+			long tick = ORIGIN + (long) (random.nextDouble() * 3600 * FREQUENCY);
+			assert clock.toTick(clock.toTime(tick)) == tick : "Tick should survive a round trip through time";
+			LocalDateTime time = START.plusNanos((long) (random.nextDouble() * 3600e9));
+			assert Math.abs(clock.toSeconds(time) - (clock.toTick(time) - ORIGIN) / (double) FREQUENCY) < 1e-7 : "Seconds and ticks disagree";
+		}
+	}
+
+	private static void checkTimeOnly() {
+		GazeClock clock = GazeClock.fromHeaders(new String[] {"CNT", "TIME(2023/11/06 13:01:28.058)", "FPOGX"});
+		assert clock.isCalibrated() : "Clock without a tick column needs no data row";
+		assert clock.getFrequency() == GazeClock.DEFAULT_FREQUENCY : "TIME should be scaled to the default frequency";
+		assert clock.tickOf(new String[] {"0", "2.5", "0.5"}) == 25000000 : "Incorrect tick of a TIME value";
+		assert clock.toTick(START.plusSeconds(2).plusNanos(500000000)) == 25000000 : "Incorrect tick of a time";
+	}
+
+	private static String[] row(double seconds, long tick) {
+		return new String[] {"0", String.valueOf(seconds), String.valueOf(tick), "0.5", ""};
+	}
+
+}
@@ -0,0 +1,162 @@
+package utils_tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import utils.utilsUpdated.GazeCsvReader;
+
+public class GazeCsvReaderTester {
+
+	private static final int COLUMNS = 6;
+	private static final int ROWS = 20000;
+
+	public static void main(String[] args) throws IOException {
+		Random random = new Random(50);
+		checkDoubles(random);
+		checkRows();
+	}
+
+	/**
+	 * Compares getDouble with Double.parseDouble on plain and quoted fields.
+	 */
+	private static void checkDoubles(Random random) throws IOException {
+		List<String[]> rows = new ArrayList<>();
+		StringBuilder csv = new StringBuilder("A,B,C,D,E,F\n");
+		for (int r = 0; r < ROWS; r++) {
+			String[] row = new String[COLUMNS];
+			for (int c = 0; c < COLUMNS; c++) {
+				row[c] = number(random);
+				String field = random.nextInt(3) == 0 ? "\"" + row[c] + "\"" : row[c];
+				csv.append(c == 0 ? "" : ",").append(field);
+			}
+			csv.append(random.nextBoolean() ? "\r\n" : "\n");
+			rows.add(row);
+		}
+
+		try (GazeCsvReader reader = reader(csv.toString())) {
+			assert Arrays.equals(reader.readHeader(), new String[] {"A", "B", "C", "D", "E", "F"}) : "Incorrect header";
+			reader.project(5, 0, 3);
+			int[] columns = {5, 0, 3};
+			for (String[] row : rows) {
+				assert reader.next() : "Missing row";
+				for (int slot = 0; slot < columns.length; slot++) {
+					String field = row[columns[slot]];
+					double expected = parse(field);
+					double actual = reader.getDouble(slot);
+					assert Double.compare(actual, expected) == 0
+						: "getDouble(\"" + field + "\") is " + actual + ", Double.parseDouble gives " + expected;
+				}
+			}
+			assert !reader.next() : "Extra row";
+		}
+	}
+
+	private static String number(Random random) {
+		switch (random.nextInt(10)) {
+			case 0:
+				return Double.toString(random.nextGaussian() * Math.pow(10, random.nextInt(40) - 20));
+			case 1:
+				// more significant digits than a double holds
+				return (random.nextBoolean() ? "-" : "") + digits(random, 1 + random.nextInt(5)) + "." + digits(random, 15 + random.nextInt(10));
+			case 2:
+				return digits(random, 16 + random.nextInt(4));
+			case 3:
+				return "0." + "000000000000000000000".substring(random.nextInt(20)) + digits(random, 1 + random.nextInt(6));
+			case 4:
+				return String.format(Locale.ROOT, "%.3e", random.nextDouble() * 1000);
+			case 5:
+				return random.nextBoolean() ? "" : " " + random.nextInt(100) + " ";
+			case 6:
+				return random.nextBoolean() ? "-0" : "1.";
+			default:
+				return String.format(Locale.ROOT, "%." + random.nextInt(8) + "f", random.nextGaussian() * 1000);
+		}
+	}
+
+	private static String digits(Random random, int count) {
+		StringBuilder digits = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			digits.append((char) ('0' + random.nextInt(10)));
+		}
+		return digits.toString();
+	}
+
+	private static double parse(String field) {
+		try {
+			return Double.parseDouble(field.trim());
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * Checks strings, flags, longs, short rows, offsets, and raw row copies, including a row longer than the buffer.
+	 */
+	private static void checkRows() throws IOException {
+		char[] wide = new char[100000];
+		Arrays.fill(wide, 'x');
+		String[] lines = {
+			"CNT,NAME,VALID,TICK",
+			"1,\"say \"\"hi\"\", ok\",1,58805949737296",
+			"2,plain,0,-42",
+			"3,short",
+			"4," + new String(wide) + ",1,7",
+		};
+		String csv = String.join("\r\n", lines) + "\r\n\r\n";
+		byte[] bytes = csv.getBytes(StandardCharsets.UTF_8);
+
+		try (GazeCsvReader reader = new GazeCsvReader(new ByteArrayInputStream(bytes))) {
+			reader.readHeader();
+			assert reader.getNextRowOffset() == lines[0].length() + 2 : "Incorrect offset after the header";
+			reader.project(1, 2, 3);
+
+			long offset = lines[0].length() + 2;
+			for (int r = 1; r < lines.length; r++) {
+				assert reader.next() : "Missing row " + r;
+				assert reader.getRowOffset() == offset : "Incorrect offset of row " + r;
+				ByteArrayOutputStream raw = new ByteArrayOutputStream();
+				reader.writeRow(raw);
+				assert raw.toString("UTF-8").equals(lines[r]) : "Raw copy of row " + r + " changed";
+				offset += lines[r].length() + 2;
+				assert reader.getNextRowOffset() == offset : "Incorrect next offset of row " + r;
+
+				switch (r) {
+					case 1:
+						assert reader.getString(0).equals("say \"hi\", ok") : "Incorrect quoted string";
+						assert reader.isSet(1) : "Flag should be set";
+						assert reader.getLong(2) == 58805949737296L : "Incorrect long";
+						assert Arrays.equals(reader.getRow(), new String[] {"1", "say \"hi\", ok", "1", "58805949737296"})
+							: "Incorrect split of the whole row";
+						ByteArrayOutputStream field = new ByteArrayOutputStream();
+						GazeCsvReader.writeField(field, reader.getString(0));
+						assert field.toString("UTF-8").equals("\"say \"\"hi\"\", ok\"") : "Incorrect quoting of a written field";
+						break;
+					case 2:
+						assert !reader.isSet(1) : "Flag should not be set";
+						assert reader.getLong(2) == -42 : "Incorrect negative long";
+						break;
+					case 3:
+						assert reader.hasField(0) && !reader.hasField(1) && !reader.hasField(2) : "Short row should miss fields";
+						assert Double.isNaN(reader.getDouble(2)) : "Missing field should be NaN";
+						assert !reader.isSet(1) : "Missing flag should not be set";
+						break;
+					default:
+						assert reader.getString(0).length() == wide.length : "Long field was cut";
+						assert reader.getLong(2) == 7 : "Incorrect field after a long field";
+				}
+			}
+			assert !reader.next() : "Blank line should be skipped";
+		}
+	}
+
+	private static GazeCsvReader reader(String csv) {
+		return new GazeCsvReader(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+	}
+}
@@ -0,0 +1,118 @@
+package utils_tests;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import exceptions.GazeTrimException;
+import utils.utilsUpdated.GazeCsvReader;
+import utils.utilsUpdated.GazeInterval;
+import utils.utilsUpdated.GazePartitionIndex;
+import utils.utilsUpdated.GazeTrimmerUpdated;
+import utils.utilsUpdated.GazeWindowTable;
+
+public class GazePartitionTester {
+
+	private static final LocalDateTime START = LocalDateTime.of(2023, 11, 6, 13, 1, 28, 58000000);
+	private static final double RATE = 150;
+	private static final int ROWS = 3000;
+	private static final String HEADER = "CNT,TIME(2023/11/06 13:01:28.058),TIMETICK(f=10000000),FPOGX,USER,";
+
+	private static String outputFolder;
+
+	public static void main(String[] args) throws IOException, GazeTrimException {
+		String currentPath = Paths.get("").toAbsolutePath().toString() + "/tests/utils_tests/";
+		outputFolder = currentPath + "output/";
+		String inputFile = outputFolder + "Partition_all_gaze.csv";
+		new File(outputFolder + "files").mkdirs();
+		new File(outputFolder + "partitioned").mkdirs();
+		writeRecording(inputFile);
+
+		// overlapping windows, one past the end of the recording and one with no rows
+		GazeWindowTable windows = new GazeWindowTable(Arrays.asList(
+			new GazeInterval("first", START.plusSeconds(1), START.plusSeconds(6)),
+			new GazeInterval("overlap", START.plusSeconds(4), START.plusSeconds(9)),
+			new GazeInterval("last", START.plusSeconds(12), START.plusSeconds(30)),
+			new GazeInterval("empty", START.plusSeconds(40), START.plusSeconds(50))));
+		GazeTrimmerUpdated.trim(inputFile, outputFolder + "files", windows);
+		GazeTrimmerUpdated.trim(inputFile, outputFolder + "partitioned", windows, GazeTrimmerUpdated.OutputMode.PARTITIONED,
+			new ArrayList<>(), null);
+
+		String partitionFile = outputFolder + "partitioned/Partition_all_gaze_windows.csv";
+		GazePartitionIndex index = GazePartitionIndex.read(partitionFile);
+		assert index.getLabels().equals(Arrays.asList("first", "overlap", "last")) : "Incorrect windows " + index.getLabels();
+		assert !index.contains("empty") : "Window without rows should not be indexed";
+		String[] headers = index.readHeader();
+		assert headers[headers.length - 1].equals("window") : "Partitioned file should end with the window column";
+
+		List<String[]> all = readAll(partitionFile);
+		for (String label : index.getLabels()) {
+			List<String[]> expected = readAll(outputFolder + "files/Partition_all_gaze_" + label + ".csv");
+			List<String[]> rows = new ArrayList<>();
+			try (GazeCsvReader reader = index.openWindow(label)) {
+				while (reader.next()) {
+					rows.add(reader.getRow());
+				}
+			}
+			assert rows.size() == expected.size() : "Window " + label + " has " + rows.size() + " rows, expected " + expected.size();
+			assert index.getRowCount(label) == rows.size() : "Incorrect row count of " + label;
+			for (int i = 0; i < rows.size(); i++) {
+				String[] row = rows.get(i);
+				assert row.length == headers.length : "Window column is not aligned in row " + i + " of " + label;
+				assert Arrays.asList(row[row.length - 1].split(";")).contains(label) : "Row " + i + " is not labelled " + label;
+				String[] cells = Arrays.copyOf(row, row.length - 1);
+				assert Arrays.equals(cells, Arrays.copyOf(expected.get(i), cells.length))
+					: "Row " + i + " of " + label + " differs: " + Arrays.toString(row);
+				assert Arrays.equals(row, all.get((int) index.getFirstRow(label) + i)) : "Incorrect first row of " + label;
+			}
+		}
+	}
+
+	/**
+	 * Writes a 150 Hz recording with a quoted field in every tenth row and a short row in the overlap.
+	 */
+	private static void writeRecording(String inputFile) throws IOException {
+		try (PrintWriter out = new PrintWriter(new FileWriter(inputFile))) {
+			out.print(HEADER + "\r\n");
+			for (int i = 0; i < ROWS; i++) {
+				double seconds = i / RATE;
+				long tick = 58805949737296L + Math.round(seconds * 1e7);
+				if (i == 5 * (int) RATE) {
+					out.print(String.format(Locale.ROOT, "%d,%.5f,%d\r\n", i, seconds, tick));
+					continue;
+				}
+				String user = i % 10 == 0 ? "\"note, \"\"" + i + "\"\"\"" : "";
+				out.print(String.format(Locale.ROOT, "%d,%.5f,%d,%.4f,%s,\r\n", i, seconds, tick, (i % 97) / 97.0, user));
+			}
+		}
+	}
+
+	/**
+	 * @return data rows of a csv file, padded to the header
+	 */
+	private static List<String[]> readAll(String file) throws IOException {
+		List<String[]> rows = new ArrayList<>();
+		try (GazeCsvReader reader = new GazeCsvReader(new FileInputStream(file))) {
+			int width = reader.readHeader().length;
+			while (reader.next()) {
+				String[] row = reader.getRow();
+				rows.add(row.length < width ? Arrays.copyOf(row, width) : row);
+			}
+		}
+		for (String[] row : rows) {
+			for (int i = 0; i < row.length; i++) {
+				row[i] = row[i] == null ? "" : row[i];
+			}
+		}
+		return rows;
+	}
+
+}
@@ -0,0 +1,79 @@
+package utils_tests;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import utils.QuantileSketch;
+
+public class QuantileSketchTester {
+
+	// rank error is roughly 1.7 / k, with room for the random compactions
+	private static final double RANK_TOLERANCE = 0.03;
+
+	private static double[] samples = new double[100000];
+
+	public static void main(String[] args) {
+		Random random = new Random(27);
+		for (int i = 0; i < samples.length; i++) {
+			samples[i] = random.nextGaussian() * 10 + 90;
+		}
+		double[] sorted = samples.clone();
+		Arrays.sort(sorted);
+		checkSingleSketch(sorted);
+		checkMergedSketches(sorted);
+		checkEmptySketch();
+	}
+
+	private static void checkSingleSketch(double[] sorted) {
+		QuantileSketch sketch = new QuantileSketch();
+		for (double sample : samples) {
+			sketch.update(sample);
+		}
+		sketch.update(Double.NaN);
+		assert sketch.getCount() == samples.length : "NaN should be ignored";
+		assert sketch.getMin() == sorted[0] : "Incorrect min";
+		assert sketch.getMax() == sorted[sorted.length - 1] : "Incorrect max";
+		checkRanks(sketch, sorted);
+	}
+
+	private static void checkMergedSketches(double[] sorted) {
+		// one sketch per slice, as the cohort merge gets one per pilot
+		QuantileSketch merged = new QuantileSketch();
+		int slices = 7;
+		for (int s = 0; s < slices; s++) {
+			QuantileSketch slice = new QuantileSketch();
+			for (int i = s; i < samples.length; i += slices) {
+				slice.update(samples[i]);
+			}
+			merged.merge(slice);
+		}
+		assert merged.getCount() == samples.length : "Incorrect merged count";
+		assert merged.getMin() == sorted[0] : "Incorrect merged min";
+		assert merged.getMax() == sorted[sorted.length - 1] : "Incorrect merged max";
+		checkRanks(merged, sorted);
+	}
+
+	private static void checkRanks(QuantileSketch sketch, double[] sorted) {
+		for (double fraction = 0.05; fraction < 1; fraction += 0.05) {
+			double estimate = sketch.getQuantile(fraction);
+			assert Math.abs(exactRank(sorted, estimate) - fraction) < RANK_TOLERANCE : "Incorrect quantile at " + fraction;
+			double value = sorted[(int) (fraction * sorted.length)];
+			assert Math.abs(sketch.getRank(value) - exactRank(sorted, value)) < RANK_TOLERANCE : "Incorrect rank of " + value;
+		}
+	}
+
+	private static double exactRank(double[] sorted, double value) {
+		int below = 0;
+		while (below < sorted.length && sorted[below] <= value) {
+			below++;
+		}
+		return (double) below / sorted.length;
+	}
+
+	private static void checkEmptySketch() {
+		QuantileSketch sketch = new QuantileSketch();
+		assert Double.isNaN(sketch.getQuantile(0.5)) : "Empty sketch should have no quantiles";
+		assert Double.isNaN(sketch.getRank(0)) : "Empty sketch should have no ranks";
+	}
+
+}
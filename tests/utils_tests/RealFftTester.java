@@ -0,0 +1,91 @@
+package utils_tests;
+
+import java.util.Random;
+
+import utils.RealFft;
+
+public class RealFftTester {
+
+	private static final int SIZE = 256;
+	private static final double TOLERANCE = 1e-9;
+
+	private static RealFft fft = new RealFft(SIZE);
+
+	public static void main(String[] args) {
+		Random random = new Random(30);
+		double[] signal = new double[SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			signal[i] = random.nextGaussian();
+		}
+		checkSpectrum(signal);
+		checkRoundTrip(signal);
+		checkCrossCorrelation(signal, random);
+	}
+
+	private static void checkSpectrum(double[] signal) {
+		fft.transform(signal, 0);
+		for (int k = 0; k < fft.getBinCount(); k++) {
+			double re = 0;
+			double im = 0;
+			for (int i = 0; i < SIZE; i++) {
+				re += signal[i] * Math.cos(2 * Math.PI * k * i / SIZE);
+				im -= signal[i] * Math.sin(2 * Math.PI * k * i / SIZE);
+			}
+			assert Math.abs(fft.getReal(k) - re) < TOLERANCE : "Incorrect real part of bin " + k;
+			assert Math.abs(fft.getImag(k) - im) < TOLERANCE : "Incorrect imaginary part of bin " + k;
+		}
+	}
+
+	private static void checkRoundTrip(double[] signal) {
+		fft.transform(signal, 0);
+		double[] re = new double[fft.getBinCount()];
+		double[] im = new double[fft.getBinCount()];
+		for (int k = 0; k < re.length; k++) {
+			re[k] = fft.getReal(k);
+			im[k] = fft.getImag(k);
+		}
+		double[] output = new double[SIZE];
+		fft.inverse(re, im, output, 0);
+		for (int i = 0; i < SIZE; i++) {
+			assert Math.abs(output[i] - signal[i]) < TOLERANCE : "Round trip changed sample " + i;
+		}
+	}
+
+	/**
+	 * Circular cross-correlation as the inverse of one spectrum times the conjugate of the other, the way
+	 * the deviation and gaze series are correlated.
+	 */
+	private static void checkCrossCorrelation(double[] signal, Random random) {
+		double[] other = new double[SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			other[i] = random.nextGaussian();
+		}
+		int bins = fft.getBinCount();
+		double[] aRe = new double[bins];
+		double[] aIm = new double[bins];
+		fft.transform(signal, 0);
+		for (int k = 0; k < bins; k++) {
+			aRe[k] = fft.getReal(k);
+			aIm[k] = fft.getImag(k);
+		}
+		double[] re = new double[bins];
+		double[] im = new double[bins];
+		fft.transform(other, 0);
+		for (int k = 0; k < bins; k++) {
+			double bRe = fft.getReal(k);
+			double bIm = fft.getImag(k);
+			re[k] = aRe[k] * bRe + aIm[k] * bIm;
+			im[k] = aIm[k] * bRe - aRe[k] * bIm;
+		}
+		double[] correlation = new double[SIZE];
+		fft.inverse(re, im, correlation, 0);
+		for (int lag = 0; lag < SIZE; lag++) {
+			double expected = 0;
+			for (int i = 0; i < SIZE; i++) {
+				expected += signal[(i + lag) % SIZE] * other[i];
+			}
+			assert Math.abs(correlation[lag] - expected) < TOLERANCE : "Incorrect cross-correlation at lag " + lag;
+		}
+	}
+
+}